@@ -0,0 +1,92 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: immutable view of a line (or a part of it) of a file with a
+ * single-byte charset. The chars are decoded on access with a table of the charset,
+ * so that parts of the line that are never accessed are never decoded.
+ * The String is only created when toString() is called.<br>
+ *
+ * @see SingleByteLineReader
+ */
+public final class ByteLine implements CharSequence, Comparable<CharSequence> {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    /** char of each byte value */
+    private final char[] chars;
+    private String value;
+
+    ByteLine(byte[] bytes, int offset, int length, char[] chars) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.chars = chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new StringIndexOutOfBoundsException(index);
+        return chars[bytes[offset + index] & 0xFF];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        return new ByteLine(bytes, offset + start, end - start, chars);
+    }
+
+    /** @return a view without leading and trailing whitespace (same as String.trim()) */
+    public ByteLine trim(int start, int end) {
+        while (start < end && charAt(start) <= ' ') start++;
+        while (end > start && charAt(end - 1) <= ' ') end--;
+        return new ByteLine(bytes, offset + start, end - start, chars);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /** @return true when the content of the receiver is equal to the given string */
+    public boolean contentEquals(CharSequence other) {
+        if (other == null || other.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public int compareTo(CharSequence other) {
+        int n = Math.min(length, other.length());
+        for (int i = 0; i < n; i++) {
+            int diff = charAt(i) - other.charAt(i);
+            if (diff != 0) return diff;
+        }
+        return length - other.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ByteLine && contentEquals((ByteLine) o));
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (value == null) {
+            char[] decoded = new char[length];
+            for (int i = 0; i < length; i++) {
+                decoded[i] = chars[bytes[offset + i] & 0xFF];
+            }
+            value = new String(decoded);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,146 @@
+package com.agimatec.utility.fileimport;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Description: Tokenizer for a line in csv format with the same results as
+ * {@link CSVStringTokenizer}, but parsing the characters of the line in a
+ * single pass over a char buffer that is reused for the next line.
+ * Fields are returned as {@link CSVField} views into the line or as Strings.
+ * Quoted fields containing "" are unescaped in the buffer.
+ */
+class CSVCharTokenizer implements LineTokenizer<String, CharSequence> {
+    private static final char NO_QUOTE = '\0';
+
+    private final char[] separators;
+    private final char quoteChar;
+    private final boolean fieldViews;
+
+    private char[] buf = new char[256];
+    private String line;
+    private int pos, len;
+    /** true after a separator at the end of the line: there is one more (empty) field */
+    private boolean trailingField;
+    /**
+     * true after a non-empty or quoted field. as in CSVStringTokenizer, a separator at the end
+     * of the line is followed by an empty field only then (";" is a single empty field)
+     */
+    private boolean valueParsed;
+    private boolean lineIncomplete;
+
+    /**
+     * @param separators - a string with separator chars (e.g. ";")
+     * @param quoteChar  - the quote char (e.g. '"') or '\0' for none
+     * @param fieldViews - true: return CSVField views, false: return Strings
+     */
+    CSVCharTokenizer(String separators, char quoteChar, boolean fieldViews) {
+        this.separators = separators.toCharArray();
+        this.quoteChar = quoteChar;
+        this.fieldViews = fieldViews;
+    }
+
+    CSVCharTokenizer(String line, String separators) {
+        this(separators, '"', false);
+        reset(line);
+    }
+
+    /** start parsing the next line, reusing the buffer */
+    void reset(String aLine) {
+        line = aLine;
+        len = aLine.length();
+        if (buf.length < len) {
+            buf = new char[Math.max(len, buf.length * 2)];
+        }
+        aLine.getChars(0, len, buf, 0);
+        pos = 0;
+        trailingField = false;
+        valueParsed = false;
+        lineIncomplete = false;
+    }
+
+    public boolean isLineIncomplete() {
+        return lineIncomplete;
+    }
+
+    public CharSequence continueParse(CharSequence aSingleValue, String aRecord) {
+        reset(aRecord);
+        return aSingleValue + "\n" + parseQuoted();
+    }
+
+    public boolean hasMoreElements() {
+        return pos < len || trailingField;
+    }
+
+    public CharSequence nextElement() {
+        if (pos >= len) {
+            if (trailingField) {
+                trailingField = false;
+                return field(0, 0, false);
+            }
+            throw new NoSuchElementException();
+        }
+        char c = buf[pos];
+        if (c == quoteChar && c != NO_QUOTE) {
+            pos++;
+            return parseQuoted();
+        }
+        int start = pos;
+        while (pos < len && !isSeparator(buf[pos])) pos++;
+        int end = pos;
+        if (end > start) valueParsed = true;
+        skipSeparator();
+        return field(start, end, false);
+    }
+
+    /** parse from the char after the opening quote */
+    private CharSequence parseQuoted() {
+        valueParsed = true;
+        final int start = pos;
+        int write = pos;
+        boolean unescaped = false;
+        while (pos < len) {
+            char c = buf[pos++];
+            if (c == quoteChar) {
+                if (pos < len && buf[pos] == quoteChar) { // "" inside quotes
+                    buf[write++] = quoteChar;
+                    pos++;
+                    unescaped = true;
+                    continue;
+                }
+                if (pos < len && !isSeparator(buf[pos])) {
+                    throw new IllegalArgumentException(
+                            "separator expected, but found: " + buf[pos]);
+                }
+                skipSeparator();
+                return field(start, write, unescaped);
+            }
+            buf[write++] = c;
+        }
+        lineIncomplete = true;
+        return field(start, write, unescaped);
+    }
+
+    private void skipSeparator() {
+        if (pos < len) {
+            pos++; // separator
+            if (pos == len && valueParsed) trailingField = true;
+        }
+    }
+
+    private CharSequence field(int start, int end, boolean unescaped) {
+        if (unescaped) { // buffer content differs from the line
+            return new String(buf, start, end - start);
+        } else if (fieldViews) {
+            return new CSVField(line, start, end - start);
+        } else {
+            return line.substring(start, end);
+        }
+    }
+
+    private boolean isSeparator(char c) {
+        for (char each : separators) {
+            if (each == c) return true;
+        }
+        return false;
+    }
+}
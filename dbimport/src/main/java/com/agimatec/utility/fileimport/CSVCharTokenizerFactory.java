@@ -0,0 +1,67 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: Factory that creates tokenizers for csv lines,
+ * replacement for {@link CSVStringTokenizerFactory} with less cpu and memory consumption.
+ * Each thread reuses a single tokenizer (and its char buffer), so a tokenizer
+ * must be used completely before the next one is created in the same thread.
+ * The fields returned are not affected by this.
+ */
+public class CSVCharTokenizerFactory implements LineTokenizerFactory<String, CharSequence> {
+    private String delimeter = ";";
+    private char quoteChar = '"';
+    private boolean fieldViews = false;
+    private ThreadLocal<CSVCharTokenizer> tokenizers = new ThreadLocal<CSVCharTokenizer>();
+
+    /**
+     * @param aLine
+     * @return the CSVCharTokenizer of the current thread, reset to parse the given line
+     */
+    public LineTokenizer<String, CharSequence> createTokenizer(String aLine) {
+        CSVCharTokenizer tokenizer = tokenizers.get();
+        if (tokenizer == null) {
+            tokenizer = new CSVCharTokenizer(delimeter, quoteChar, fieldViews);
+            tokenizers.set(tokenizer);
+        }
+        tokenizer.reset(aLine);
+        return tokenizer;
+    }
+
+    public String getDelimeter() {
+        return delimeter;
+    }
+
+    /** @param delimeter - a string with separator chars (e.g. ";") */
+    public void setDelimeter(String delimeter) {
+        this.delimeter = delimeter;
+        tokenizers = new ThreadLocal<CSVCharTokenizer>();
+    }
+
+    public char getQuoteChar() {
+        return quoteChar;
+    }
+
+    /** @param quoteChar - the quote char, '\0' for none. default is '"' */
+    public void setQuoteChar(char quoteChar) {
+        this.quoteChar = quoteChar;
+        tokenizers = new ThreadLocal<CSVCharTokenizer>();
+    }
+
+    public boolean isFieldViews() {
+        return fieldViews;
+    }
+
+    /**
+     * @param fieldViews - true: the tokenizers return {@link CSVField} views instead of Strings,
+     *                   so that Strings are only created for the fields actually used.
+     *                   default is false.
+     */
+    public void setFieldViews(boolean fieldViews) {
+        this.fieldViews = fieldViews;
+        tokenizers = new ThreadLocal<CSVCharTokenizer>();
+    }
+
+    public LineReader<String> createLineReader() {
+        return new StringLineReader();
+    }
+}
@@ -0,0 +1,76 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: immutable view of a single field inside a csv or fixed length line.
+ * The String of the field is only created when toString() is called.<br>
+ *
+ * @see CSVCharTokenizerFactory#setFieldViews(boolean)
+ */
+public final class CSVField implements CharSequence, Comparable<CharSequence> {
+    private final String source;
+    private final int offset;
+    private final int length;
+    private String value;
+
+    CSVField(String source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new StringIndexOutOfBoundsException(index);
+        return source.charAt(offset + index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        return new CSVField(source, offset + start, end - start);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /** @return true when the content of the receiver is equal to the given string */
+    public boolean contentEquals(CharSequence other) {
+        if (other == null || other.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(offset + i) != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public int compareTo(CharSequence other) {
+        int n = Math.min(length, other.length());
+        for (int i = 0; i < n; i++) {
+            int diff = source.charAt(offset + i) - other.charAt(i);
+            if (diff != 0) return diff;
+        }
+        return length - other.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CSVField && contentEquals((CSVField) o));
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (value == null) {
+            value = source.substring(offset, offset + length);
+        }
+        return value;
+    }
+}
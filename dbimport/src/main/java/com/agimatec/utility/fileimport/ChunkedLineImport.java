@@ -0,0 +1,195 @@
+package com.agimatec.utility.fileimport;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Description: parse a local file in byte ranges (chunks) with multiple threads.
+ * Each chunk starts at the first line after its nominal start offset and ends with
+ * the last record starting before the next chunk. When a chunk did not start at a
+ * real record boundary (because a quoted field of the previous chunk contains
+ * line breaks), it is parsed again from the end of the previous chunk. A record
+ * may continue into the next chunk, but not further: otherwise the chunk is parsed
+ * again, too (a chunk starting within a quoted field could read to the end of the file).
+ * The parsed rows are passed to the processor in file order or, when the spec
+ * does not require it, in the order the chunks are finished (and validated).<br>
+ *
+ * @see LineImporterSpec#setParseThreads(int)
+ * @see LineImporterSpec#setMultiLineRecords(boolean)
+ */
+class ChunkedLineImport {
+    private final LineImportProcessor processor;
+    private final MappedFileLineReader reader;
+    private final long chunkSize;
+    private final int threads;
+
+    ChunkedLineImport(LineImportProcessor processor, MappedFileLineReader reader) {
+        this.processor = processor;
+        this.reader = reader;
+        this.chunkSize = Math.max(1, processor.getSpec().getParseChunkSize());
+        this.threads = processor.getSpec().getParseThreads();
+    }
+
+    /** parse the rows from the reader's current position to the end of the file */
+    void importChunks() throws Exception {
+        final long start = reader.getNextOffset();
+        final int chunkCount = (int) ((reader.getFileSize() - start + chunkSize - 1) / chunkSize);
+        final int window = threads * 2; // max. number of chunks parsed ahead
+        final boolean ordered = processor.getSpec().isRowOrderRequired();
+        // without multi-line records, each chunk starts at a record boundary
+        final boolean validate = processor.getSpec().isMultiLineRecords();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LineImportParser-" + (count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<ParsedChunk> completion =
+                new ExecutorCompletionService<ParsedChunk>(executor);
+        try {
+            Map<Integer, ParsedChunk> finished = new HashMap<Integer, ParsedChunk>();
+            Map<Integer, Future<ParsedChunk>> running = new HashMap<Integer, Future<ParsedChunk>>();
+            int submitted = 0;
+            int delivered = 0; // number of chunks delivered, the index of the next chunk when ordered
+            int lowest = 0; // lowest index of the chunks not delivered yet
+            Map<Integer, Long> ends = new HashMap<Integer, Long>(); // actual end of delivered chunks
+            ends.put(-1, start);
+            while (delivered < chunkCount && !processor.isCancelled()) {
+                while (submitted < chunkCount && submitted < lowest + window) {
+                    final int index = submitted++;
+                    Callable<ParsedChunk> task = new Callable<ParsedChunk>() {
+                        public ParsedChunk call() throws Exception {
+                            return parse(index, nominalStart(start, index), -1,
+                                    nominalStart(start, index + 1), validate);
+                        }
+                    };
+                    running.put(index, ordered ? executor.submit(task) : completion.submit(task));
+                }
+                if (processor.getImporter().getMetrics() != null) {
+                    processor.getImporter().getMetrics().setQueueDepth(running.size() + finished.size());
+                }
+                ParsedChunk chunk;
+                if (ordered) {
+                    chunk = running.remove(delivered).get();
+                } else {
+                    chunk = takeDeliverable(completion, running, finished, ends, validate);
+                }
+                if (validate) {
+                    long previousEnd = ends.get(chunk.index - 1);
+                    if (chunk.start != previousEnd || chunk.overrun) {
+                        // chunk started within a record: parse again
+                        chunk = parse(chunk.index, nominalStart(start, chunk.index), previousEnd,
+                                nominalStart(start, chunk.index + 1), false);
+                    }
+                }
+                deliver(chunk);
+                ends.put(chunk.index, chunk.end);
+                delivered++;
+                while (ends.containsKey(lowest)) lowest++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * unordered mode: wait for any chunk that can be delivered. when the chunks are validated,
+     * this is a chunk whose preceding chunk has been delivered, otherwise any finished chunk.
+     */
+    private ParsedChunk takeDeliverable(CompletionService<ParsedChunk> completion,
+                                        Map<Integer, Future<ParsedChunk>> running,
+                                        Map<Integer, ParsedChunk> finished,
+                                        Map<Integer, Long> ends, boolean validate) throws Exception {
+        while (true) {
+            for (Iterator<ParsedChunk> it = finished.values().iterator(); it.hasNext(); ) {
+                ParsedChunk each = it.next();
+                if (ends.containsKey(each.index - 1)) {
+                    it.remove();
+                    return each;
+                }
+            }
+            ParsedChunk chunk = completion.take().get();
+            running.remove(chunk.index);
+            if (!validate) return chunk;
+            finished.put(chunk.index, chunk);
+        }
+    }
+
+    private long nominalStart(long start, int index) {
+        return Math.min(reader.getFileSize(), start + index * chunkSize);
+    }
+
+    /**
+     * @param from   - known record start or -1 to start with the first line at or after nominalStart
+     * @param capped - true: the last record must end within the next chunk, otherwise the parsed
+     *               chunk is marked as overrun
+     */
+    private ParsedChunk parse(int index, long nominalStart, long from, long nominalEnd,
+                              boolean capped) throws Exception {
+        MappedFileLineReader chunkReader = reader.duplicate();
+        LineImportProcessor chunkProcessor = processor.createWorkerProcessor();
+        chunkProcessor.setLineReader(chunkReader);
+        try {
+            if (from < 0) {
+                if (index == 0) {
+                    from = nominalStart;
+                } else {
+                    chunkReader.seek(nominalStart - 1);
+                    chunkReader.readLine(); // skip the rest of the line
+                    from = chunkReader.getNextOffset();
+                }
+            }
+            chunkReader.seek(from);
+            if (capped) chunkReader.setLimit(nominalEnd + chunkSize);
+            ParsedChunk chunk = new ParsedChunk(index, from);
+            ImportMetrics metrics = processor.getImporter().getMetrics();
+            while (chunkReader.getNextOffset() < nominalEnd && !processor.isCancelled()) {
+                long start = metrics == null ? 0 : System.nanoTime();
+                Object line = chunkReader.readLine();
+                if (metrics != null) metrics.addReadTime(System.nanoTime() - start);
+                if (line == null) break;
+                LineImportProcessor.RowTask row = new LineImportProcessor.RowTask(
+                        0, line, chunkReader.getRecordOffset());
+                try {
+                    row.row = chunkProcessor.transferRow(line);
+                } catch (Exception ex) {
+                    row.error = ex;
+                }
+                if (chunkReader.isLimitReached()) {
+                    chunk.overrun = true;
+                    break;
+                }
+                chunk.rows.add(row);
+            }
+            chunk.end = chunkReader.getNextOffset();
+            return chunk;
+        } finally {
+            chunkProcessor.release();
+            chunkReader.close();
+        }
+    }
+
+    private void deliver(ParsedChunk chunk) throws ImporterException {
+        for (LineImportProcessor.RowTask row : chunk.rows) {
+            if (processor.isCancelled()) return;
+            processor.importTransferredRow(row);
+        }
+    }
+
+    private static class ParsedChunk {
+        final int index;
+        final long start;
+        long end;
+        /** true when the last record did not end within the next chunk */
+        boolean overrun;
+        final List<LineImportProcessor.RowTask> rows = new ArrayList<LineImportProcessor.RowTask>();
+
+        ParsedChunk(int index, long start) {
+            this.index = index;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Description: the decompressed content of a .gz, .zip or .bz2 stream.
+ * {@link #open(InputStream, int)} detects the compression by the magic bytes
+ * at the start of the stream. Of a zip file, the first file entry is read.
+ * bzip2 requires commons-compress in the classpath.
+ */
+public class CompressedInputStream extends FilterInputStream {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_SIZE = 18;
+    private static final String BZIP2_STREAM =
+            "org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream";
+
+    public static enum Compression {
+        GZIP, ZIP, BZIP2
+    }
+
+    private final Compression compression;
+
+    protected CompressedInputStream(InputStream in, Compression compression) {
+        super(in);
+        this.compression = compression;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * API - decompress the stream, when it is compressed.
+     *
+     * @param stream  - the stream to read
+     * @param threads - 0: decompress in the reading thread,
+     *                1: decompress in a separate thread ahead of the reading thread,
+     *                &gt; 1: inflate the members of a BGZF file (bgzip) with this number of threads
+     * @return the stream itself or a buffered stream, when it is not compressed,
+     *         a CompressedInputStream otherwise
+     */
+    public static InputStream open(InputStream stream, int threads) throws IOException {
+        if (stream instanceof CompressedInputStream) return stream;
+        byte[] magic = new byte[MAGIC_SIZE];
+        int length;
+        if (stream instanceof FileInputStream) { // keep the FileInputStream
+            FileChannel channel = ((FileInputStream) stream).getChannel();
+            long position = channel.position();
+            length = ReadAheadInputStream.readFully(stream, magic, 0, MAGIC_SIZE);
+            channel.position(position);
+        } else {
+            if (!stream.markSupported()) stream = new BufferedInputStream(stream, BUFFER_SIZE);
+            stream.mark(MAGIC_SIZE);
+            length = ReadAheadInputStream.readFully(stream, magic, 0, MAGIC_SIZE);
+            stream.reset();
+        }
+        Compression compression = detect(magic, length);
+        if (compression == null) return stream;
+        if (stream instanceof FileInputStream) stream = new BufferedInputStream(stream, BUFFER_SIZE);
+        InputStream decompressed;
+        if (compression == Compression.GZIP && threads > 1 && ParallelGzipInputStream.isBgzf(magic, length)) {
+            decompressed = new ParallelGzipInputStream(stream, threads);
+        } else {
+            decompressed = decompress(stream, compression);
+            if (threads > 0) decompressed = new ReadAheadInputStream(decompressed, BUFFER_SIZE, 4);
+        }
+        return new CompressedInputStream(decompressed, compression);
+    }
+
+    /** @return null when not compressed */
+    public static Compression detect(byte[] magic, int length) {
+        if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Compression.GZIP;
+        } else if (length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return Compression.ZIP;
+        } else if (length >= 10 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h' &&
+                magic[3] >= '1' && magic[3] <= '9' && magic[4] == 0x31 && magic[5] == 0x41 &&
+                magic[6] == 0x59 && magic[7] == 0x26 && magic[8] == 0x53 && magic[9] == 0x59) {
+            return Compression.BZIP2; // "BZh" + block size + block magic (pi)
+        }
+        return null;
+    }
+
+    private static InputStream decompress(InputStream stream, Compression compression)
+            throws IOException {
+        switch (compression) {
+            case GZIP: // reads all members of a multi-member file
+                return new GZIPInputStream(stream, BUFFER_SIZE);
+            case ZIP:
+                ZipInputStream zip = new ZipInputStream(stream);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null && entry.isDirectory()) {
+                }
+                return zip;
+            default:
+                try {
+                    return (InputStream) Class.forName(BZIP2_STREAM)
+                            .getConstructor(InputStream.class, boolean.class).newInstance(stream, true);
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException("bzip2 compressed input requires commons-compress");
+                } catch (Exception ex) {
+                    throw new IOException("Cannot read bzip2 compressed input", ex);
+                }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.agimatec.utility.fileimport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Description: small thread-safe LRU cache of converted values,
+ * for feeds that repeat the same date and number strings in many rows.
+ */
+final class ConverterCache<V> {
+    private final Map<String, V> entries;
+
+    ConverterCache(final int maxSize) {
+        entries = new LinkedHashMap<String, V>(maxSize * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    V get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    void put(String key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.zone.ZoneRules;
+import java.util.TimeZone;
+
+/**
+ * Description: immutable, thread-safe replacement of a SimpleDateFormat to parse date values,
+ * used by {@link SqlUtil#defDate(String, String)}.<br>
+ * Patterns that only consist of the fixed-width digit fields yyyy, MM, dd, HH, mm, ss
+ * and separators (e.g. yyyy-MM-dd, dd.MM.yyyy, yyyy-MM-dd HH:mm:ss, yyyyMMdd) are parsed
+ * by hand, when the value is a valid date of the same width and the local time is unique
+ * in the time zone. All other patterns and values are parsed by a (lenient) SimpleDateFormat
+ * per thread, so that the results are the same as with a SimpleDateFormat: e.g. 31.02.2008 is
+ * 02.03.2008, two-digit years and time zones (z, Z, X) are parsed the same way.
+ * The time zone is the default time zone at creation time.
+ */
+public final class DateConverter implements Serializable {
+    private static final char YEAR = 'y', MONTH = 'M', DAY = 'd', HOUR = 'H', MINUTE = 'm', SECOND = 's';
+
+    private final String pattern;
+    private final int cacheSize;
+    private final transient TimeZone timeZone;
+    private final transient ZoneRules zoneRules;
+    private final transient ThreadLocal<DateFormat> formats = new ThreadLocal<DateFormat>();
+    /** fast path: pattern char (or separator) for each position of the value, null when not supported */
+    private final transient char[] fixedPattern;
+    private final transient ConverterCache<Long> cache;
+
+    public DateConverter(String pattern) {
+        this(pattern, 0);
+    }
+
+    /**
+     * @param pattern   - SimpleDateFormat pattern
+     * @param cacheSize - max. number of values to cache, 0 for no cache
+     */
+    public DateConverter(String pattern, int cacheSize) {
+        this.pattern = pattern;
+        this.cacheSize = cacheSize;
+        new SimpleDateFormat(pattern); // IllegalArgumentException: invalid pattern
+        this.timeZone = TimeZone.getDefault();
+        this.zoneRules = timeZone.toZoneId().getRules();
+        this.fixedPattern = compileFixedPattern(pattern);
+        this.cache = cacheSize > 0 ? new ConverterCache<Long>(cacheSize) : null;
+    }
+
+    /** @return the chars of the pattern with quotes removed, or null when not only fixed-width digit fields */
+    private static char[] compileFixedPattern(String pattern) {
+        StringBuilder fixed = new StringBuilder(pattern.length());
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                if (Character.isDigit(c)) return null;
+                fixed.append(c);
+            } else if (Character.isLetter(c)) {
+                int width = 1;
+                while (i + width < pattern.length() && pattern.charAt(i + width) == c) width++;
+                if (!(c == YEAR && width == 4) && !(width == 2 && (c == MONTH || c == DAY ||
+                        c == HOUR || c == MINUTE || c == SECOND))) {
+                    return null;
+                }
+                for (int w = 0; w < width; w++) fixed.append(c);
+                i += width - 1;
+            } else if (Character.isDigit(c)) {
+                return null;
+            } else {
+                fixed.append(c);
+            }
+        }
+        return quoted ? null : fixed.toString().toCharArray();
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public java.sql.Date date(String value) throws ParseException {
+        return new java.sql.Date(millis(value));
+    }
+
+    public java.sql.Timestamp timestamp(String value) throws ParseException {
+        return new java.sql.Timestamp(millis(value));
+    }
+
+    public java.sql.Time time(String value) throws ParseException {
+        return new java.sql.Time(millis(value));
+    }
+
+    /** @return the milliseconds since 1970 of the value in the default time zone */
+    public long millis(String value) throws ParseException {
+        if (cache != null) {
+            Long cached = cache.get(value);
+            if (cached != null) return cached;
+        }
+        LocalDateTime dateTime = fixedPattern == null ? null : parseFixed(value);
+        long millis;
+        // the local time must not be in the gap or overlap of a daylight saving time change
+        if (dateTime != null && zoneRules.getValidOffsets(dateTime).size() == 1) {
+            millis = dateTime.toEpochSecond(zoneRules.getOffset(dateTime)) * 1000;
+        } else {
+            millis = parse(value);
+        }
+        if (cache != null) cache.put(value, millis);
+        return millis;
+    }
+
+    /** @return null when the value cannot be parsed by the fast path */
+    private LocalDateTime parseFixed(String value) {
+        if (value.length() != fixedPattern.length) return null;
+        int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0;
+        int i = 0;
+        while (i < fixedPattern.length) {
+            char field = fixedPattern[i];
+            if (!Character.isLetter(field)) {
+                if (value.charAt(i++) != field) return null;
+                continue;
+            }
+            int number = 0;
+            do {
+                int digit = value.charAt(i) - '0';
+                if (digit < 0 || digit > 9) return null;
+                number = number * 10 + digit;
+            } while (++i < fixedPattern.length && fixedPattern[i] == field);
+            switch (field) {
+                case YEAR: year = number; break;
+                case MONTH: month = number; break;
+                case DAY: day = number; break;
+                case HOUR: hour = number; break;
+                case MINUTE: minute = number; break;
+                default: second = number;
+            }
+        }
+        // before 1900: julian calendar and local mean time of SimpleDateFormat
+        if (year < 1900 || month < 1 || month > 12 || day < 1 || day > 28 && day > Month.of(month).length(Year.isLeap(year)) ||
+                hour > 23 || minute > 59 || second > 59) {
+            return null; // let the SimpleDateFormat resolve or reject it
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second);
+    }
+
+    private long parse(String value) throws ParseException {
+        DateFormat format = formats.get();
+        if (format == null) {
+            format = new SimpleDateFormat(pattern);
+            format.setTimeZone(timeZone);
+            formats.set(format);
+        }
+        return format.parse(value).getTime();
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return new DateConverter(pattern, cacheSize);
+    }
+}
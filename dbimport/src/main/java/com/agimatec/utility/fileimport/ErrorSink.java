@@ -0,0 +1,202 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.Closeable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Description: receives the rows that could not be imported.
+ * The raw lines are written to the error writer of the processor and the exceptions
+ * are logged with their stack trace - but only the first traceLimit of them, afterwards
+ * only the number of errors per exception type is logged.
+ * With a queueSize > 0, the lines are written by a separate thread, so that
+ * the import does not wait for the log and the error writer. When the queue is full,
+ * the import thread waits, so that no line gets lost.
+ * The sink also decides whether the error rate is too high to continue the import.
+ */
+public class ErrorSink implements Closeable {
+    /** number of suppressed traces after which the counts per exception type are logged */
+    public static final int SUMMARY_INTERVAL = 10000;
+
+    private static final Entry END = new Entry(null, null, null);
+
+    private final ImporterProcessor processor;
+    private final int traceLimit;
+    private double maxErrorRate;
+    private int minRows = 1000;
+    private final BlockingQueue<Entry> queue;
+    private Thread writerThread;
+
+    /* state of the writing thread */
+    private int traced;
+    private int suppressedTotal;
+    private final Map<String, Integer> suppressed = new LinkedHashMap<String, Integer>();
+
+    /**
+     * @param processor  - the processor with the error writer to write the lines to
+     * @param queueSize  - 0 to write the errors in the importing thread,
+     *                   otherwise max. number of errors waiting for the writing thread
+     * @param traceLimit - number of exceptions logged with stack trace, -1 for all
+     */
+    public ErrorSink(ImporterProcessor processor, int queueSize, int traceLimit) {
+        this.processor = processor;
+        this.traceLimit = traceLimit;
+        if (queueSize > 0) {
+            queue = new ArrayBlockingQueue<Entry>(queueSize);
+            writerThread = new Thread(new Runnable() {
+                public void run() {
+                    drain();
+                }
+            }, "ImportErrorSink");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            queue = null;
+        }
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * @param maxErrorRate - 0 (default) to never cancel, otherwise the ratio errors/rows
+     *                     above which the import gets cancelled, e.g. 0.1 for 10%
+     */
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    public int getMinRows() {
+        return minRows;
+    }
+
+    /** @param minRows - number of rows to read, before the error rate is checked (default: 1000) */
+    public void setMinRows(int minRows) {
+        this.minRows = minRows;
+    }
+
+    /**
+     * @return true when the import should be cancelled because of too many errors
+     */
+    public boolean isErrorRateExceeded(int rows, int errors) {
+        return maxErrorRate > 0 && rows >= minRows && errors > maxErrorRate * rows;
+    }
+
+    /**
+     * add a row that could not be imported.
+     * the line and the description are converted to Strings before this method returns,
+     * because the reader may reuse the line object.
+     *
+     * @param description - text to identify the row in the log
+     * @param ex          - the exception caused by the row
+     * @param aLine       - the raw line to write to the error writer
+     */
+    public void add(String description, Exception ex, Object aLine) {
+        Entry entry = new Entry(description, ex, String.valueOf(aLine));
+        if (queue == null) {
+            write(entry);
+        } else {
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ImporterException(e, true);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Entry entry;
+            while ((entry = queue.take()) != END) {
+                try {
+                    write(entry);
+                } catch (RuntimeException ex) {
+                    processor.log(ex);
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() was interrupted, stop writing
+        }
+    }
+
+    private void write(Entry entry) {
+        if (traceLimit < 0 || traced < traceLimit) {
+            traced++;
+            processor.log(entry.description + " caused exception:");
+            processor.log(entry.exception);
+            if (traced == traceLimit) {
+                processor.log("Logged " + traceLimit +
+                        " exceptions, further exceptions are only counted.");
+            }
+        } else {
+            String type = entry.exception.getClass().getName();
+            Integer count = suppressed.get(type);
+            suppressed.put(type, count == null ? 1 : count + 1);
+            if (++suppressedTotal % SUMMARY_INTERVAL == 0) logSummary();
+        }
+        try {
+            Writer writer = processor.getErrorWriter();
+            writer.write(entry.line);
+            writer.write('\n');
+        } catch (Exception ex) {
+            processor.log(ex);
+        }
+    }
+
+    private void logSummary() {
+        List<String> counts = new ArrayList<String>(suppressed.size());
+        for (Map.Entry<String, Integer> each : suppressed.entrySet()) {
+            counts.add(each.getKey() + "=" + each.getValue());
+        }
+        processor.log("Exceptions not logged: " + suppressedTotal + " " + counts);
+    }
+
+    /** @return number of errors per exception type that have not been logged with stack trace */
+    public Map<String, Integer> getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * write all remaining errors, stop the writing thread and log the number of
+     * exceptions not logged. Does not close the error writer.
+     */
+    public void close() {
+        if (writerThread != null) {
+            try {
+                queue.put(END);
+                writerThread.join();
+            } catch (InterruptedException e) {
+                writerThread.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+        if (suppressedTotal % SUMMARY_INTERVAL != 0) logSummary();
+        if (traced > 0 || suppressedTotal > 0) {
+            try {
+                processor.getErrorWriter().flush();
+            } catch (Exception ex) {
+                processor.log(ex);
+            }
+        }
+    }
+
+    private static class Entry {
+        final String description;
+        final Exception exception;
+        final String line;
+
+        Entry(String description, Exception exception, String line) {
+            this.description = description;
+            this.exception = exception;
+            this.line = line;
+        }
+    }
+}
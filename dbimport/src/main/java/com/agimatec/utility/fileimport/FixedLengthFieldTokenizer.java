@@ -0,0 +1,58 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: slice a line with a precompiled {@link FixedLengthLayout}.
+ * Returns the trimmed columns as Strings or - with fieldViews - as views
+ * into the line ({@link CSVField} for String lines, {@link ByteLine} for byte lines).
+ * Ignored columns are skipped without creating or decoding anything.
+ * Can be reused for the next line with reset().
+ */
+class FixedLengthFieldTokenizer implements LineTokenizer<CharSequence, CharSequence> {
+    private final FixedLengthLayout layout;
+    private final boolean fieldViews;
+    private CharSequence line;
+    private int column;
+
+    FixedLengthFieldTokenizer(FixedLengthLayout layout, boolean fieldViews) {
+        this.layout = layout;
+        this.fieldViews = fieldViews;
+    }
+
+    /** @throws IllegalArgumentException - line is shorter than the layout */
+    void reset(CharSequence aLine) {
+        if (aLine == null || aLine.length() == 0)
+            throw new IllegalArgumentException("String must not be null or empty!");
+        if (aLine.length() < layout.getRecordLength()) {
+            throw new IllegalArgumentException(
+                    "The cumulated length is longer than the length of the row!");
+        }
+        line = aLine;
+        column = 0;
+    }
+
+    public boolean hasMoreElements() {
+        return column < layout.getColumnCount();
+    }
+
+    public CharSequence nextElement() {
+        int start = layout.getStart(column);
+        int end = layout.getEnd(column++);
+        if (line instanceof ByteLine) {
+            ByteLine field = ((ByteLine) line).trim(start, end);
+            return fieldViews ? field : field.toString();
+        }
+        while (start < end && line.charAt(start) <= ' ') start++;
+        while (end > start && line.charAt(end - 1) <= ' ') end--;
+        String source = line.toString();
+        return fieldViews ? new CSVField(source, start, end - start) : source.substring(start, end);
+    }
+
+    /** this format does not support multi-line records */
+    public boolean isLineIncomplete() {
+        return false;
+    }
+
+    public CharSequence continueParse(CharSequence aSingleValue, CharSequence aRecord) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,93 @@
+package com.agimatec.utility.fileimport;
+
+import java.nio.charset.Charset;
+
+/**
+ * Description: Factory that creates tokenizers for lines with fixed length columns,
+ * like {@link FixedLengthStringTokenizerFactory}, but the lines and the columns
+ * are CharSequences: optionally views into the line instead of Strings
+ * and lines read as bytes of a single-byte charset.
+ * Each thread reuses a single tokenizer, so a tokenizer
+ * must be used completely before the next one is created in the same thread.
+ */
+public class FixedLengthFieldTokenizerFactory
+        implements LineTokenizerFactory<CharSequence, CharSequence>
+{
+    private int[] fixedLengths;
+    private FixedLengthLayout layout;
+    private boolean fieldViews = false;
+    private Charset singleByteCharset;
+    private ThreadLocal<FixedLengthFieldTokenizer> tokenizers =
+            new ThreadLocal<FixedLengthFieldTokenizer>();
+
+    /**
+     * @param aLine - a String or a ByteLine
+     * @return the tokenizer of the current thread, reset to slice the given line
+     */
+    public LineTokenizer<CharSequence, CharSequence> createTokenizer(CharSequence aLine) {
+        FixedLengthFieldTokenizer tokenizer = tokenizers.get();
+        if (tokenizer == null) {
+            if (layout == null) {
+                layout = new FixedLengthLayout(fixedLengths);
+            }
+            tokenizer = new FixedLengthFieldTokenizer(layout, fieldViews);
+            tokenizers.set(tokenizer);
+        }
+        tokenizer.reset(aLine);
+        return tokenizer;
+    }
+
+    public int[] getFixedLengths() {
+        return fixedLengths;
+    }
+
+    /**
+     * @param fixedLengths - fixed length of each column. when fixedLength < 0, the column
+     *                     will be ignored by the tokenizer and has the length of abs(fixedLength)
+     */
+    public void setFixedLengths(int[] fixedLengths) {
+        this.fixedLengths = fixedLengths;
+        this.layout = fixedLengths == null ? null : new FixedLengthLayout(fixedLengths);
+        tokenizers = new ThreadLocal<FixedLengthFieldTokenizer>();
+    }
+
+    public boolean isFieldViews() {
+        return fieldViews;
+    }
+
+    /**
+     * @param fieldViews - true: the tokenizers return views into the line ({@link CSVField} or
+     *                   {@link ByteLine}) instead of Strings, so that Strings are only created
+     *                   for the fields actually used. default is false.
+     */
+    public void setFieldViews(boolean fieldViews) {
+        this.fieldViews = fieldViews;
+        tokenizers = new ThreadLocal<FixedLengthFieldTokenizer>();
+    }
+
+    public String getSingleByteCharset() {
+        return singleByteCharset == null ? null : singleByteCharset.name();
+    }
+
+    /**
+     * @param charsetName - null (default): lines are read as Strings.
+     *                    otherwise the name of a single-byte charset: the lines are read as bytes
+     *                    ({@link SingleByteLineReader}) and only the columns that are
+     *                    not ignored are decoded. requires to import from an InputStream.
+     * @throws IllegalArgumentException - not a single-byte charset
+     */
+    public void setSingleByteCharset(String charsetName) {
+        Charset charset = charsetName == null ? null : Charset.forName(charsetName);
+        if (charset != null && !SingleByteLineReader.isSingleByte(charset)) {
+            throw new IllegalArgumentException("Charset not supported: " + charsetName);
+        }
+        this.singleByteCharset = charset;
+    }
+
+    public LineReader<CharSequence> createLineReader() {
+        if (singleByteCharset != null) {
+            return new SingleByteLineReader(singleByteCharset);
+        }
+        return (LineReader) new StringLineReader();
+    }
+}
@@ -0,0 +1,58 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: the column layout of fixed length records, compiled once
+ * from the fixed lengths into the offsets of the columns that are not ignored,
+ * so that a line can be sliced without validating the lengths again.
+ */
+public final class FixedLengthLayout {
+    private final int[] starts;
+    private final int[] ends;
+    private final int recordLength;
+
+    /**
+     * @param fixedLengths - fixed length of each column. when fixedLength < 0, the column
+     *                     will be ignored and has the length of abs(fixedLength)
+     * @throws IllegalArgumentException - fixedLengths null or empty
+     */
+    public FixedLengthLayout(int[] fixedLengths) {
+        if (fixedLengths == null || fixedLengths.length == 0)
+            throw new IllegalArgumentException("fixedLengths must not be null or empty!");
+        int columns = 0;
+        for (int length : fixedLengths) {
+            if (length > 0) columns++;
+        }
+        starts = new int[columns];
+        ends = new int[columns];
+        int position = 0;
+        int column = 0;
+        for (int length : fixedLengths) {
+            if (length > 0) {
+                starts[column] = position;
+                ends[column++] = position + length;
+            }
+            position += Math.abs(length);
+        }
+        recordLength = position;
+    }
+
+    /** @return number of columns that are not ignored */
+    public int getColumnCount() {
+        return starts.length;
+    }
+
+    /** @return offset of the first char of the column */
+    public int getStart(int column) {
+        return starts[column];
+    }
+
+    /** @return offset after the last char of the column */
+    public int getEnd(int column) {
+        return ends[column];
+    }
+
+    /** @return the cumulated length of all columns, the minimum length of a line */
+    public int getRecordLength() {
+        return recordLength;
+    }
+}
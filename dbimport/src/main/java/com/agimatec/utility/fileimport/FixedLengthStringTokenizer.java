@@ -1,9 +1,5 @@
 package com.agimatec.utility.fileimport;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 /**
  * Description: <br/>
  * User: roman.stumm <br/>
@@ -11,8 +7,8 @@ import java.util.List;
  * Time: 19:20:27 <br/>
  */
 class FixedLengthStringTokenizer implements LineTokenizer<String, String> {
-    private List myStringList = new ArrayList();
-    private Iterator<String> myStringListIterator = null;
+    /** slices String lines into trimmed Strings */
+    private final FixedLengthFieldTokenizer fields;
 
     /**
      * negative Werte in fixedLengths stehen für absolute Anzahl Zeichen, die zu ignoreren sind
@@ -21,41 +17,25 @@ class FixedLengthStringTokenizer implements LineTokenizer<String, String> {
      * will be ignored by the tokenizer and has the length of abs(fixedLength)
      */
     public FixedLengthStringTokenizer(String aString, int[] fixedLengths) {
-        //Prueft ob die Argumente nicht null oder leer sind
-        if (aString == null || "".equals(aString))
-            throw new IllegalArgumentException("String must not be null or empty!");
-        if (fixedLengths == null || fixedLengths.length == 0)
-            throw new IllegalArgumentException("fixedLengths must not be null or empty!");
+        this(new FixedLengthLayout(fixedLengths));
+        reset(aString);
+    }
 
-        if (makeMyStringList(aString, fixedLengths)) {
-            myStringListIterator = myStringList.iterator();
-        }
+    FixedLengthStringTokenizer(FixedLengthLayout layout) {
+        fields = new FixedLengthFieldTokenizer(layout, false);
     }
 
-    private boolean makeMyStringList(String aString, int[] lengths) {
-        int positionString = 0;
-        for (int length : lengths) {
-            int absLength = Math.abs(length);
-            if (positionString + absLength > aString.length()) {
-                throw new IllegalArgumentException(
-                        "The cumulated length is longer than the length of the row!");
-            }
-            if (length > 0) { // length <= 0 ==> ignore
-                String aktToken =
-                        aString.substring(positionString, positionString + length);
-                myStringList.add(aktToken.trim());
-            }
-            positionString += absLength;
-        }
-        return true;
+    /** @throws IllegalArgumentException - line is shorter than the layout */
+    void reset(String aLine) {
+        fields.reset(aLine);
     }
 
     public boolean hasMoreElements() {
-        return myStringListIterator.hasNext();
+        return fields.hasMoreElements();
     }
 
     public String nextElement() {
-        return myStringListIterator.next();
+        return (String) fields.nextElement();
     }
 
     /** this format does not support multi-line records as far as I know */
@@ -1,7 +1,11 @@
 package com.agimatec.utility.fileimport;
 
 /**
- * Description: Factory that creates FixedLengthStringTokenizer <br/>
+ * Description: Factory that creates FixedLengthStringTokenizer.
+ * The fixed lengths are compiled once into a {@link FixedLengthLayout}.
+ * Each thread reuses a single tokenizer, so a tokenizer
+ * must be used completely before the next one is created in the same thread.
+ * (see {@link FixedLengthFieldTokenizerFactory} for field views and single-byte lines)<br/>
  * User: roman.stumm <br/>
  * Date: 11.09.2007 <br/>
  * Time: 19:30:59 <br/>
@@ -9,17 +13,36 @@ package com.agimatec.utility.fileimport;
 public class FixedLengthStringTokenizerFactory implements LineTokenizerFactory<String, String>
 {
     private int[] fixedLengths;
+    private FixedLengthLayout layout;
+    private ThreadLocal<FixedLengthStringTokenizer> tokenizers =
+            new ThreadLocal<FixedLengthStringTokenizer>();
 
+    /** @return the tokenizer of the current thread, reset to slice the given line */
     public LineTokenizer<String, String> createTokenizer(String aLine) {
-        return new FixedLengthStringTokenizer(aLine, fixedLengths);
+        FixedLengthStringTokenizer tokenizer = tokenizers.get();
+        if (tokenizer == null) {
+            if (layout == null) {
+                layout = new FixedLengthLayout(fixedLengths);
+            }
+            tokenizer = new FixedLengthStringTokenizer(layout);
+            tokenizers.set(tokenizer);
+        }
+        tokenizer.reset(aLine);
+        return tokenizer;
     }
 
     public int[] getFixedLengths() {
         return fixedLengths;
     }
 
+    /**
+     * @param fixedLengths - fixed length of each column. when fixedLength < 0, the column
+     *                     will be ignored by the tokenizer and has the length of abs(fixedLength)
+     */
     public void setFixedLengths(int[] fixedLengths) {
         this.fixedLengths = fixedLengths;
+        this.layout = fixedLengths == null ? null : new FixedLengthLayout(fixedLengths);
+        tokenizers = new ThreadLocal<FixedLengthStringTokenizer>();
     }
 
     public LineReader<String> createLineReader() {
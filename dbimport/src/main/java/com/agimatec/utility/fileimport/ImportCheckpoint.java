@@ -0,0 +1,85 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Description: a row in table import_checkpoint can be represented by an instance
+ * of this class. It contains the position of the last row of an import that has been
+ * committed, so that an interrupted import can be resumed after this row.
+ * <pre>
+ * CREATE TABLE Import_Checkpoint (
+ *     import_id INTEGER NOT NULL,
+ *     row_count INTEGER NOT NULL,
+ *     error_count INTEGER NOT NULL,
+ *     record_offset NUMERIC(19) NOT NULL,
+ *     spec_state VARCHAR(2000),
+ *     checkpoint_time TIMESTAMP NOT NULL,
+ *     CONSTRAINT Import_Checkpoint_pkey PRIMARY KEY (import_id),
+ *     CONSTRAINT Import_Checkpoint_FK FOREIGN KEY (import_id)
+ *         REFERENCES Import_Control (import_id) ON DELETE CASCADE );
+ * </pre>
+ * The table is created by dbmigrate-example/oracle/setup/create-tables.sql, existing schemas
+ * are upgraded with oracle/upgrade/up-2.3.1_import_checkpoint.sql.
+ *
+ * @see ImportController#saveCheckpoint(ImportCheckpoint)
+ * @see LineImportProcessor#setResumePoint(ImportCheckpoint)
+ */
+public class ImportCheckpoint implements Serializable {
+    protected long importId;
+    protected int rowCount;
+    protected int errorCount;
+    protected long recordOffset = -1; // byte offset of the last committed record or -1 (unknown)
+    protected String state; // optional. provided by the ImporterSpec.
+    protected Timestamp checkpointTime;
+
+    public long getImportId() {
+        return importId;
+    }
+
+    public void setImportId(long importId) {
+        this.importId = importId;
+    }
+
+    /** @return rowCount of the processor after the last committed row */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(int errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    /** @return byte offset of the last committed record or -1 when the rows must be skipped */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    public void setRecordOffset(long recordOffset) {
+        this.recordOffset = recordOffset;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Timestamp getCheckpointTime() {
+        return checkpointTime;
+    }
+
+    public void setCheckpointTime(Timestamp checkpointTime) {
+        this.checkpointTime = checkpointTime;
+    }
+}
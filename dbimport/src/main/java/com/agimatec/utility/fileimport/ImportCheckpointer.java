@@ -0,0 +1,65 @@
+package com.agimatec.utility.fileimport;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Description: saves a checkpoint of an import with the {@link ImportController}
+ * every checkpointInterval rows. A processor calls {@link LineImportProcessor#checkpoint()}
+ * when the rows processed so far have been committed
+ * (the {@link com.agimatec.utility.fileimport.jdbc.JdbcBatchImportProcessor} does this on each commit).
+ * When the controller uses the connection of the import, the checkpoint is saved in the same
+ * transaction as the rows.<br>
+ *
+ * @see LineImporterSpec#setCheckpointer(ImportCheckpointer)
+ */
+public class ImportCheckpointer {
+    protected final ImportController controller;
+    protected final ImportControl control;
+    protected final int checkpointInterval;
+    private int lastRowCount;
+
+    /**
+     * @param checkpointInterval - min. number of rows between two checkpoints
+     */
+    public ImportCheckpointer(ImportController controller, ImportControl control,
+                              int checkpointInterval) {
+        this.controller = controller;
+        this.control = control;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public ImportControl getControl() {
+        return control;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /** @return true when the processor has processed checkpointInterval rows since the last checkpoint */
+    public boolean isDue(LineImportProcessor processor) {
+        return processor.getRowCount() - lastRowCount >= checkpointInterval;
+    }
+
+    /** @return true when the checkpoint is saved with the given connection */
+    public boolean isSameConnection(Connection connection) {
+        return controller.getConnection() == connection;
+    }
+
+    /** save the checkpoint and the row/error count of the import */
+    public void checkpoint(LineImportProcessor processor) throws SQLException {
+        ImportCheckpoint checkpoint = processor.createCheckpoint();
+        checkpoint.setImportId(control.getImportId());
+        controller.saveCheckpoint(checkpoint);
+        control.setRowCount(checkpoint.getRowCount());
+        control.setErrorCount(checkpoint.getErrorCount());
+        controller.update(control);
+        lastRowCount = checkpoint.getRowCount();
+    }
+
+    /** the import continues after the given checkpoint */
+    public void resumed(ImportCheckpoint checkpoint) {
+        lastRowCount = checkpoint.getRowCount();
+    }
+}
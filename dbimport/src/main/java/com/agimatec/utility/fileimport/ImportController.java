@@ -26,8 +26,9 @@ public class ImportController {
     protected String selectAll, selectByName, selectById;
     protected String insert;
     protected String lockByName;
-    protected String update;
+    protected String update, updateCounts;
     protected String deleteByName, deleteById;
+    protected String selectCheckpoint, insertCheckpoint, updateCheckpoint, deleteCheckpoint;
 
     private void initStatements() {
         lockByName = "UPDATE Import_Control SET STATUS=STATUS where import_name=?";
@@ -46,8 +47,19 @@ public class ImportController {
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
         update =
               "UPDATE Import_Control SET end_time = ?, status = ?, row_count = ?, error_count = ?, error_message = ? WHERE import_id = ?";
+        updateCounts = "UPDATE Import_Control SET row_count = ?, error_count = ? WHERE import_id = ?";
         deleteByName = "DELETE FROM Import_Control WHERE Import_Name = ?";
         deleteById = "DELETE FROM Import_Control WHERE Import_Id = ?";
+
+        selectCheckpoint =
+              "SELECT import_id,row_count,error_count,record_offset,spec_state,checkpoint_time " +
+                    "FROM Import_Checkpoint WHERE import_id = ?";
+        insertCheckpoint =
+              "INSERT INTO Import_Checkpoint (row_count, error_count, record_offset, spec_state, checkpoint_time, import_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+        updateCheckpoint =
+              "UPDATE Import_Checkpoint SET row_count = ?, error_count = ?, record_offset = ?, spec_state = ?, checkpoint_time = ? WHERE import_id = ?";
+        deleteCheckpoint = "DELETE FROM Import_Checkpoint WHERE import_id = ?";
     }
 
     /** @param util - a sequence under symbolic name "import_id" must be defined!! */
@@ -252,6 +264,28 @@ public class ImportController {
         update(imp);
     }
 
+    /**
+     * update only rowCount and errorCount of a running import, e.g. from a monitoring thread
+     * with a connection of its own. the row is not inserted when it does not exist (yet).
+     *
+     * @param queryTimeout - max. seconds to wait, e.g. for a lock on the row, 0 = no limit
+     * @return false when the row has not been found
+     * @throws SQLException
+     */
+    public boolean updateCounts(long importId, int rowCount, int errorCount, int queryTimeout)
+          throws SQLException {
+        PreparedStatement updateStmt = connection.prepareStatement(updateCounts);
+        try {
+            if (queryTimeout > 0) updateStmt.setQueryTimeout(queryTimeout);
+            updateStmt.setInt(1, rowCount);
+            updateStmt.setInt(2, errorCount);
+            updateStmt.setLong(3, importId);
+            return updateStmt.executeUpdate() > 0;
+        } finally {
+            updateStmt.close();
+        }
+    }
+
     /**
      * insert the importcontrol row into the database.
      * set startTime=now() and status=RUNNING with still null.
@@ -363,10 +397,109 @@ public class ImportController {
         stmt.setLong(7, imp.importId);
     }
 
+    /**
+     * save the checkpoint of a running import in table 'IMPORT_CHECKPOINT'
+     * (insert or update).
+     *
+     * @throws SQLException
+     * @see ImportCheckpoint
+     */
+    public void saveCheckpoint(ImportCheckpoint checkpoint) throws SQLException {
+        checkpoint.checkpointTime = now();
+        PreparedStatement stmt = connection.prepareStatement(updateCheckpoint);
+        try {
+            setCheckpointParameters(stmt, checkpoint);
+            if (stmt.executeUpdate() > 0) return;
+        } finally {
+            stmt.close();
+        }
+        stmt = connection.prepareStatement(insertCheckpoint);
+        try {
+            setCheckpointParameters(stmt, checkpoint);
+            stmt.executeUpdate();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /** @return the checkpoint of the import or null */
+    public ImportCheckpoint findCheckpoint(long importId) throws SQLException {
+        PreparedStatement selectStmt = connection.prepareStatement(selectCheckpoint);
+        try {
+            selectStmt.setLong(1, importId);
+            ResultSet result = selectStmt.executeQuery();
+            ImportCheckpoint row = null;
+            if (result.next()) {
+                row = new ImportCheckpoint();
+                row.importId = result.getLong(1);
+                row.rowCount = result.getInt(2);
+                row.errorCount = result.getInt(3);
+                row.recordOffset = result.getLong(4);
+                row.state = result.getString(5);
+                row.checkpointTime = result.getTimestamp(6);
+            }
+            result.close();
+            return row;
+        } finally {
+            selectStmt.close();
+        }
+    }
+
+    /**
+     * delete the checkpoint of the import, e.g. when the import is done
+     *
+     * @return true when something has been deleted, false otherwise (not found)
+     * @throws SQLException
+     */
+    public boolean deleteCheckpoint(long importId) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(deleteCheckpoint);
+        try {
+            stmt.setLong(1, importId);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * find the last import with the given name, when it has not been finished (status RUNNING
+     * or CANCELLED), read the same file and has a checkpoint to resume from.
+     *
+     * @param fileName - null or the file name of the import
+     * @return null or the import to resume
+     * @throws SQLException
+     */
+    public ImportControl findResumable(String importName, String fileName) throws SQLException {
+        List<ImportControl> imports = findByName(importName);
+        if (imports.isEmpty()) return null;
+        ImportControl last = imports.get(imports.size() - 1);
+        if (last.status == ImportState.DONE ||
+              (fileName == null ? last.fileName != null : !fileName.equals(last.fileName)) ||
+              findCheckpoint(last.importId) == null) {
+            return null;
+        }
+        return last;
+    }
+
+    //  (row_count, error_count, record_offset, spec_state, checkpoint_time, import_id)
+    private void setCheckpointParameters(PreparedStatement stmt, ImportCheckpoint checkpoint)
+          throws SQLException {
+        stmt.setInt(1, checkpoint.rowCount);
+        stmt.setInt(2, checkpoint.errorCount);
+        stmt.setLong(3, checkpoint.recordOffset);
+        stmt.setString(4, checkpoint.state);
+        stmt.setTimestamp(5, checkpoint.checkpointTime);
+        stmt.setLong(6, checkpoint.importId);
+    }
+
     public SqlUtil getSqlUtil() {
         return sqlUtil;
     }
 
+    public Connection getConnection() {
+        return connection;
+    }
+
     private static java.sql.Timestamp now() {
         return new java.sql.Timestamp(System.currentTimeMillis());
     }
@@ -1,6 +1,10 @@
 package com.agimatec.utility.fileimport;
 
+import com.agimatec.utility.fileimport.spreadsheet.StreamingExcelRowReader;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -9,6 +13,8 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Job definition of a dbimport job.
@@ -34,6 +40,19 @@ public class ImportJob {
 
   protected Importer importer;
   protected InputStream readStream;
+  /** the local file of the readStream or null */
+  protected File readFile;
+  protected boolean mappedFiles = true;
+  protected int mappedWindowSize = MappedFileLineReader.DEFAULT_WINDOW_SIZE;
+  protected int decompressThreads = 1;
+  protected int checkpointInterval = 0;
+  /** null or the checkpoint of the import to resume */
+  protected ImportCheckpoint resumePoint;
+  protected long metricsInterval = 0;
+  protected Connection metricsConnection;
+  protected boolean metricsMBean = false;
+  protected final List<ImportMetricsListener> metricsListeners = new ArrayList<ImportMetricsListener>();
+  protected ImportMetricsReporter metricsReporter;
 
   public ImportJob() {
   }
@@ -82,7 +101,12 @@ public class ImportJob {
   public void importFromStream(ImporterSpec spec) throws Exception {
     openURL(spec);
     try {
-      importer.importFrom(readStream);
+      StreamingExcelRowReader fileReader = createFileReader(spec);
+      if (fileReader != null) {
+        ((LineImportProcessor) importer.getProcessor()).importFrom(fileReader);
+      } else {
+        importer.importFrom(readStream);
+      }
     } catch (Exception ex) {
       handleException(ex);
     } finally {
@@ -97,7 +121,14 @@ public class ImportJob {
   public void importFromReader(ImporterSpec spec, String charset) throws Exception {
     openURL(spec);
     try {
-      importer.importFrom(new InputStreamReader(readStream, Charset.forName(charset)));
+      MappedFileLineReader mappedReader = createMappedReader(spec, Charset.forName(charset));
+      if (mappedReader != null) {
+        ((LineImportProcessor) importer.getProcessor()).importFrom(mappedReader);
+      } else if (isReadingBytes(spec)) {
+        importer.importFrom(readStream); // the line reader decodes with its own charset
+      } else {
+        importer.importFrom(new InputStreamReader(readStream, Charset.forName(charset)));
+      }
     } catch (Exception ex) {
       handleException(ex);
     } finally {
@@ -118,13 +149,132 @@ public class ImportJob {
 
   protected void openURL(ImporterSpec spec) throws IOException {
     importer = new Importer(spec);
-    readStream = toURL(control.getFileName()).openStream();
+    if (checkpointInterval > 0 && controller != null && spec instanceof LineImporterSpec &&
+        importer.getProcessor() instanceof LineImportProcessor) {
+      ((LineImporterSpec) spec).setCheckpointer(
+          new ImportCheckpointer(controller, control, checkpointInterval));
+      ((LineImportProcessor) importer.getProcessor()).setResumePoint(resumePoint);
+    }
+    URL url = toURL(control.getFileName());
+    if ("file".equals(url.getProtocol())) {
+      readFile = toFile(url);
+      readStream = new FileInputStream(readFile);
+    } else {
+      readFile = null;
+      readStream = url.openStream();
+    }
+    startMetrics();
+    if (decompressThreads >= 0 && isDecompressing(spec)) {
+      readStream = CompressedInputStream.open(readStream, decompressThreads);
+    }
+  }
+
+  /** @return false when the spec reads a binary format, e.g. a spreadsheet */
+  protected boolean isDecompressing(ImporterSpec spec) {
+    if (!(spec instanceof LineImporterSpec)) return true;
+    LineTokenizerFactory factory = ((LineImporterSpec) spec).getLineTokenizerFactory();
+    return factory != null && LineImporterSpec.isTextReader(factory.createLineReader());
+  }
+
+  /** collect and report metrics, when a metrics interval, the MBean or listeners are configured */
+  protected void startMetrics() throws IOException {
+    if (metricsInterval <= 0 && !metricsMBean && metricsListeners.isEmpty()) return;
+    ImportMetrics metrics = importer.enableMetrics();
+    if (readStream instanceof FileInputStream) {
+      metrics.setInput(((FileInputStream) readStream).getChannel());
+    }
+    metricsReporter = new ImportMetricsReporter(metrics);
+    for (ImportMetricsListener listener : metricsListeners) {
+      metricsReporter.addListener(listener);
+    }
+    if (metricsConnection != null && controller != null) {
+      metricsReporter.setControl(
+          new ImportController(metricsConnection, controller.getSqlUtil()), control);
+    }
+    if (metricsMBean) {
+      try {
+        metricsReporter.registerMBean(control.getImportName() + "#" + control.getImportId());
+      } catch (JMException ex) {
+        throw new IOException(ex);
+      }
+    }
+    if (metricsInterval > 0) metricsReporter.start(metricsInterval);
+  }
+
+  static File toFile(URL url) {
+    try {
+      return new File(url.toURI());
+    } catch (Exception ex) { // relative path, e.g. file:data/import.csv
+      return new File(url.getPath());
+    }
+  }
+
+  /**
+   * a local file, imported with a LineImporterSpec that reads text lines,
+   * is read with a MappedFileLineReader (when enabled and the charset is supported).
+   *
+   * @return null or the reader to use
+   */
+  protected MappedFileLineReader createMappedReader(ImporterSpec spec, Charset charset)
+      throws IOException {
+    if (!mappedFiles || !(readStream instanceof FileInputStream) ||
+        !(spec instanceof LineImporterSpec) ||
+        !(importer.getProcessor() instanceof LineImportProcessor) ||
+        !MappedFileLineReader.isLineSeparatorSingleByte(charset)) {
+      return null;
+    }
+    LineTokenizerFactory factory = ((LineImporterSpec) spec).getLineTokenizerFactory();
+    if (factory == null || !(factory.createLineReader() instanceof StringLineReader)) {
+      return null;
+    }
+    MappedFileLineReader reader = new MappedFileLineReader(charset, mappedWindowSize);
+    reader.setStream(readStream);
+    return reader;
+  }
+
+  /**
+   * a local spreadsheet, imported with a StreamingExcelRowReader, is read from the file
+   * (a .xlsx stream would be copied to a temporary file before).
+   *
+   * @return null or the reader to use
+   */
+  protected StreamingExcelRowReader createFileReader(ImporterSpec spec) throws IOException {
+    if (readFile == null || !(spec instanceof LineImporterSpec) ||
+        !(importer.getProcessor() instanceof LineImportProcessor)) {
+      return null;
+    }
+    LineTokenizerFactory factory = ((LineImporterSpec) spec).getLineTokenizerFactory();
+    LineReader reader = factory == null ? null : factory.createLineReader();
+    if (!(reader instanceof StreamingExcelRowReader)) return null;
+    StreamingExcelRowReader fileReader = (StreamingExcelRowReader) reader;
+    if (fileReader.getStream() != null || fileReader.getFile() != null) {
+      return null; // shared reader, already opened
+    }
+    fileReader.setFile(readFile);
+    return fileReader;
+  }
+
+  /** @return true when the lines are read by a SingleByteLineReader, that requires the stream */
+  protected boolean isReadingBytes(ImporterSpec spec) {
+    if (!(spec instanceof LineImporterSpec)) return false;
+    LineTokenizerFactory factory = ((LineImporterSpec) spec).getLineTokenizerFactory();
+    return factory != null && factory.createLineReader() instanceof SingleByteLineReader;
   }
 
   protected void close() throws SQLException, IOException {
-    if (importer != null && controller != null) controller.end(control, importer);
+    if (metricsReporter != null) {
+      metricsReporter.stop();
+      metricsReporter = null;
+    }
+    if (importer != null && controller != null) {
+      controller.end(control, importer);
+      if (checkpointInterval > 0 && control.getStatus() == ImportState.DONE) {
+        controller.deleteCheckpoint(control.getImportId());
+      }
+    }
     if (readStream != null) readStream.close();
     if (connection != null) connection.close();
+    if (metricsConnection != null) metricsConnection.close();
   }
 
   /**
@@ -135,9 +285,33 @@ public class ImportJob {
    * @throws SQLException
    */
   public void join() throws SQLException {
+    if (checkpointInterval > 0) {
+      controller.lock(control.getImportName());
+      ImportControl resumable =
+          controller.findResumable(control.getImportName(), control.getFileName());
+      if (resumable != null) {
+        resume(resumable);
+        return;
+      }
+    }
     controller.join(control);
   }
 
+  /**
+   * continue the given import after its checkpoint
+   * (the import of the same file has not been finished)
+   */
+  protected void resume(ImportControl resumable) throws SQLException {
+    control.setImportId(resumable.getImportId());
+    control.setStartTime(resumable.getStartTime());
+    control.setDescription(resumable.getDescription());
+    control.setStatus(ImportState.RUNNING);
+    resumePoint = controller.findCheckpoint(resumable.getImportId());
+    control.setRowCount(resumePoint.getRowCount());
+    control.setErrorCount(resumePoint.getErrorCount());
+    controller.update(control);
+  }
+
   public Connection getConnection() {
     return connection;
   }
@@ -177,6 +351,115 @@ public class ImportJob {
     this.controller = controller;
   }
 
+  public boolean isMappedFiles() {
+    return mappedFiles;
+  }
+
+  /**
+   * @param mappedFiles - true (default): read local files line by line
+   *                    with a {@link MappedFileLineReader}
+   */
+  public void setMappedFiles(boolean mappedFiles) {
+    this.mappedFiles = mappedFiles;
+  }
+
+  public int getMappedWindowSize() {
+    return mappedWindowSize;
+  }
+
+  /**
+   * @param mappedWindowSize - bytes of a local file mapped into memory at once
+   */
+  public void setMappedWindowSize(int mappedWindowSize) {
+    this.mappedWindowSize = mappedWindowSize;
+  }
+
+  public int getDecompressThreads() {
+    return decompressThreads;
+  }
+
+  /**
+   * @param decompressThreads - -1: do not detect compressed files.
+   *                          otherwise .gz, .zip and .bz2 files are decompressed while
+   *                          they are read, see {@link CompressedInputStream#open(InputStream, int)}.
+   *                          default: 1 (decompress in a separate thread)
+   */
+  public void setDecompressThreads(int decompressThreads) {
+    this.decompressThreads = decompressThreads;
+  }
+
+  public int getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  /**
+   * opt-in: save a checkpoint (table Import_Checkpoint) when the rows have been
+   * committed and at least checkpointInterval rows have been processed since the last one.
+   * join() resumes the last import of the same name and file after its checkpoint,
+   * when it has not been finished.
+   * Checkpoints are saved by processors that call {@link LineImportProcessor#checkpoint()},
+   * e.g. for a {@link com.agimatec.utility.fileimport.jdbc.JdbcBatchImporterSpec}.
+   *
+   * @param checkpointInterval - min. number of rows between checkpoints, 0 = no checkpoints (default)
+   * @see ImportCheckpoint
+   */
+  public void setCheckpointInterval(int checkpointInterval) {
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  public ImportCheckpoint getResumePoint() {
+    return resumePoint;
+  }
+
+  public long getMetricsInterval() {
+    return metricsInterval;
+  }
+
+  /**
+   * opt-in: collect metrics during the import (see {@link ImportMetrics}) and report them
+   * every metricsInterval milliseconds to the listeners and into Import_Control
+   * (when a metrics connection is set).
+   *
+   * @param metricsInterval - milliseconds between the reports, 0 = no timer (default)
+   */
+  public void setMetricsInterval(long metricsInterval) {
+    this.metricsInterval = metricsInterval;
+  }
+
+  public Connection getMetricsConnection() {
+    return metricsConnection;
+  }
+
+  /**
+   * @param metricsConnection - a connection (not the connection of the import!) to
+   *                          update row_count and error_count of Import_Control on the timer.
+   *                          closed by the job.
+   */
+  public void setMetricsConnection(Connection metricsConnection) {
+    this.metricsConnection = metricsConnection;
+  }
+
+  public boolean isMetricsMBean() {
+    return metricsMBean;
+  }
+
+  /**
+   * @param metricsMBean - true: register the metrics as JMX MBean during the import
+   *                     (com.agimatec.utility.fileimport:type=ImportMetrics,name="importName#importId")
+   */
+  public void setMetricsMBean(boolean metricsMBean) {
+    this.metricsMBean = metricsMBean;
+  }
+
+  public void addMetricsListener(ImportMetricsListener listener) {
+    metricsListeners.add(listener);
+  }
+
+  /** @return null or the reporter of the running import */
+  public ImportMetricsReporter getMetricsReporter() {
+    return metricsReporter;
+  }
+
   /**
    * need not call this
    *
@@ -0,0 +1,150 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Description: live metrics of an import: throughput, error rate, time spent in
+ * reading, tokenizing, processing rows and in the database, queue depth of the parallel modes.
+ * The times are summed over all threads (worker and parse threads). The db time is
+ * part of the process time, when the rows are written by processRow().
+ * Enabled with {@link Importer#enableMetrics()}; thread-safe.
+ */
+public class ImportMetrics implements ImportMetricsMBean {
+    private final Importer importer;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong tokenizeNanos = new AtomicLong();
+    private final AtomicLong processNanos = new AtomicLong();
+    private final AtomicLong dbNanos = new AtomicLong();
+    private volatile int queueDepth;
+    private volatile long bytesRead = -1;
+    private volatile FileChannel input;
+
+    public ImportMetrics(Importer importer) {
+        this.importer = importer;
+    }
+
+    public Importer getImporter() {
+        return importer;
+    }
+
+    public void addReadTime(long nanos) {
+        readNanos.addAndGet(nanos);
+    }
+
+    public void addTokenizeTime(long nanos) {
+        tokenizeNanos.addAndGet(nanos);
+    }
+
+    public void addProcessTime(long nanos) {
+        processNanos.addAndGet(nanos);
+    }
+
+    public void addDbTime(long nanos) {
+        dbNanos.addAndGet(nanos);
+    }
+
+    /** @param queueDepth - rows queued for the worker threads or chunks parsed ahead */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /** @param bytesRead - byte offset reached in the input, when known by the line reader */
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    /** @param input - the channel of the file imported, to get the bytes read when the reader does not know */
+    public void setInput(FileChannel input) {
+        this.input = input;
+    }
+
+    /** mark the import as finished, the rates do not change any more */
+    public void finished() {
+        if (endNanos == 0) endNanos = System.nanoTime();
+        queueDepth = 0;
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    public int getRowCount() {
+        return importer.getRowCount();
+    }
+
+    public int getErrorCount() {
+        return importer.getErrorCount();
+    }
+
+    /** @return bytes read from the input or -1 when unknown */
+    public long getBytesRead() {
+        if (bytesRead >= 0) return bytesRead;
+        FileChannel channel = input;
+        if (channel != null) {
+            try {
+                return channel.position();
+            } catch (IOException ex) {
+                return -1; // closed
+            }
+        }
+        return -1;
+    }
+
+    public long getElapsedMillis() {
+        return ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1000000;
+    }
+
+    public double getRowsPerSecond() {
+        return perSecond(getRowCount());
+    }
+
+    public double getBytesPerSecond() {
+        long bytes = getBytesRead();
+        return bytes < 0 ? -1 : perSecond(bytes);
+    }
+
+    private double perSecond(long count) {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : count * 1000.0 / millis;
+    }
+
+    /** @return errors per row */
+    public double getErrorRate() {
+        int rows = getRowCount();
+        return rows == 0 ? 0 : (double) getErrorCount() / rows;
+    }
+
+    public long getReadMillis() {
+        return readNanos.get() / 1000000;
+    }
+
+    public long getTokenizeMillis() {
+        return tokenizeNanos.get() / 1000000;
+    }
+
+    public long getProcessMillis() {
+        return processNanos.get() / 1000000;
+    }
+
+    public long getDbMillis() {
+        return dbNanos.get() / 1000000;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "rows/errors = " + getRowCount() + "/" + getErrorCount() +
+                ", rows/s = " + Math.round(getRowsPerSecond()) +
+                ", bytes/s = " + Math.round(getBytesPerSecond()) +
+                ", read/tokenize/process/db ms = " + getReadMillis() + "/" + getTokenizeMillis() +
+                "/" + getProcessMillis() + "/" + getDbMillis() +
+                ", queue = " + getQueueDepth();
+    }
+}
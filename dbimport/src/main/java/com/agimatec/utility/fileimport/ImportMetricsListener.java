@@ -0,0 +1,13 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: receives the metrics of a running import periodically
+ * (see {@link ImportMetricsReporter}).
+ */
+public interface ImportMetricsListener {
+    /**
+     * called by the timer thread of the reporter, the last time when
+     * metrics.isFinished() is true.
+     */
+    void metricsUpdated(ImportMetrics metrics);
+}
@@ -0,0 +1,32 @@
+package com.agimatec.utility.fileimport;
+
+/**
+ * Description: JMX interface of {@link ImportMetrics}
+ */
+public interface ImportMetricsMBean {
+    int getRowCount();
+
+    int getErrorCount();
+
+    long getBytesRead();
+
+    long getElapsedMillis();
+
+    double getRowsPerSecond();
+
+    double getBytesPerSecond();
+
+    double getErrorRate();
+
+    long getReadMillis();
+
+    long getTokenizeMillis();
+
+    long getProcessMillis();
+
+    long getDbMillis();
+
+    int getQueueDepth();
+
+    boolean isFinished();
+}
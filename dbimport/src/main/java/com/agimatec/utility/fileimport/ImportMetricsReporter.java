@@ -0,0 +1,173 @@
+package com.agimatec.utility.fileimport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Description: publish the {@link ImportMetrics} of a running import on a timer:
+ * to {@link ImportMetricsListener}s and - optionally - into the Import_Control row
+ * of the import (row_count, error_count). The Import_Control row is written with a
+ * controller that must use a connection of its own, so that the updates are not part
+ * of the import transaction. The metrics can be registered as JMX MBean.<br>
+ *
+ * @see ImportJob#setMetricsInterval(long)
+ */
+public class ImportMetricsReporter {
+    private static final Logger log = LoggerFactory.getLogger(ImportMetricsReporter.class);
+
+    private final ImportMetrics metrics;
+    private final List<ImportMetricsListener> listeners =
+            new CopyOnWriteArrayList<ImportMetricsListener>();
+    private ImportController controller;
+    private ImportControl control;
+    private int queryTimeout = 5;
+    private ObjectName objectName;
+    private ScheduledExecutorService timer;
+
+    public ImportMetricsReporter(ImportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void addListener(ImportMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ImportMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param controller - a controller with a connection of its own
+     * @param control    - the running import
+     */
+    public void setControl(ImportController controller, ImportControl control) {
+        this.controller = controller;
+        this.control = control;
+    }
+
+    /**
+     * register the metrics as MBean
+     * com.agimatec.utility.fileimport:type=ImportMetrics,name=<i>name</i>
+     */
+    public void registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        objectName = new ObjectName("com.agimatec.utility.fileimport:type=ImportMetrics,name=" +
+                ObjectName.quote(name));
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        server.registerMBean(metrics, objectName);
+    }
+
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * @param queryTimeout - max. seconds to wait for the update of Import_Control
+     *                     (the row can be locked by the import transaction), default 5
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /** start reporting every intervalMillis */
+    public void start(long intervalMillis) {
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ImportMetricsReporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                report();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stop the timer, notify the listeners a last time and unregister the MBean.
+     * the final state of Import_Control is written by the import itself.
+     */
+    public void stop() {
+        if (timer != null) {
+            timer.shutdown();
+            try {
+                timer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            timer = null;
+        }
+        metrics.finished();
+        notifyListeners();
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ex) {
+                log.warn("cannot unregister " + objectName, ex);
+            }
+            objectName = null;
+        }
+    }
+
+    /** notify the listeners and update Import_Control */
+    public void report() {
+        notifyListeners();
+        if (controller != null && control != null && control.getImportId() != 0) {
+            try {
+                updateControl();
+            } catch (SQLException ex) {
+                log.warn("cannot update Import_Control " + control.getImportId(), ex);
+            }
+        }
+    }
+
+    private void notifyListeners() {
+        for (ImportMetricsListener listener : listeners) {
+            try {
+                listener.metricsUpdated(metrics);
+            } catch (RuntimeException ex) {
+                log.warn("listener failed", ex);
+            }
+        }
+    }
+
+    /**
+     * update the counters only: status and error message are written by the import.
+     * the row is not inserted here, when it is not visible (yet), e.g. because the
+     * transaction of the import has not been committed.
+     */
+    private void updateControl() throws SQLException {
+        Connection connection = controller.getConnection();
+        boolean updated;
+        try {
+            updated = controller.updateCounts(control.getImportId(), metrics.getRowCount(),
+                    metrics.getErrorCount(), queryTimeout);
+        } catch (SQLException ex) {
+            if (!connection.getAutoCommit()) connection.rollback();
+            throw ex;
+        }
+        if (!connection.getAutoCommit()) connection.commit();
+        if (!updated && log.isDebugEnabled()) {
+            log.debug("Import_Control " + control.getImportId() + " not found");
+        }
+    }
+}
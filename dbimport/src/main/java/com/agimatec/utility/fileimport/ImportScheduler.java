@@ -0,0 +1,249 @@
+package com.agimatec.utility.fileimport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: execute many imports with a pool of threads.
+ * The largest files are imported first. Imports of the same importName are
+ * executed one after another (and wait with {@link ImportController#join(ImportControl)}
+ * for imports of other processes, when a SqlUtil is set), all others in parallel.
+ * The number of database connections used at the same time is limited by maxConnections.
+ * <pre>
+ * ImportScheduler scheduler = new ImportScheduler(dataSource, sqlUtil);
+ * scheduler.setThreads(4);
+ * scheduler.setMaxConnections(6);
+ * scheduler.add(new ScheduledImport("customers", "/data/customers.csv", customerSpec));
+ * ...
+ * scheduler.run();
+ * </pre>
+ */
+public class ImportScheduler {
+    private static final Logger log = LoggerFactory.getLogger(ImportScheduler.class);
+
+    protected DataSource dataSource;
+    protected SqlUtil sqlUtil;
+    protected int threads = 4;
+    protected int maxConnections = 0;
+    protected final List<ScheduledImport> imports = new ArrayList<ScheduledImport>();
+
+    /* state of the running scheduler */
+    private final LinkedList<ScheduledImport> pending = new LinkedList<ScheduledImport>();
+    private final Set<String> running = new HashSet<String>();
+    private Semaphore connectionBudget;
+    private long startMillis;
+    private long wallMillis;
+
+    /** the imports are executed without database connections */
+    public ImportScheduler() {
+    }
+
+    /**
+     * @param dataSource - to open one connection for each import
+     * @param sqlUtil    - null or to control the imports in Import_Control
+     *                   (a sequence "import_id" must be defined)
+     */
+    public ImportScheduler(DataSource dataSource, SqlUtil sqlUtil) {
+        this.dataSource = dataSource;
+        this.sqlUtil = sqlUtil;
+    }
+
+    public void add(ScheduledImport anImport) {
+        imports.add(anImport);
+    }
+
+    public List<ScheduledImport> getImports() {
+        return imports;
+    }
+
+    /**
+     * API - execute all imports and wait until they have finished.
+     * Failed imports do not stop the others, see {@link ScheduledImport#getException()}.
+     */
+    public void run() throws InterruptedException {
+        startMillis = System.currentTimeMillis();
+        pending.clear();
+        pending.addAll(imports);
+        // largest files first, so that the last import to finish is a small one
+        Collections.sort(pending, new Comparator<ScheduledImport>() {
+            public int compare(ScheduledImport o1, ScheduledImport o2) {
+                long s1 = o1.getSize(), s2 = o2.getSize();
+                return s1 < s2 ? 1 : (s1 == s2 ? 0 : -1);
+            }
+        });
+        connectionBudget = new Semaphore(maxConnections > 0 ? maxConnections : Integer.MAX_VALUE, true);
+        int poolSize = Math.max(1, Math.min(threads, pending.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                pool.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            ScheduledImport next;
+                            while ((next = next()) != null) {
+                                try {
+                                    execute(next);
+                                } finally {
+                                    finished(next);
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            pool.shutdownNow();
+            wallMillis = System.currentTimeMillis() - startMillis;
+        }
+        if (log.isInfoEnabled()) log.info(getSummary());
+    }
+
+    /** @return the largest pending import, whose importName is not running, null when all are done */
+    private synchronized ScheduledImport next() throws InterruptedException {
+        while (!pending.isEmpty()) {
+            for (Iterator<ScheduledImport> iter = pending.iterator(); iter.hasNext(); ) {
+                ScheduledImport each = iter.next();
+                if (each.getImportName() == null || running.add(each.getImportName())) {
+                    iter.remove();
+                    return each;
+                }
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void finished(ScheduledImport anImport) {
+        if (anImport.getImportName() != null) running.remove(anImport.getImportName());
+        notifyAll();
+    }
+
+    protected void execute(ScheduledImport anImport) throws InterruptedException {
+        int permits = maxConnections > 0 ? Math.min(anImport.getConnections(), maxConnections) :
+                anImport.getConnections();
+        connectionBudget.acquire(permits);
+        long start = System.currentTimeMillis();
+        anImport.waitMillis = start - startMillis;
+        Connection connection = null;
+        try {
+            if (dataSource != null && permits > 0) connection = dataSource.getConnection();
+            anImport.job = anImport.createJob(connection, sqlUtil);
+            anImport.run(anImport.job);
+        } catch (Exception ex) {
+            anImport.exception = ex;
+            log.error("Import " + anImport + " failed", ex);
+        } finally {
+            try {
+                if (connection != null && !connection.isClosed()) connection.close();
+            } catch (Exception ex) {
+                log.warn("Cannot close connection", ex);
+            }
+            anImport.runMillis = System.currentTimeMillis() - start;
+            connectionBudget.release(permits);
+        }
+    }
+
+    /** @return aggregated timings and counts of the imports */
+    public String getSummary() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("Executed ").append(imports.size()).append(" imports in ").append(wallMillis)
+                .append(" ms (import time ").append(getTotalRunMillis()).append(" ms), rows/errors = ")
+                .append(getRowCount()).append('/').append(getErrorCount())
+                .append(", failed = ").append(getFailedImports().size());
+        for (ScheduledImport each : imports) {
+            buf.append("\n  ").append(each).append(": waited ").append(each.getWaitMillis())
+                    .append(" ms, ran ").append(each.getRunMillis()).append(" ms, rows/errors = ")
+                    .append(each.getRowCount()).append('/').append(each.getErrorCount());
+            if (each.getException() != null) buf.append(", failed: ").append(each.getException());
+        }
+        return buf.toString();
+    }
+
+    /** @return milliseconds of the last run() */
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    /** @return sum of the milliseconds the imports have been running */
+    public long getTotalRunMillis() {
+        long sum = 0;
+        for (ScheduledImport each : imports) sum += each.getRunMillis();
+        return sum;
+    }
+
+    public int getRowCount() {
+        int sum = 0;
+        for (ScheduledImport each : imports) sum += each.getRowCount();
+        return sum;
+    }
+
+    public int getErrorCount() {
+        int sum = 0;
+        for (ScheduledImport each : imports) sum += each.getErrorCount();
+        return sum;
+    }
+
+    public List<ScheduledImport> getFailedImports() {
+        List<ScheduledImport> failed = new ArrayList<ScheduledImport>();
+        for (ScheduledImport each : imports) {
+            if (each.getException() != null) failed.add(each);
+        }
+        return failed;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public SqlUtil getSqlUtil() {
+        return sqlUtil;
+    }
+
+    public void setSqlUtil(SqlUtil sqlUtil) {
+        this.sqlUtil = sqlUtil;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** @param threads - max. number of imports running at the same time (default: 4) */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @param maxConnections - max. number of database connections used by the running imports
+     *                       (see {@link ScheduledImport#setConnections(int)}), 0 = unlimited (default)
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+}
@@ -19,6 +19,8 @@ public class Importer {
     protected final ImporterProcessor processor;
     /** is determines the input format and configuration */
     protected final ImporterSpec spec;
+    /** null or the metrics collected during the import */
+    protected volatile ImportMetrics metrics;
 
     public Importer(ImporterSpec spec) {
         this.spec = spec;
@@ -123,4 +125,19 @@ public class Importer {
     public ImporterProcessor getProcessor() {
         return processor;
     }
+
+    /**
+     * collect throughput and timing metrics during the import (before the import starts).
+     *
+     * @return the new metrics
+     */
+    public ImportMetrics enableMetrics() {
+        metrics = new ImportMetrics(this);
+        return metrics;
+    }
+
+    /** @return null (default) or the metrics of the import */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
 }
@@ -18,6 +18,7 @@ public abstract class ImporterProcessor {
     protected int rowCount;
     protected boolean cancelled = false;
     protected Object lastError;
+    protected ErrorSink errorSink;
 
     protected abstract ImporterSpec getSpec();
 
@@ -73,20 +74,36 @@ public abstract class ImporterProcessor {
         rowCount = 0;
     }
 
+    public ErrorSink getErrorSink() {
+        return errorSink;
+    }
+
+    /** @param errorSink - null (default) to write and log each error in the importing thread */
+    public void setErrorSink(ErrorSink errorSink) {
+        this.errorSink = errorSink;
+    }
+
     public void setCancelled(boolean cancelled) {
         this.cancelled = cancelled;
     }
 
     protected void logFinished() {
         importer.log("Done. Rows/errors = " + rowCount + "/" + errorCount);
+        ImportMetrics metrics = importer.getMetrics();
+        if (metrics != null) {
+            metrics.finished();
+            importer.log(metrics);
+        }
     }
 
     public void release() {
         try {
+            if (errorSink != null) errorSink.close();
             if (errorWriter != null) errorWriter.close();
         } catch (Exception ex) {
             importer.log(ex);
         }
+        errorSink = null;
         errorWriter = null;
     }
 
@@ -103,6 +120,11 @@ public abstract class ImporterProcessor {
         }
     }
 
+    /** @return text to identify the given row in the log */
+    protected String describeRow(Object aLine) {
+        return "'" + aLine + "'";
+    }
+
     /** overwrite in subclasses for different exception handling */
     protected void handleRowException(Exception iex, Object aLine) {
         if (iex instanceof ImporterException) {
@@ -110,7 +132,16 @@ public abstract class ImporterProcessor {
         }
         errorCount++;
         setLastError(iex);
-        importer.log("'" + aLine + "' caused exception:");
+        if (errorSink != null) {
+            errorSink.add(describeRow(aLine), iex, aLine);
+            if (!cancelled && errorSink.isErrorRateExceeded(rowCount, errorCount)) {
+                importer.log("Import cancelled: " + errorCount + " errors in " + rowCount +
+                        " rows exceed the max. error rate of " + errorSink.getMaxErrorRate());
+                setCancelled(true);
+            }
+            return;
+        }
+        importer.log(describeRow(aLine) + " caused exception:");
         importer.log(iex);
         try {
             getErrorWriter().write(String.valueOf(aLine));
@@ -0,0 +1,177 @@
+package com.agimatec.utility.fileimport;
+
+import java.util.*;
+
+/**
+ * Description: the values of a row stored by column index. The field names are
+ * taken from a {@link RowLayout}, so that no map entries and no field name strings
+ * are created per row. It is a Map (field name -&gt; value) with the same content as
+ * the HashMap used before, so that e.g. groovy closures can still use
+ * processor.currentRow.someField.
+ */
+public class IndexedRow extends AbstractMap<String, Object> {
+    private static final Object ABSENT = new Object();
+
+    private final RowLayout layout;
+    private Object[] values;
+    private int columns;
+    /** values put with names not contained in the layout */
+    private Map<String, Object> extra;
+
+    public IndexedRow(RowLayout layout) {
+        this.layout = layout;
+        this.values = new Object[Math.max(layout.size(), 8)];
+        Arrays.fill(values, ABSENT);
+    }
+
+    public RowLayout getLayout() {
+        return layout;
+    }
+
+    /** set the value of the column */
+    public void set(int column, Object value) {
+        if (column >= values.length) {
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, Math.max(column + 1, oldLength * 2));
+            Arrays.fill(values, oldLength, values.length, ABSENT);
+        }
+        values[column] = value;
+        if (column >= columns) {
+            columns = column + 1;
+            layout.getName(column); // resolve name now
+        }
+    }
+
+    /** @return the value of the column or null */
+    public Object get(int column) {
+        if (column < 0 || column >= columns) return null;
+        Object value = values[column];
+        return value == ABSENT ? null : value;
+    }
+
+    /** @return number of columns of this row (including gaps) */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /** remove all values, so that the instance can be reused for the next row */
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, columns, ABSENT);
+        columns = 0;
+        extra = null;
+    }
+
+    /** @return the column holding the value of the name or -1 */
+    private int column(Object name) {
+        int column = layout.indexOf(name);
+        while (column >= 0 && (column >= columns || values[column] == ABSENT)) {
+            column = layout.sameNameBefore(column);
+        }
+        return column;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int column = column(key);
+        if (column >= 0) return values[column];
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return column(key) >= 0 || (extra != null && extra.containsKey(key));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int column = column(key);
+        if (column < 0) column = layout.indexOf(key);
+        if (column >= 0) {
+            Object old = get(column);
+            set(column, value);
+            return old;
+        }
+        if (extra == null) extra = new HashMap<String, Object>();
+        return extra.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int column = column(key);
+        if (column >= 0) {
+            Object old = values[column];
+            values[column] = ABSENT;
+            return old;
+        }
+        return extra == null ? null : extra.remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            public Iterator<Entry<String, Object>> iterator() {
+                List<Entry<String, Object>> entries = new ArrayList<Entry<String, Object>>(columns);
+                for (int i = 0; i < columns; i++) {
+                    String name = layout.getName(i);
+                    if (values[i] != ABSENT && column(name) == i) {
+                        entries.add(new ColumnEntry(i, name));
+                    }
+                }
+                if (extra != null) entries.addAll(extra.entrySet());
+                return entries.iterator();
+            }
+
+            public int size() {
+                int size = extra == null ? 0 : extra.size();
+                for (int i = 0; i < columns; i++) {
+                    if (values[i] != ABSENT && column(layout.getName(i)) == i) size++;
+                }
+                return size;
+            }
+        };
+    }
+
+    private class ColumnEntry implements Entry<String, Object> {
+        private final int column;
+        private final String name;
+
+        ColumnEntry(int column, String name) {
+            this.column = column;
+            this.name = name;
+        }
+
+        public String getKey() {
+            return name;
+        }
+
+        public Object getValue() {
+            return values[column];
+        }
+
+        public Object setValue(Object value) {
+            Object old = values[column];
+            values[column] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry e = (Entry) o;
+            return (name == null ? e.getKey() == null : name.equals(e.getKey())) &&
+                    (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return (name == null ? 0 : name.hashCode()) ^
+                    (getValue() == null ? 0 : getValue().hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + getValue();
+        }
+    }
+}
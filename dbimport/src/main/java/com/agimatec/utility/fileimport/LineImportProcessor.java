@@ -4,8 +4,12 @@ import com.agimatec.utility.fileimport.spreadsheet.ICell;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
+import java.sql.SQLException;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Description: Import a file line-by-line, e.g. for csv-/comma-separated/fixed-column-length
@@ -20,6 +24,22 @@ public class LineImportProcessor extends ImporterProcessor {
     protected Object headerLine;
     protected Object currentLine;
     protected Map currentRow;
+    /** byte offset of the current record, when known by the LineReader, or -1 */
+    protected long recordOffset = -1;
+    /** true to let the worker threads skip the rows still queued */
+    private volatile boolean workersStopped;
+    /** number of the first row, that cancelled the import in a worker thread */
+    private volatile int workersCancelledAt;
+    /** field names of the rows, resolved once per header/field names of the spec */
+    private RowLayout rowLayout;
+    /** the row instance reused by transferRow() when the spec allows it */
+    private IndexedRow reusableRow;
+    /** true while rows are transferred and processed in the current thread only */
+    private boolean reuseRows;
+    /** null or the checkpoint of a previous run to continue after */
+    protected ImportCheckpoint resumePoint;
+    /** null or the keys of the rows imported so far */
+    protected OffHeapKeySet uniqueKeys;
 
     public LineImportProcessor(LineImporterSpec spec, Importer importer) {
         super(importer);
@@ -43,23 +63,15 @@ public class LineImportProcessor extends ImporterProcessor {
         try {
             lineReader = spec.createLineReader(aReader);
             try {
+                if (errorSink == null) errorSink = spec.createErrorSink(this);
+                uniqueKeys = spec.createUniqueKeySet();
                 if (spec.getHeaderSpec() == LineImporterSpec.Header.FIRST) {
                     // skip header line
                     headerLine = lineReader.readLine();
                     spec.processHeaderLine(this);
                 }
-                currentLine = lineReader.readLine();
-                while (currentLine != null && !isCancelled()) {
-                    rowCount++;
-                    if (spec.getHeaderSpec() == LineImporterSpec.Header.INDEX &&
-                            spec.getHeaderLineIndex() == rowCount) {
-                        headerLine = currentLine;
-                        spec.processHeaderLine(this);
-                    } else {
-                        importRow(currentLine);
-                    }
-                    currentLine = lineReader.readLine();
-                }
+                if (resumePoint != null) resume(resumePoint);
+                importAllRows();
             } finally {
                 lineReader.close();
                 release();
@@ -70,6 +82,275 @@ public class LineImportProcessor extends ImporterProcessor {
         }
     }
 
+    /**
+     * import the rows after the header line (Header.FIRST) with the mode configured in the spec:
+     * chunked parsing of a local file, worker threads or single-threaded.
+     */
+    protected void importAllRows() throws Exception {
+        if (spec.getParseThreads() > 0 && lineReader instanceof MappedFileLineReader) {
+            importChunks();
+        } else if (spec.getWorkerThreads() > 0) {
+            importRowsParallel();
+        } else {
+            importRows();
+        }
+    }
+
+    /**
+     * parse byte ranges of a local file with {@link LineImporterSpec#getParseThreads()} threads
+     * and process the rows in the current thread.
+     * Rows up to the header line (Header.INDEX) are imported single-threaded before.
+     */
+    protected void importChunks() throws Exception {
+        if (spec.getHeaderSpec() == LineImporterSpec.Header.INDEX) {
+            while (rowCount < spec.getHeaderLineIndex() && readRecord() != null &&
+                    !isCancelled()) {
+                rowCount++;
+                if (isHeaderRow()) {
+                    headerLine = currentLine;
+                    spec.processHeaderLine(this);
+                } else {
+                    importRow(currentLine);
+                }
+            }
+        }
+        new ChunkedLineImport(this, (MappedFileLineReader) lineReader).importChunks();
+    }
+
+    /** read, tokenize and process all rows in the current thread */
+    protected void importRows() throws IOException, ImporterException {
+        reuseRows = spec.isReuseRows();
+        try {
+            readRecord();
+            while (currentLine != null && !isCancelled()) {
+                rowCount++;
+                if (isHeaderRow()) {
+                    headerLine = currentLine;
+                    spec.processHeaderLine(this);
+                } else {
+                    importRow(currentLine);
+                }
+                readRecord();
+            }
+        } finally {
+            reuseRows = false;
+        }
+    }
+
+    /** read the first line of the next record into currentLine */
+    protected Object readRecord() throws IOException {
+        ImportMetrics metrics = importer.getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+        currentLine = lineReader.readLine();
+        recordOffset = (lineReader instanceof PositionedLineReader) ?
+                ((PositionedLineReader) lineReader).getRecordOffset() : -1;
+        if (metrics != null) {
+            metrics.addReadTime(System.nanoTime() - start);
+            if (recordOffset >= 0) metrics.setBytesRead(recordOffset);
+        }
+        return currentLine;
+    }
+
+    /**
+     * read and tokenize all rows in the current thread and hand them over
+     * to {@link LineImporterSpec#getWorkerThreads()} worker threads that call
+     * spec.processRow(). Each worker uses its own processor instance, so that
+     * getCurrentRow(), getCurrentLine() and getRowCount() are those of the row
+     * being processed. Failed rows are reported with handleRowException()
+     * in file order by the calling thread, so that rowCount, errorCount and the
+     * error writer output are the same as in the single-threaded mode.
+     */
+    protected void importRowsParallel() throws Exception {
+        final int workerCount = spec.getWorkerThreads();
+        final int window = Math.max(1, spec.getWorkerQueueSize());
+        // capacity for all pending rows plus one end-marker per worker
+        final BlockingQueue<RowTask> queue = new ArrayBlockingQueue<RowTask>(window + workerCount);
+        final LinkedList<RowTask> pending = new LinkedList<RowTask>();
+        final Thread[] workers = new Thread[workerCount];
+        workersStopped = false;
+        workersCancelledAt = Integer.MAX_VALUE;
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(new RowWorker(createWorkerProcessor(), queue),
+                    "LineImportWorker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        try {
+            readRecord();
+            while (currentLine != null && !isCancelled()) {
+                rowCount++;
+                if (isHeaderRow()) {
+                    // rows above the header must be done before the header changes the spec
+                    completeRows(pending, true);
+                    if (isCancelled()) break;
+                    headerLine = currentLine;
+                    spec.processHeaderLine(this);
+                } else {
+                    RowTask task = new RowTask(rowCount, currentLine, recordOffset);
+                    pending.add(task);
+                    if (importer.getMetrics() != null) {
+                        importer.getMetrics().setQueueDepth(pending.size());
+                    }
+                    try {
+                        task.row = transferRow(currentLine);
+                        checkUniqueKey(task.row);
+                        queue.put(task);
+                    } catch (Exception ex) {
+                        task.done(ex);
+                    }
+                    if (pending.size() >= window) {
+                        pending.getFirst().await();
+                    }
+                    completeRows(pending, false);
+                }
+                readRecord();
+            }
+            completeRows(pending, true);
+        } finally {
+            workersStopped = true; // skip rows still queued (when cancelled)
+            for (int i = 0; i < workerCount; i++) {
+                queue.put(RowTask.END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+    }
+
+    /**
+     * report the results of finished rows in file order.
+     *
+     * @param all - true: wait for all pending rows, false: only the leading rows already done
+     */
+    private void completeRows(LinkedList<RowTask> pending, boolean all)
+            throws InterruptedException, ImporterException {
+        while (!pending.isEmpty() && (all || pending.getFirst().isDone())) {
+            RowTask task = pending.removeFirst();
+            task.await();
+            // what processRow() did to the worker processor
+            if (task.lastError != null) setLastError(task.lastError);
+            if (task.cancelled) setCancelled(true);
+            if (task.error != null) {
+                recordOffset = task.offset;
+                handleRowException(task.error, task.line);
+            }
+            if (isCancelled()) {
+                // as in the single-threaded mode, the rows after this row are not counted
+                // and not processed, even when they have been read ahead
+                rowCount = task.rowNumber;
+                workersStopped = true;
+                pending.clear();
+                if (task.error instanceof ImporterException &&
+                        ((ImporterException) task.error).isCancelImport()) {
+                    throw (ImporterException) task.error;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * create the processor instance used exclusively by a single worker thread.
+     * overwrite in subclasses if required.
+     */
+    protected LineImportProcessor createWorkerProcessor() {
+        LineImportProcessor worker = (LineImportProcessor) spec.createProcessor(importer);
+        worker.setLineReader(lineReader);
+        return worker;
+    }
+
+    /**
+     * continue after the last row of the checkpoint: the rows before are read again
+     * (without processing them, but the header line) or skipped with seek(), when the reader
+     * is a {@link PositionedLineReader} and the checkpoint contains the byte offset.
+     * rowCount and errorCount are restored from the checkpoint.
+     */
+    protected void resume(ImportCheckpoint checkpoint) throws IOException, ImporterException {
+        boolean seek = checkpoint.getRecordOffset() >= 0 && lineReader instanceof PositionedLineReader;
+        int skipRows = checkpoint.getRowCount();
+        if (seek) {
+            skipRows = spec.getHeaderSpec() == LineImporterSpec.Header.INDEX ?
+                    Math.min(skipRows, spec.getHeaderLineIndex()) : 0;
+        }
+        while (rowCount < skipRows && readRecord() != null) {
+            rowCount++;
+            if (isHeaderRow()) {
+                headerLine = currentLine;
+                spec.processHeaderLine(this);
+            } else {
+                skipRecord();
+            }
+        }
+        if (seek) {
+            ((PositionedLineReader) lineReader).seek(checkpoint.getRecordOffset());
+            if (readRecord() != null) skipRecord(); // the last row of the checkpoint
+        }
+        rowCount = checkpoint.getRowCount();
+        errorCount = checkpoint.getErrorCount();
+        spec.restoreCheckpointState(this, checkpoint.getState());
+        if (spec.getCheckpointer() != null) spec.getCheckpointer().resumed(checkpoint);
+        importer.log("Resumed after row " + rowCount);
+    }
+
+    /** read the continuation lines of the current record */
+    private void skipRecord() {
+        try {
+            transferRow(currentLine);
+        } catch (Exception ex) {
+            // the row has been handled before
+        }
+        currentRow = null;
+    }
+
+    /**
+     * @return a checkpoint for the current row (byte offset, when known),
+     *         rowCount, errorCount and the state of the spec
+     */
+    public ImportCheckpoint createCheckpoint() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setRowCount(rowCount);
+        checkpoint.setErrorCount(errorCount);
+        checkpoint.setRecordOffset(recordOffset);
+        checkpoint.setState(spec.getCheckpointState(this));
+        return checkpoint;
+    }
+
+    /**
+     * API - call this, when all rows up to the current row have been committed.
+     * saves a checkpoint with the checkpointer of the spec, when there is one and a checkpoint is due.
+     * Must be called by the importing thread. Does nothing when the rows of parsed chunks are not
+     * processed in file order.
+     */
+    public void checkpoint() throws ImporterException {
+        ImportCheckpointer checkpointer = spec.getCheckpointer();
+        if (checkpointer == null || !checkpointer.isDue(this) ||
+                (spec.getParseThreads() > 0 && !spec.isRowOrderRequired())) {
+            return;
+        }
+        try {
+            checkpointer.checkpoint(this);
+        } catch (SQLException ex) {
+            throw new ImporterException(ex, true);
+        }
+    }
+
+    public ImportCheckpoint getResumePoint() {
+        return resumePoint;
+    }
+
+    /**
+     * @param resumePoint - null or the checkpoint of a previous import of the same file,
+     *                    the import continues after the last row of the checkpoint
+     */
+    public void setResumePoint(ImportCheckpoint resumePoint) {
+        this.resumePoint = resumePoint;
+    }
+
+    private boolean isHeaderRow() {
+        return spec.getHeaderSpec() == LineImporterSpec.Header.INDEX &&
+                spec.getHeaderLineIndex() == rowCount;
+    }
+
     /**
      * import a record from the file and do what is required with the data.
      *
@@ -78,7 +359,8 @@ public class LineImportProcessor extends ImporterProcessor {
     protected void importRow(Object aLine) throws ImporterException {
         try {
             transferRow(aLine);
-            spec.processRow(this);
+            checkUniqueKey(currentRow);
+            processCurrentRow();
         } catch (ImporterException ex) {
             handleRowException(ex, aLine);
             if (ex.isCancelImport()) throw ex;
@@ -87,15 +369,93 @@ public class LineImportProcessor extends ImporterProcessor {
         }
     }
 
+    /**
+     * process a row that has already been transferred (or failed to be transferred)
+     * by another thread.
+     */
+    protected void importTransferredRow(RowTask task) throws ImporterException {
+        rowCount++;
+        currentLine = task.line;
+        recordOffset = task.offset;
+        if (recordOffset >= 0 && importer.getMetrics() != null) {
+            importer.getMetrics().setBytesRead(recordOffset);
+        }
+        try {
+            if (task.error != null) throw task.error;
+            currentRow = task.row;
+            checkUniqueKey(currentRow);
+            processCurrentRow();
+        } catch (ImporterException ex) {
+            handleRowException(ex, task.line);
+            if (ex.isCancelImport()) throw ex;
+        } catch (Exception ex) {
+            handleRowException(ex, task.line);
+        }
+    }
+
+    /**
+     * reject a row with the key of a row imported before,
+     * when {@link LineImporterSpec#getUniqueKeyFields()} are set.
+     *
+     * @throws ImporterException - duplicate key
+     */
+    protected void checkUniqueKey(Map row) throws ImporterException {
+        if (uniqueKeys == null) return;
+        String[] fields = spec.getUniqueKeyFields();
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) key.append('\u0000');
+            Object value = row.get(fields[i]);
+            if (value == null) {
+                key.append('\u0001');
+            } else if (value instanceof CharSequence) {
+                key.append((CharSequence) value);
+            } else {
+                key.append(value);
+            }
+        }
+        if (!uniqueKeys.add(key)) {
+            throw new ImporterException("Duplicate key: " + key.toString().replace('\u0000', ';'), false);
+        }
+    }
+
+    /** call spec.processRow() for the current row */
+    protected void processCurrentRow() throws ImporterException {
+        ImportMetrics metrics = importer.getMetrics();
+        if (metrics == null) {
+            spec.processRow(this);
+        } else {
+            long start = System.nanoTime();
+            try {
+                spec.processRow(this);
+            } finally {
+                metrics.addProcessTime(System.nanoTime() - start);
+            }
+        }
+    }
+
     public void release() {
         super.release();
         currentRow = null;
         headerLine = null;
+        reusableRow = null;
+        uniqueKeys = null;
     }
 
     /** parse a specified record and save the record data in the root model. */
     protected Map transferRow(Object aRecord) throws IOException {
-        currentRow = new HashMap();
+        ImportMetrics metrics = importer.getMetrics();
+        if (metrics == null) return tokenizeRow(aRecord);
+        long start = System.nanoTime();
+        try {
+            return tokenizeRow(aRecord);
+        } finally {
+            metrics.addTokenizeTime(System.nanoTime() - start);
+        }
+    }
+
+    private Map tokenizeRow(Object aRecord) throws IOException {
+        currentRow = createRow();
         LineTokenizer parser = spec.getLineTokenizerFactory().createTokenizer(aRecord);
         Object singleValue;
         int fieldIdx = -1;
@@ -120,7 +480,41 @@ public class LineImportProcessor extends ImporterProcessor {
     }
 
     protected void setFieldValue(int fieldIdx, Object singleValue) {
-        currentRow.put(spec.getFieldName(fieldIdx), singleValue);
+        if (currentRow instanceof IndexedRow) {
+            ((IndexedRow) currentRow).set(fieldIdx, singleValue);
+        } else {
+            currentRow.put(spec.getFieldName(fieldIdx), singleValue);
+        }
+    }
+
+    /**
+     * @return an empty row for transferRow(). The same instance is returned for each row
+     *         when {@link LineImporterSpec#isReuseRows()} and the rows are processed
+     *         by the current thread, otherwise a new one.
+     */
+    protected Map createRow() {
+        if (rowLayout == null || !rowLayout.isValid()) {
+            rowLayout = new RowLayout(spec);
+            reusableRow = null;
+        }
+        if (!reuseRows) return new IndexedRow(rowLayout);
+        if (reusableRow == null) {
+            reusableRow = new IndexedRow(rowLayout);
+        } else {
+            reusableRow.clear();
+        }
+        return reusableRow;
+    }
+
+    /** @return the field names of the rows transferred so far or null */
+    public RowLayout getRowLayout() {
+        return rowLayout;
+    }
+
+    @Override
+    protected String describeRow(Object aLine) {
+        return recordOffset < 0 ? super.describeRow(aLine) :
+                super.describeRow(aLine) + " at byte offset " + recordOffset;
     }
 
     protected Object getHeaderLine() {
@@ -135,6 +529,14 @@ public class LineImportProcessor extends ImporterProcessor {
         return currentRow;
     }
 
+    /**
+     * @return byte offset of the current record in the file or -1 if the
+     *         LineReader is not a {@link PositionedLineReader}
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
     public LineReader getLineReader() {
         return lineReader;
     }
@@ -162,4 +564,99 @@ public class LineImportProcessor extends ImporterProcessor {
     public void setCurrentRow(Map currentRow) {
         this.currentRow = currentRow;
     }
+
+    /** a row read by the reader thread, processed by a worker thread */
+    protected static class RowTask {
+        /** end-marker to stop a worker */
+        static final RowTask END = new RowTask(-1, null, -1);
+
+        protected final int rowNumber;
+        protected final Object line;
+        protected final long offset;
+        protected Map row;
+        protected Exception error;
+        /** lastError and cancelled set by the worker processor while processing the row */
+        protected Object lastError;
+        protected boolean cancelled;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        protected RowTask(int rowNumber, Object line, long offset) {
+            this.rowNumber = rowNumber;
+            this.line = line;
+            this.offset = offset;
+        }
+
+        protected void done(Exception error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        protected boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        protected void await() throws InterruptedException {
+            done.await();
+        }
+    }
+
+    /** takes rows from the queue and calls spec.processRow() with its own processor */
+    protected class RowWorker implements Runnable {
+        private final LineImportProcessor processor;
+        private final BlockingQueue<RowTask> queue;
+
+        protected RowWorker(LineImportProcessor processor, BlockingQueue<RowTask> queue) {
+            this.processor = processor;
+            this.queue = queue;
+        }
+
+        public void run() {
+            try {
+                RowTask task = queue.take();
+                while (task != RowTask.END) {
+                    process(task);
+                    task = queue.take();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                processor.release();
+            }
+        }
+
+        protected void process(RowTask task) {
+            if (workersStopped || task.rowNumber > workersCancelledAt) {
+                task.done(null);
+                return;
+            }
+            Exception error = null;
+            processor.lastError = null;
+            processor.cancelled = false;
+            try {
+                processor.rowCount = task.rowNumber;
+                processor.recordOffset = task.offset;
+                processor.headerLine = headerLine;
+                processor.currentLine = task.line;
+                processor.currentRow = task.row;
+                processor.processCurrentRow();
+            } catch (Exception ex) {
+                error = ex;
+            } catch (Error ex) {
+                error = new ImporterException(ex, true);
+            } finally {
+                processor.currentRow = null;
+                task.lastError = processor.lastError;
+                task.cancelled = processor.isCancelled();
+                if (task.cancelled) cancelledAt(task.rowNumber);
+                task.done(error);
+            }
+        }
+
+        /** skip the rows after the row, that cancelled the import */
+        private void cancelledAt(int rowNumber) {
+            synchronized (queue) {
+                if (rowNumber < workersCancelledAt) workersCancelledAt = rowNumber;
+            }
+        }
+    }
 }
@@ -21,6 +21,31 @@ public class LineImporterSpec implements ImporterSpec {
     /** 1 is default */
     private int headerLineIndex = 1;
 
+    /** 0 is default: process rows in the reading thread */
+    private int workerThreads = 0;
+    /** max. number of rows read ahead when workerThreads > 0 */
+    private int workerQueueSize = 1000;
+    /** 0 is default: do not parse local files in chunks */
+    private int parseThreads = 0;
+    /** 16 MB is default */
+    private long parseChunkSize = 16 * 1024 * 1024;
+    private boolean rowOrderRequired = true;
+    private boolean multiLineRecords = true;
+    private boolean reuseRows = false;
+    private ImportCheckpointer checkpointer;
+    /** 0 is default: write the errors in the importing thread */
+    private int errorQueueSize = 0;
+    /** -1 is default: log all exceptions with stack trace */
+    private int errorTraceLimit = -1;
+    /** 0 is default: never cancel because of the error rate */
+    private double maxErrorRate = 0;
+    private int errorRateMinRows = 1000;
+    private String[] uniqueKeyFields;
+    private boolean uniqueKeyExact = false;
+    private long uniqueKeyCapacity = 1024 * 1024;
+    /** 1 is default: decompress compressed streams in a separate thread */
+    private int decompressThreads = 1;
+
     public LineTokenizerFactory getLineTokenizerFactory() {
         return lineTokenizerFactory;
     }
@@ -85,21 +110,274 @@ public class LineImporterSpec implements ImporterSpec {
         return headerLineIndex;
     }
 
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * opt-in parallel mode: when &gt; 0, the rows are read and tokenized by the
+     * importing thread and processed by the given number of worker threads.
+     * processRow() must be thread-safe then. It is called with a processor
+     * instance per worker thread, errors are still handled in file order.
+     *
+     * @param workerThreads - number of threads that call processRow(), 0 = no workers
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getWorkerQueueSize() {
+        return workerQueueSize;
+    }
+
+    /** @param workerQueueSize - max. number of rows read ahead for the worker threads */
+    public void setWorkerQueueSize(int workerQueueSize) {
+        this.workerQueueSize = workerQueueSize;
+    }
+
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * opt-in chunked mode for local files read with a {@link MappedFileLineReader}:
+     * when &gt; 0, the file is split into byte ranges of getParseChunkSize() that are
+     * read and tokenized by the given number of threads. processRow() is called by the
+     * importing thread. Takes precedence over workerThreads.
+     *
+     * @param parseThreads - number of threads that parse chunks of the file, 0 = no chunks
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    public long getParseChunkSize() {
+        return parseChunkSize;
+    }
+
+    /** @param parseChunkSize - size of a byte range parsed by a single thread */
+    public void setParseChunkSize(long parseChunkSize) {
+        this.parseChunkSize = parseChunkSize;
+    }
+
+    public boolean isRowOrderRequired() {
+        return rowOrderRequired;
+    }
+
+    /**
+     * @param rowOrderRequired - true (default): rows of parsed chunks are processed in file order.
+     *                         false: the rows of a chunk are processed as soon as it has been parsed
+     *                         and validated (see {@link #setMultiLineRecords(boolean)}).
+     */
+    public void setRowOrderRequired(boolean rowOrderRequired) {
+        this.rowOrderRequired = rowOrderRequired;
+    }
+
+    public boolean isMultiLineRecords() {
+        return multiLineRecords;
+    }
+
+    /**
+     * @param multiLineRecords - true (default): a record can span lines (quoted fields with line breaks),
+     *                         so that a chunk is validated with the end of the previous chunk.
+     *                         false: each line is a record, the chunks do not depend on each other and
+     *                         are processed as soon as they have been parsed, when the row order is not
+     *                         required.
+     */
+    public void setMultiLineRecords(boolean multiLineRecords) {
+        this.multiLineRecords = multiLineRecords;
+    }
+
+    public boolean isReuseRows() {
+        return reuseRows;
+    }
+
+    /**
+     * opt-in: transfer all rows into the same {@link IndexedRow} instance, so that
+     * no row objects are allocated per record. processRow() must not keep a reference
+     * to processor.getCurrentRow() then. Only used when the rows are processed by the
+     * importing thread (no workerThreads, no parseThreads).
+     *
+     * @param reuseRows - true to reuse the row instance for the next record
+     */
+    public void setReuseRows(boolean reuseRows) {
+        this.reuseRows = reuseRows;
+    }
+
+    public ImportCheckpointer getCheckpointer() {
+        return checkpointer;
+    }
+
+    /**
+     * The checkpoints of an {@link ImportController} are saved in table Import_Checkpoint
+     * (see {@link ImportCheckpoint}; created by dbmigrate-example/oracle/setup/create-tables.sql,
+     * added to existing schemas by oracle/upgrade/up-2.3.1_import_checkpoint.sql).
+     *
+     * @param checkpointer - null or the checkpointer used by {@link LineImportProcessor#checkpoint()}
+     */
+    public void setCheckpointer(ImportCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    public int getErrorQueueSize() {
+        return errorQueueSize;
+    }
+
+    /**
+     * @param errorQueueSize - 0 to write the invalid lines in the importing thread,
+     *                       otherwise max. number of errors queued for the writing thread
+     */
+    public void setErrorQueueSize(int errorQueueSize) {
+        this.errorQueueSize = errorQueueSize;
+    }
+
+    public int getErrorTraceLimit() {
+        return errorTraceLimit;
+    }
+
+    /**
+     * @param errorTraceLimit - number of exceptions logged with stack trace. afterwards only
+     *                        the number of exceptions per type is logged. -1 to log all.
+     */
+    public void setErrorTraceLimit(int errorTraceLimit) {
+        this.errorTraceLimit = errorTraceLimit;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * @param maxErrorRate - ratio errors/rows (e.g. 0.1) above which the import is cancelled.
+     *                     0 to never cancel.
+     */
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    public int getErrorRateMinRows() {
+        return errorRateMinRows;
+    }
+
+    /** @param errorRateMinRows - number of rows read before the error rate is checked (default: 1000) */
+    public void setErrorRateMinRows(int errorRateMinRows) {
+        this.errorRateMinRows = errorRateMinRows;
+    }
+
+    public String[] getUniqueKeyFields() {
+        return uniqueKeyFields;
+    }
+
+    /**
+     * reject rows with the same values in these fields as a row imported before, before
+     * processRow() is called. The duplicates are reported as errors with handleRowException().
+     * The keys are kept outside of the java heap, see {@link OffHeapKeySet}.
+     * The keys of the rows before a resumed checkpoint are not known.
+     *
+     * @param uniqueKeyFields - null (default) or the names of the fields of the key
+     */
+    public void setUniqueKeyFields(String[] uniqueKeyFields) {
+        this.uniqueKeyFields = uniqueKeyFields;
+    }
+
+    public boolean isUniqueKeyExact() {
+        return uniqueKeyExact;
+    }
+
+    /**
+     * @param uniqueKeyExact - false (default): keys with the same 64-bit hash are duplicates.
+     *                       true: compare the keys, when their hashes are equal
+     *                       (the keys are stored off-heap then).
+     */
+    public void setUniqueKeyExact(boolean uniqueKeyExact) {
+        this.uniqueKeyExact = uniqueKeyExact;
+    }
+
+    public long getUniqueKeyCapacity() {
+        return uniqueKeyCapacity;
+    }
+
+    /** @param uniqueKeyCapacity - expected number of keys, the key set grows when required */
+    public void setUniqueKeyCapacity(long uniqueKeyCapacity) {
+        this.uniqueKeyCapacity = uniqueKeyCapacity;
+    }
+
+    /** @return null or a new key set, when uniqueKeyFields are set */
+    public OffHeapKeySet createUniqueKeySet() {
+        if (uniqueKeyFields == null || uniqueKeyFields.length == 0) return null;
+        return new OffHeapKeySet(uniqueKeyCapacity, uniqueKeyExact);
+    }
+
+    public int getDecompressThreads() {
+        return decompressThreads;
+    }
+
+    /**
+     * @param decompressThreads - -1: do not detect compressed streams,
+     *                          otherwise see {@link CompressedInputStream#open(InputStream, int)}
+     */
+    public void setDecompressThreads(int decompressThreads) {
+        this.decompressThreads = decompressThreads;
+    }
+
+    /**
+     * @return null when the errors are handled by the processor itself (default),
+     *         otherwise a new sink for the errors of the processor's import
+     */
+    public ErrorSink createErrorSink(ImporterProcessor processor) {
+        if (errorQueueSize <= 0 && errorTraceLimit < 0 && maxErrorRate <= 0) return null;
+        ErrorSink sink = new ErrorSink(processor, errorQueueSize, errorTraceLimit);
+        sink.setMaxErrorRate(maxErrorRate);
+        sink.setMinRows(errorRateMinRows);
+        return sink;
+    }
+
+    /**
+     * overwrite this method to save state of the spec with a checkpoint
+     *
+     * @return null or state to restore, when the import is resumed
+     */
+    public String getCheckpointState(LineImportProcessor processor) {
+        return null;
+    }
+
+    /**
+     * overwrite this method to restore the state saved by getCheckpointState()
+     * when an import is resumed.
+     *
+     * @param state - null or the state of the checkpoint
+     */
+    public void restoreCheckpointState(LineImportProcessor processor, String state) {
+    }
+
     /**
      * initialize the lineReader. overwrite in subclasses if required
      *
+     * @param aReader - a Reader, an InputStream or a LineReader that has already been opened
      * @throws Exception
      */
     public LineReader createLineReader(Closeable aReader) throws IOException {
+        if (aReader instanceof LineReader) {
+            return (LineReader) aReader;
+        }
         LineReader lineReader = getLineTokenizerFactory().createLineReader();
         if (aReader instanceof Reader) {
             lineReader.setReader((Reader) aReader);
         } else if (aReader instanceof InputStream) {
-            lineReader.setStream((InputStream) aReader);
+            InputStream stream = (InputStream) aReader;
+            if (decompressThreads >= 0 && isTextReader(lineReader)) {
+                stream = CompressedInputStream.open(stream, decompressThreads);
+            }
+            lineReader.setStream(stream);
         }
         return lineReader;
     }
 
+    /** @return true when the lineReader reads text lines (not e.g. a spreadsheet) */
+    static boolean isTextReader(LineReader lineReader) {
+        return lineReader instanceof StringLineReader || lineReader instanceof SingleByteLineReader;
+    }
+
     public static enum Header {
         /** no header line */
         NONE,
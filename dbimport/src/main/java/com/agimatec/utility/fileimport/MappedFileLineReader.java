@@ -0,0 +1,228 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+
+/**
+ * Description: read a local file line by line (each line is a string) by mapping
+ * windows of the file into memory, instead of copying it through a BufferedReader.
+ * Lines end with \n, \r or \r\n (as with BufferedReader). Only charsets that encode
+ * these characters as single bytes (UTF-8, ISO-8859-x, windows-125x, ...) are supported.
+ * The byte offset of each line is available for error reports and restarts.<br>
+ *
+ * @see ImportJob#setMappedFiles(boolean)
+ */
+public class MappedFileLineReader implements PositionedLineReader<String>, Closeable {
+    /** 64 MB */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final int windowSize;
+    private final CharsetDecoder decoder;
+    private Closeable stream;
+    private FileChannel channel;
+    /** true when the channel belongs to the reader this one has been duplicated from */
+    private boolean sharedChannel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private CharBuffer chars;
+    private int terminatorLength;
+    private long recordOffset = -1;
+    private long nextOffset;
+    private long limit = Long.MAX_VALUE;
+    private boolean limitReached;
+
+    /** create an instance using the platform charset (as StringLineReader) */
+    public MappedFileLineReader() {
+        this(Charset.defaultCharset(), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param charset    - charset of the file
+     * @param windowSize - bytes mapped into memory at once (a single line can be longer)
+     * @throws IllegalArgumentException - charset not supported
+     */
+    public MappedFileLineReader(Charset charset, int windowSize) {
+        if (!isLineSeparatorSingleByte(charset)) {
+            throw new IllegalArgumentException("Charset not supported: " + charset);
+        }
+        this.windowSize = windowSize;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** @return true when the charset can be used by this reader */
+    public static boolean isLineSeparatorSingleByte(Charset charset) {
+        if (!charset.canEncode()) return false;
+        try {
+            ByteBuffer bytes = charset.newEncoder().encode(CharBuffer.wrap("\r\n"));
+            return bytes.remaining() == 2 && bytes.get(0) == '\r' && bytes.get(1) == '\n';
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException - file required
+     */
+    public void setReader(Reader aReader) throws IOException {
+        throw new UnsupportedOperationException("FileInputStream required");
+    }
+
+    /**
+     * @param aStream - must be a FileInputStream
+     * @throws IllegalArgumentException - not a FileInputStream
+     */
+    public void setStream(InputStream aStream) throws IOException {
+        if (!(aStream instanceof FileInputStream)) {
+            throw new IllegalArgumentException("FileInputStream required");
+        }
+        stream = aStream;
+        init(((FileInputStream) aStream).getChannel());
+    }
+
+    public void setFile(File file) throws IOException {
+        setStream(new FileInputStream(file));
+    }
+
+    private void init(FileChannel aChannel) throws IOException {
+        channel = aChannel;
+        fileSize = channel.size();
+        window = null;
+        recordOffset = -1;
+        nextOffset = channel.position();
+    }
+
+    public String readLine() throws IOException {
+        if (nextOffset >= fileSize) return null;
+        if (nextOffset >= limit) {
+            limitReached = true;
+            return null;
+        }
+        final long start = nextOffset;
+        final long end = findLineEnd(start);
+        recordOffset = start;
+        nextOffset = end + terminatorLength;
+        return decode((int) (start - windowStart), (int) (end - windowStart));
+    }
+
+    /**
+     * @return the byte offset of the line terminator (or end of file), the window contains the line
+     */
+    private long findLineEnd(long start) throws IOException {
+        long size = windowSize;
+        if (window == null || start < windowStart || start >= windowStart + window.limit()) {
+            map(start, size);
+        }
+        while (true) {
+            final int from = (int) (start - windowStart);
+            final int limit = window.limit();
+            final boolean lastWindow = windowStart + limit >= fileSize;
+            for (int i = from; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    terminatorLength = 1;
+                    return windowStart + i;
+                } else if (b == '\r') {
+                    if (i + 1 < limit) {
+                        terminatorLength = window.get(i + 1) == '\n' ? 2 : 1;
+                        return windowStart + i;
+                    } else if (lastWindow) {
+                        terminatorLength = 1;
+                        return windowStart + i;
+                    }
+                    break; // must see the next byte
+                }
+            }
+            if (lastWindow) {
+                terminatorLength = 0;
+                return fileSize;
+            }
+            // line crosses the end of the window: map a window beginning with the line
+            if (from == 0) size *= 2;
+            map(start, size);
+        }
+    }
+
+    private void map(long position, long size) throws IOException {
+        size = Math.min(Math.min(size, Integer.MAX_VALUE), fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowStart = position;
+    }
+
+    private String decode(int from, int to) throws CharacterCodingException {
+        ByteBuffer bytes = window.duplicate();
+        bytes.limit(to);
+        bytes.position(from);
+        int maxChars = (int) ((to - from) * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars == null || chars.capacity() < maxChars) {
+            chars = CharBuffer.allocate(Math.max(maxChars, 256));
+        }
+        chars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (result.isError()) result.throwException();
+        decoder.flush(chars);
+        chars.flip();
+        return chars.toString();
+    }
+
+    /**
+     * @return a new reader for the same file, positioned at the next offset of the receiver.
+     *         it has its own window and buffers and can be used by another thread.
+     *         closing it does not close the file.
+     */
+    public MappedFileLineReader duplicate() {
+        MappedFileLineReader copy = new MappedFileLineReader(decoder.charset(), windowSize);
+        copy.channel = channel;
+        copy.sharedChannel = true;
+        copy.fileSize = fileSize;
+        copy.nextOffset = nextOffset;
+        return copy;
+    }
+
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public void seek(long offset) throws IOException {
+        if (offset < 0 || offset > fileSize) {
+            throw new IOException("Invalid offset " + offset + ", file size is " + fileSize);
+        }
+        nextOffset = offset;
+        recordOffset = -1;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @param limit - readLine() returns null for the lines starting at or after this offset
+     */
+    public void setLimit(long limit) {
+        this.limit = limit;
+        limitReached = false;
+    }
+
+    /** @return true when a line has not been read because of the limit */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    public void close() throws IOException {
+        window = null;
+        chars = null;
+        if (sharedChannel) return;
+        if (channel != null) channel.close();
+        if (stream != null) stream.close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+
+/**
+ * Description: thread-safe replacement of a DecimalFormat to parse number values,
+ * used by {@link SqlUtil#defNumber(String, String)}.
+ * Each thread parses with its own copy of the DecimalFormat. Plain integer values
+ * of a pattern without prefix, suffix or multiplier (e.g. #, 0, #,##0.00) are parsed
+ * by hand with the same result (a Long) as the DecimalFormat.
+ */
+public final class NumberConverter implements Serializable {
+    private final String pattern;
+    private final int cacheSize;
+    private final transient boolean plainPattern;
+    private final transient ThreadLocal<DecimalFormat> formats;
+    private final transient ConverterCache<Number> cache;
+
+    public NumberConverter(String pattern) {
+        this(pattern, 0);
+    }
+
+    /**
+     * @param pattern   - DecimalFormat pattern
+     * @param cacheSize - max. number of values to cache, 0 for no cache
+     */
+    public NumberConverter(String pattern, final int cacheSize) {
+        this.pattern = pattern;
+        this.cacheSize = cacheSize;
+        final DecimalFormat format = new DecimalFormat(pattern); // fails early for invalid patterns
+        this.formats = new ThreadLocal<DecimalFormat>() {
+            @Override
+            protected DecimalFormat initialValue() {
+                return (DecimalFormat) format.clone();
+            }
+        };
+        this.plainPattern = pattern.matches("[#0,.]+");
+        this.cache = cacheSize > 0 ? new ConverterCache<Number>(cacheSize) : null;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public Number number(String value) throws ParseException {
+        if (cache != null) {
+            Number cached = cache.get(value);
+            if (cached != null) return cached;
+        }
+        Number number = plainPattern ? parseLong(value) : null;
+        if (number == null) number = formats.get().parse(value);
+        if (cache != null) cache.put(value, number);
+        return number;
+    }
+
+    /** @return null when the value is not a plain integer that fits into a long */
+    private static Long parseLong(String value) {
+        int i = value.startsWith("-") ? 1 : 0;
+        int length = value.length();
+        if (length == i || length - i > 18) return null;
+        long number = 0;
+        for (; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return null;
+            number = number * 10 + digit;
+        }
+        if (value.charAt(0) == '-') {
+            if (number == 0) return null; // DecimalFormat returns -0.0
+            number = -number;
+        }
+        return number;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return new NumberConverter(pattern, cacheSize);
+    }
+}
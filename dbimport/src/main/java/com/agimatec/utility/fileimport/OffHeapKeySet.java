@@ -0,0 +1,173 @@
+package com.agimatec.utility.fileimport;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: a set of keys, that keeps its table outside of the java heap
+ * (direct buffers, limited by -XX:MaxDirectMemorySize), so that it can detect
+ * duplicates among 100 million keys and more.
+ * An open-addressing hash table with linear probing stores 64-bit hashes of the keys.
+ * Keys with the same hash are considered equal, unless the set is exact: then the keys
+ * are stored (UTF-8, off-heap, too) and compared when their hashes are equal.
+ * Not thread-safe!
+ */
+public class OffHeapKeySet {
+    private static final int SEGMENT_SHIFT = 20; // 1M slots per buffer
+    private static final int KEY_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final double LOAD_FACTOR = 0.7;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final boolean exact;
+    private LongBuffer[] hashes;
+    /** exact only: position of the key in the key store */
+    private LongBuffer[] offsets;
+    private long capacity;
+    private int segmentShift;
+    private long size;
+    private long collisions;
+
+    /* exact only: the key store, length (int) + UTF-8 bytes of each key */
+    private final List<ByteBuffer> keys = new ArrayList<ByteBuffer>();
+    private ByteBuffer currentKeys;
+
+    /**
+     * @param expectedKeys - the initial capacity, the table grows when required
+     * @param exact        - true to compare the keys, when their hashes are equal
+     */
+    public OffHeapKeySet(long expectedKeys, boolean exact) {
+        this.exact = exact;
+        long initial = 1024;
+        while (initial * LOAD_FACTOR < expectedKeys) initial <<= 1;
+        allocate(initial);
+    }
+
+    private void allocate(long slots) {
+        capacity = slots;
+        segmentShift = (int) Math.min(SEGMENT_SHIFT, Long.numberOfTrailingZeros(slots));
+        int segmentSlots = 1 << segmentShift;
+        int segments = (int) (slots >>> segmentShift);
+        hashes = new LongBuffer[segments];
+        offsets = exact ? new LongBuffer[segments] : null;
+        for (int i = 0; i < segments; i++) {
+            hashes[i] = ByteBuffer.allocateDirect(segmentSlots * 8).asLongBuffer();
+            if (exact) offsets[i] = ByteBuffer.allocateDirect(segmentSlots * 8).asLongBuffer();
+        }
+    }
+
+    /**
+     * add the key to the set.
+     *
+     * @return true when the key is new, false when it is a duplicate
+     */
+    public boolean add(CharSequence key) {
+        long hash = hash(key);
+        if (hash == 0) hash = 1; // 0 marks a free slot
+        byte[] bytes = exact ? key.toString().getBytes(UTF8) : null;
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (true) {
+            long slotHash = get(hashes, slot);
+            if (slotHash == 0) break;
+            if (slotHash == hash) {
+                if (!exact || equalsKey(get(offsets, slot), bytes)) return false;
+                collisions++;
+            }
+            slot = (slot + 1) & mask;
+        }
+        set(hashes, slot, hash);
+        if (exact) set(offsets, slot, storeKey(bytes));
+        if (++size > capacity * LOAD_FACTOR) grow();
+        return true;
+    }
+
+    /** @return a 64-bit hash of the chars of the key */
+    protected long hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        // finalizer of MurmurHash3, FNV alone is weak in the low bits used for the slot
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long get(LongBuffer[] table, long slot) {
+        return table[(int) (slot >>> segmentShift)].get((int) (slot & ((1 << segmentShift) - 1)));
+    }
+
+    private void set(LongBuffer[] table, long slot, long value) {
+        table[(int) (slot >>> segmentShift)].put((int) (slot & ((1 << segmentShift) - 1)), value);
+    }
+
+    private void grow() {
+        LongBuffer[] oldHashes = hashes, oldOffsets = offsets;
+        int oldShift = segmentShift;
+        long oldCapacity = capacity;
+        allocate(capacity << 1);
+        long mask = capacity - 1;
+        for (long i = 0; i < oldCapacity; i++) {
+            int segment = (int) (i >>> oldShift), index = (int) (i & ((1 << oldShift) - 1));
+            long hash = oldHashes[segment].get(index);
+            if (hash == 0) continue;
+            long slot = hash & mask;
+            while (get(hashes, slot) != 0) slot = (slot + 1) & mask;
+            set(hashes, slot, hash);
+            if (exact) set(offsets, slot, oldOffsets[segment].get(index));
+        }
+    }
+
+    /** @return the offset of the key in the key store */
+    private long storeKey(byte[] bytes) {
+        int required = 4 + bytes.length;
+        if (required > KEY_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Key too long: " + bytes.length + " bytes");
+        }
+        if (currentKeys == null || currentKeys.remaining() < required) {
+            currentKeys = ByteBuffer.allocateDirect(KEY_SEGMENT_SIZE);
+            keys.add(currentKeys);
+        }
+        long offset = (long) (keys.size() - 1) * KEY_SEGMENT_SIZE + currentKeys.position();
+        currentKeys.putInt(bytes.length);
+        currentKeys.put(bytes);
+        return offset;
+    }
+
+    private boolean equalsKey(long offset, byte[] bytes) {
+        ByteBuffer buffer = keys.get((int) (offset / KEY_SEGMENT_SIZE));
+        int position = (int) (offset % KEY_SEGMENT_SIZE);
+        if (buffer.getInt(position) != bytes.length) return false;
+        position += 4;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    /** @return number of keys in the set */
+    public long size() {
+        return size;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /** @return exact only: number of different keys with equal hashes found */
+    public long getCollisions() {
+        return collisions;
+    }
+
+    /** @return bytes allocated outside of the heap */
+    public long getOffHeapBytes() {
+        return capacity * (exact ? 16 : 8) + (long) keys.size() * KEY_SEGMENT_SIZE;
+    }
+}
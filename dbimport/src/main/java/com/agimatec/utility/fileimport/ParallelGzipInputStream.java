@@ -0,0 +1,135 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Description: inflate the members of a BGZF file (gzip members with the
+ * compressed size in the 'BC' extra field, written by bgzip) with several threads.
+ * The read-ahead thread reads the members and a pool of threads inflates them.
+ * Other multi-member gzip files cannot be split without inflating them, they
+ * are read with a GZIPInputStream.
+ */
+class ParallelGzipInputStream extends ReadAheadInputStream {
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+    /** max. uncompressed size of a BGZF member */
+    private static final int MAX_MEMBER_SIZE = 65536;
+
+    private final ExecutorService pool;
+
+    /** @param source - buffered stream at the start of a BGZF member */
+    ParallelGzipInputStream(InputStream source, int threads) {
+        super(source, 0, threads * 4);
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Inflate");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param header - at least the first 18 bytes of a gzip stream
+     * @return true when the member has the header of a BGZF block
+     */
+    static boolean isBgzf(byte[] header, int length) {
+        return length >= 18 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b &&
+                header[2] == 8 && header[3] == 4 && uint16(header, 10) >= 6 &&
+                header[12] == 'B' && header[13] == 'C' && uint16(header, 14) == 2;
+    }
+
+    private static int uint16(byte[] buf, int off) {
+        return (buf[off] & 0xff) | (buf[off + 1] & 0xff) << 8;
+    }
+
+    private static int int32(byte[] buf, int off) {
+        return uint16(buf, off) | uint16(buf, off + 2) << 16;
+    }
+
+    /** read the next member and submit it to the pool */
+    protected Object readBlock() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int n = readFully(source, header, 0, HEADER_SIZE);
+        if (n == 0) return null;
+        if (n < HEADER_SIZE) throw new EOFException("Unexpected end of gzip member header");
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8 || header[3] != 4) {
+            throw new ZipException("Not a BGZF member");
+        }
+        byte[] extra = new byte[uint16(header, 10)];
+        if (readFully(source, extra, 0, extra.length) < extra.length) {
+            throw new EOFException("Unexpected end of gzip member header");
+        }
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extra.length; i += 4 + uint16(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && uint16(extra, i + 2) == 2) {
+                blockSize = uint16(extra, i + 4) + 1;
+            }
+        }
+        int remaining = blockSize - HEADER_SIZE - extra.length;
+        if (blockSize < 0 || remaining < TRAILER_SIZE) throw new ZipException("Not a BGZF member");
+        final byte[] member = new byte[remaining];
+        if (readFully(source, member, 0, remaining) < remaining) {
+            throw new EOFException("Unexpected end of gzip member");
+        }
+        return pool.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return inflate(member);
+            }
+        });
+    }
+
+    /** @param member - compressed data and trailer of a member */
+    private static byte[] inflate(byte[] member) throws IOException {
+        int dataLength = member.length - TRAILER_SIZE;
+        int size = int32(member, dataLength + 4);
+        if (size < 0 || size > MAX_MEMBER_SIZE) {
+            throw new ZipException("Corrupt gzip member: size " + (size & 0xffffffffL) +
+                    " exceeds " + MAX_MEMBER_SIZE);
+        }
+        byte[] data = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, 0, dataLength);
+            int n = 0;
+            while (n < data.length && !inflater.finished()) {
+                int inflated = inflater.inflate(data, n, data.length - n);
+                if (inflated == 0 && inflater.needsInput()) break;
+                n += inflated;
+            }
+            if (n == data.length && !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                n++; // more data than ISIZE
+            }
+            if (n != data.length) throw new ZipException("Corrupt gzip member: size mismatch");
+        } catch (DataFormatException ex) {
+            throw new ZipException(ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if ((int) crc.getValue() != int32(member, dataLength)) {
+            throw new ZipException("Corrupt gzip member: CRC mismatch");
+        }
+        return data;
+    }
+
+    protected void readAheadFinished() {
+        pool.shutdown(); // the submitted members are still inflated
+    }
+
+    public void close() throws IOException {
+        pool.shutdownNow();
+        super.close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.IOException;
+
+/**
+ * Description: a {@link LineReader} that knows the byte position of each record
+ * in the underlying file, so that error reports and restarts can refer to it.
+ */
+public interface PositionedLineReader<Line> extends LineReader<Line> {
+    /**
+     * @return byte offset of the line last returned by readLine() or -1 if none
+     */
+    long getRecordOffset();
+
+    /**
+     * @return byte offset where the next call of readLine() starts
+     */
+    long getNextOffset();
+
+    /**
+     * continue reading at the given byte offset.
+     *
+     * @param offset - a value of getNextOffset(), must be the start of a line
+     * @throws IOException
+     */
+    void seek(long offset) throws IOException;
+}
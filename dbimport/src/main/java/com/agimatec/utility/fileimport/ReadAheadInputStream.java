@@ -0,0 +1,151 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Description: reads the source stream in a separate thread, up to a number of blocks
+ * ahead of the reading thread, e.g. to decompress while the lines are parsed.
+ * The thread is started with the first read. Not thread-safe.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private static final Object END = new Object();
+
+    protected final InputStream source;
+    protected final int blockSize;
+    /** byte[], Future of byte[], IOException or END */
+    private final BlockingQueue<Object> blocks;
+    private Thread thread;
+    private volatile boolean closed;
+    private byte[] current;
+    private int position;
+    private boolean eof;
+
+    /**
+     * @param source    - the stream to read from, closed by this stream
+     * @param blockSize - bytes per block
+     * @param blocks    - max. number of blocks read ahead
+     */
+    public ReadAheadInputStream(InputStream source, int blockSize, int blocks) {
+        this.source = source;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayBlockingQueue<Object>(blocks);
+    }
+
+    /**
+     * read the next block of the source, called by the read-ahead thread.
+     *
+     * @return a byte[] or a Future of a byte[], null at the end of the source
+     */
+    protected Object readBlock() throws IOException {
+        byte[] block = new byte[blockSize];
+        int n = readFully(source, block, 0, block.length);
+        if (n == 0) return null;
+        return n == block.length ? block : Arrays.copyOf(block, n);
+    }
+
+    /** @return number of bytes read, less than len at the end of the stream */
+    protected static int readFully(InputStream in, byte[] buf, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(buf, off + total, len - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private void start() {
+        thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Object block;
+                    while (!closed && (block = readBlock()) != null) {
+                        blocks.put(block);
+                    }
+                    blocks.put(END);
+                } catch (IOException ex) {
+                    failed(ex);
+                } catch (RuntimeException ex) {
+                    failed(new IOException(ex));
+                } catch (InterruptedException ex) {
+                    // closed
+                } finally {
+                    readAheadFinished();
+                }
+            }
+        }, "ReadAhead");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void failed(IOException ex) {
+        try {
+            if (!closed) blocks.put(ex);
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /** called by the read-ahead thread, when it stops */
+    protected void readAheadFinished() {
+    }
+
+    /** @return false at the end of the stream */
+    private boolean nextBlock() throws IOException {
+        if (eof) return false;
+        if (thread == null) start();
+        while (current == null || position == current.length) {
+            Object block;
+            try {
+                block = blocks.take();
+                if (block instanceof Future) block = ((Future) block).get();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() :
+                        new IOException(ex.getCause());
+            }
+            if (block == END) {
+                eof = true;
+                return false;
+            } else if (block instanceof IOException) {
+                throw (IOException) block;
+            }
+            current = (byte[]) block;
+            position = 0;
+        }
+        return true;
+    }
+
+    public int read() throws IOException {
+        if (!nextBlock()) return -1;
+        return current[position++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!nextBlock()) return -1;
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    public int available() throws IOException {
+        return current == null ? 0 : current.length - position;
+    }
+
+    public void close() throws IOException {
+        closed = true;
+        if (thread != null) thread.interrupt();
+        blocks.clear();
+        source.close();
+    }
+}
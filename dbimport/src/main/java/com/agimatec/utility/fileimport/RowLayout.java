@@ -0,0 +1,71 @@
+package com.agimatec.utility.fileimport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description: the field names of the columns of an import, resolved once with
+ * {@link LineImporterSpec#getFieldName(int)} and shared by all {@link IndexedRow}s.
+ * Columns without a field name get the generic name (field_0, field_1, ...) when a row
+ * contains them for the first time.
+ */
+public class RowLayout {
+    private final LineImporterSpec spec;
+    /** the field names of the spec this layout has been created for */
+    private final String[] specFieldNames;
+    private String[] names = new String[0];
+    /** index of the previous column with the same name or -1 */
+    private int[] sameNameBefore = new int[0];
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+    public RowLayout(LineImporterSpec spec) {
+        this.spec = spec;
+        this.specFieldNames = spec.getFieldNames();
+        if (specFieldNames != null && specFieldNames.length > 0) {
+            resolve(specFieldNames.length - 1);
+        }
+    }
+
+    /** @return true when the layout is still valid for the current field names of the spec */
+    public boolean isValid() {
+        return specFieldNames == spec.getFieldNames();
+    }
+
+    /** @return number of columns resolved so far */
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int column) {
+        if (column >= names.length) resolve(column);
+        return names[column];
+    }
+
+    /**
+     * @return the index of the last column with the given name or -1
+     */
+    public int indexOf(Object name) {
+        Integer idx = indexes.get(name);
+        return idx == null ? -1 : idx;
+    }
+
+    /** @return index of the previous column with the same name or -1 */
+    int sameNameBefore(int column) {
+        return sameNameBefore[column];
+    }
+
+    private void resolve(int column) {
+        int from = names.length;
+        String[] newNames = new String[column + 1];
+        int[] newBefore = new int[column + 1];
+        System.arraycopy(names, 0, newNames, 0, from);
+        System.arraycopy(sameNameBefore, 0, newBefore, 0, from);
+        for (int i = from; i <= column; i++) {
+            newNames[i] = spec.getFieldName(i);
+            Integer before = indexes.put(newNames[i], i);
+            newBefore[i] = before == null ? -1 : before;
+        }
+        names = newNames;
+        sameNameBefore = newBefore;
+    }
+}
@@ -0,0 +1,145 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.File;
+import java.net.URL;
+import java.sql.Connection;
+
+/**
+ * Description: an import of a file, that is executed by an {@link ImportScheduler}
+ * with an {@link ImportJob}. Imports with the same importName are never executed
+ * at the same time. Overwrite createSpec() to create a spec that
+ * uses the connection of the job.
+ */
+public class ScheduledImport {
+    protected final String importName;
+    protected final String fileName;
+    protected ImporterSpec spec;
+    protected String charset = "UTF-8";
+    protected int connections = 1;
+    private long size = -2;
+
+    /* results */
+    protected long waitMillis;
+    protected long runMillis;
+    protected ImportJob job;
+    protected Exception exception;
+
+    /**
+     * @param importName - the name of the import (Import_Control), null when
+     *                   the import can run parallel to all others
+     * @param fileName   - file or URL to import, see {@link ImportJob#toURL(String)}
+     * @param spec       - the spec, null when createSpec() is overwritten
+     */
+    public ScheduledImport(String importName, String fileName, ImporterSpec spec) {
+        this.importName = importName;
+        this.fileName = fileName;
+        this.spec = spec;
+    }
+
+    /**
+     * overwrite to create a spec for the connection of the job
+     *
+     * @param connection - null or the connection of the job
+     */
+    protected ImporterSpec createSpec(Connection connection) throws Exception {
+        return spec;
+    }
+
+    /**
+     * create the job for the import. The job closes the connection.
+     *
+     * @param connection - null or the connection of the job
+     * @param sqlUtil    - null or the SqlUtil to control the import in Import_Control
+     */
+    protected ImportJob createJob(Connection connection, SqlUtil sqlUtil) throws Exception {
+        ImportJob job = new ImportJob(connection);
+        if (connection != null && sqlUtil != null) {
+            job.setController(new ImportController(connection, sqlUtil));
+        }
+        job.getControl().setImportName(importName);
+        job.getControl().setFileName(fileName);
+        return job;
+    }
+
+    /** wait for other imports of the same name (when controlled) and import the file */
+    protected void run(ImportJob job) throws Exception {
+        if (job.getController() != null) job.join();
+        job.importFromReader(createSpec(job.getConnection()), charset);
+    }
+
+    /** @return the size of a local file, -1 when unknown */
+    public long getSize() {
+        if (size == -2) {
+            try {
+                URL url = ImportJob.toURL(fileName);
+                size = url != null && "file".equals(url.getProtocol()) ?
+                        ImportJob.toFile(url).length() : -1;
+            } catch (Exception ex) {
+                size = -1;
+            }
+        }
+        return size;
+    }
+
+    public String getImportName() {
+        return importName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @param connections - number of database connections used by the import (default: 1),
+     *                    counted against the budget of the scheduler.
+     *                    The scheduler opens the connection of the job, createSpec() opens
+     *                    further connections by itself.
+     */
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    /** @return milliseconds between the start of the scheduler and the start of the import */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /** @return milliseconds the import has been running */
+    public long getRunMillis() {
+        return runMillis;
+    }
+
+    /** @return null or the job after it has been started */
+    public ImportJob getJob() {
+        return job;
+    }
+
+    /** @return null or the exception that has stopped the import */
+    public Exception getException() {
+        return exception;
+    }
+
+    public int getRowCount() {
+        return job == null || job.getImporter() == null ? 0 : job.getImporter().getRowCount();
+    }
+
+    public int getErrorCount() {
+        return job == null || job.getImporter() == null ? 0 : job.getImporter().getErrorCount();
+    }
+
+    public String toString() {
+        return (importName == null ? "" : importName + " ") + fileName;
+    }
+}
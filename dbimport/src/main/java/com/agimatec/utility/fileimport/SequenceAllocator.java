@@ -0,0 +1,143 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Description: hand out the values of a database sequence, that have been fetched
+ * in blocks of N values per round trip (see {@link SqlUtil#defSequence(String, String, int)}).
+ * Concurrent callers take the values of the current block without locking,
+ * only fetching the next block is serialized.<br>
+ * Two ways to fetch a block:
+ * <ul>
+ * <li>query: a single query returns N values of the sequence (by generate_series or CONNECT BY)</li>
+ * <li>hi/lo: the sequence is defined with INCREMENT BY N, a single value v
+ * reserves the values v .. v+N-1</li>
+ * </ul>
+ */
+public class SequenceAllocator implements Serializable {
+    private final String blockQuery;
+    private final String singleQuery;
+    private final int blockSize;
+    private final boolean hiLo;
+    private final transient AtomicReference<Block> current = new AtomicReference<Block>();
+
+    /**
+     * @param blockQuery  - query that returns blockSize values, null to use singleQuery blockSize times
+     * @param singleQuery - query that returns the next value
+     * @param blockSize   - number of values fetched at once
+     * @param hiLo        - true: the sequence is incremented by blockSize, singleQuery reserves a block
+     */
+    public SequenceAllocator(String blockQuery, String singleQuery, int blockSize, boolean hiLo) {
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize must be > 0");
+        this.blockQuery = blockQuery;
+        this.singleQuery = singleQuery;
+        this.blockSize = blockSize;
+        this.hiLo = hiLo;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public boolean isHiLo() {
+        return hiLo;
+    }
+
+    /**
+     * @param connection - used when the next block must be fetched
+     * @return the next value
+     */
+    public long next(Connection connection) throws SQLException {
+        while (true) {
+            Block block = current.get();
+            if (block != null) {
+                int index = block.next.getAndIncrement();
+                if (index < block.size) return block.value(index);
+            }
+            synchronized (this) {
+                if (current.get() == block) { // no other thread has fetched a new block meanwhile
+                    current.set(hiLo ? new Block(fetchHi(connection), blockSize) :
+                            new Block(fetch(connection, blockSize)));
+                }
+            }
+        }
+    }
+
+    /** forget the remaining values of the current block */
+    public void reset() {
+        current.set(null);
+    }
+
+    /** @return the first value of the next block (hi/lo) */
+    protected long fetchHi(Connection connection) throws SQLException {
+        return fetch(connection, 1)[0];
+    }
+
+    /** @return count values of the sequence */
+    protected long[] fetch(Connection connection, int count) throws SQLException {
+        long[] values = new long[count];
+        final Statement stmt = connection.createStatement();
+        try {
+            int fetched = 0;
+            if (count > 1 && blockQuery != null) {
+                stmt.setFetchSize(count);
+                fetched = read(stmt.executeQuery(blockQuery), values, 0);
+            }
+            while (fetched < count) {
+                int read = read(stmt.executeQuery(singleQuery), values, fetched);
+                if (read == 0) throw new SQLException("no value returned by: " + singleQuery);
+                fetched += read;
+            }
+            return values;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static int read(ResultSet result, long[] values, int offset) throws SQLException {
+        try {
+            int i = offset;
+            while (i < values.length && result.next()) {
+                values[i++] = result.getLong(1);
+            }
+            return i - offset;
+        } finally {
+            result.close();
+        }
+    }
+
+    /** do not copy the values of the current block: they would be handed out twice */
+    private Object readResolve() throws ObjectStreamException {
+        return new SequenceAllocator(blockQuery, singleQuery, blockSize, hiLo);
+    }
+
+    private static final class Block {
+        private final long[] values;
+        private final long start;
+        private final int size;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Block(long[] values) {
+            this.values = values;
+            this.start = 0;
+            this.size = values.length;
+        }
+
+        Block(long start, int size) {
+            this.values = null;
+            this.start = start;
+            this.size = size;
+        }
+
+        long value(int index) {
+            return values == null ? start + index : values[index];
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.agimatec.utility.fileimport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Description: read a stream line by line without decoding the bytes into Strings.
+ * Each line is a {@link ByteLine}. Lines end with \n, \r or \r\n (as with BufferedReader).
+ * Only single-byte charsets (ISO-8859-x, windows-125x, US-ASCII, ...) are supported.<br>
+ *
+ * @see FixedLengthFieldTokenizerFactory#setSingleByteCharset(String)
+ */
+public class SingleByteLineReader implements LineReader<CharSequence> {
+    private final char[] chars;
+    private InputStream stream;
+    private byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private byte[] line = new byte[256];
+
+    /**
+     * @throws IllegalArgumentException - not a single-byte charset
+     */
+    public SingleByteLineReader(Charset charset) {
+        chars = decodingTable(charset);
+    }
+
+    /** @return true when the charset can be used by this reader */
+    public static boolean isSingleByte(Charset charset) {
+        return charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1f &&
+                charset.newDecoder().maxCharsPerByte() == 1f;
+    }
+
+    /** @return the char of each byte value */
+    private static char[] decodingTable(Charset charset) {
+        if (!isSingleByte(charset)) {
+            throw new IllegalArgumentException("Charset not supported: " + charset);
+        }
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] table = new char[256];
+        for (int i = 0; i < 256; i++) {
+            try {
+                CharBuffer decoded = decoder.decode(ByteBuffer.wrap(new byte[]{(byte) i}));
+                table[i] = decoded.remaining() == 1 ? decoded.get() : '\uFFFD';
+            } catch (CharacterCodingException e) {
+                table[i] = '\uFFFD';
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @throws UnsupportedOperationException - InputStream required
+     */
+    public void setReader(Reader aReader) throws IOException {
+        throw new UnsupportedOperationException("InputStream required");
+    }
+
+    public void setStream(InputStream aStream) throws IOException {
+        stream = aStream;
+        position = limit = 0;
+    }
+
+    public CharSequence readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                return length == 0 ? null : newLine(length);
+            }
+            byte b = buffer[position++];
+            if (b == '\n') {
+                return newLine(length);
+            } else if (b == '\r') {
+                if ((position < limit || fill()) && buffer[position] == '\n') position++;
+                return newLine(length);
+            }
+            if (length == line.length) {
+                byte[] larger = new byte[length * 2];
+                System.arraycopy(line, 0, larger, 0, length);
+                line = larger;
+            }
+            line[length++] = b;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = stream.read(buffer);
+        position = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private ByteLine newLine(int length) {
+        byte[] bytes = new byte[length];
+        System.arraycopy(line, 0, bytes, 0, length);
+        return new ByteLine(bytes, 0, length, chars);
+    }
+
+    public void close() throws IOException {
+        if (stream != null) stream.close();
+    }
+}
@@ -5,13 +5,16 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.*;
-import java.util.HashMap;
+import java.text.MessageFormat;
+import java.text.ParseException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Description: Utility class that helps to convert parameters during
- * import processing (e.g. in groovy scripts).<br/>
+ * import processing (e.g. in groovy scripts).
+ * The converters are thread-safe, so that an instance can be shared by the worker threads
+ * of a parallel import, when the definitions have been made before the import starts.<br/>
  * User: roman.stumm <br/>
  * Date: 30.08.2007 <br/>
  * Time: 11:59:08 <br/>
@@ -21,6 +24,8 @@ public class SqlUtil implements Serializable {
             {"nextval(''{0}'')", "{0}.NEXTVAL", "NEXT VALUE FOR {0}"}; // postgres, oracle, hsqldb
     private static final String[] SEQ_FETCH =
             {"SELECT {0}", "SELECT {0} FROM DUAL", "SELECT {0}"}; // postgres, oracle, hsqldb
+    private static final String[] SEQ_FETCH_BLOCK = {"SELECT {0} FROM generate_series(1, {1})",
+            "SELECT {0} FROM DUAL CONNECT BY LEVEL <= {1}", null}; // postgres, oracle, hsqldb
     private static final int POSTGRES = 0;
     private static final int ORACLE = 1;
     private static final int HSQLDB = 2;
@@ -73,16 +78,32 @@ public class SqlUtil implements Serializable {
         this.dbms = dbms;
     }
 
-    private Map<String, Object> calls = new HashMap();
+    private Map<String, Object> calls = new ConcurrentHashMap<String, Object>();
+    private Map<String, SequenceAllocator> sequences =
+            new ConcurrentHashMap<String, SequenceAllocator>();
+    private int converterCacheSize = 0;
+
+    public int getConverterCacheSize() {
+        return converterCacheSize;
+    }
+
+    /**
+     * @param converterCacheSize - number of converted values that each date/number converter
+     *                           defined afterwards keeps in a LRU cache. default is 0 (no cache)
+     */
+    public void setConverterCacheSize(int converterCacheSize) {
+        this.converterCacheSize = converterCacheSize;
+    }
 
     /**
      * define the format for a date field
      *
      * @param fieldname  - symbolic field name
-     * @param dateFormat - java.text.SimpleDateFormat pattern
+     * @param dateFormat - date pattern (as java.text.SimpleDateFormat/java.time.format.DateTimeFormatter)
+     * @see DateConverter
      */
     public void defDate(String fieldname, String dateFormat) {
-        calls.put(fieldname, new SimpleDateFormat(dateFormat));
+        calls.put(fieldname, new DateConverter(dateFormat, converterCacheSize));
     }
 
     /**
@@ -90,9 +111,10 @@ public class SqlUtil implements Serializable {
      *
      * @param fieldname    - symbolic field name
      * @param numberFormat - java.text.DecimalFormat pattern
+     * @see NumberConverter
      */
     public void defNumber(String fieldname, String numberFormat) {
-        calls.put(fieldname, new DecimalFormat(numberFormat));
+        calls.put(fieldname, new NumberConverter(numberFormat, converterCacheSize));
     }
 
     /**
@@ -103,6 +125,41 @@ public class SqlUtil implements Serializable {
      */
     public void defSequence(String fieldname, String sequenceName) {
         calls.put(fieldname, MessageFormat.format(SEQ[dbms], sequenceName));
+        sequences.remove(fieldname);
+    }
+
+    /**
+     * define the call that a field gets its value from a sequence.
+     * nextVal() fetches blockSize values per round trip
+     * (postgres: generate_series, oracle: CONNECT BY, hsqldb: one query per value).
+     *
+     * @param fieldname    - symbolic field name
+     * @param sequenceName - name of the sequence to be used
+     * @param blockSize    - number of values fetched at once
+     */
+    public void defSequence(String fieldname, String sequenceName, int blockSize) {
+        defSequence(fieldname, sequenceName);
+        String nextValue = (String) calls.get(fieldname);
+        String blockQuery = SEQ_FETCH_BLOCK[dbms] == null ? null :
+                MessageFormat.format(SEQ_FETCH_BLOCK[dbms], nextValue, String.valueOf(blockSize));
+        sequences.put(fieldname, new SequenceAllocator(blockQuery,
+                MessageFormat.format(SEQ_FETCH[dbms], nextValue), blockSize, false));
+    }
+
+    /**
+     * define the call that a field gets its value from a sequence with the hi/lo scheme:
+     * the sequence must be defined with INCREMENT BY incrementBy, each value v fetched
+     * by nextVal() reserves the values v .. v+incrementBy-1.
+     * Other clients must use the sequence in the same way!
+     *
+     * @param fieldname    - symbolic field name
+     * @param sequenceName - name of the sequence to be used
+     * @param incrementBy  - the increment of the sequence
+     */
+    public void defSequenceHiLo(String fieldname, String sequenceName, int incrementBy) {
+        defSequence(fieldname, sequenceName);
+        sequences.put(fieldname, new SequenceAllocator(null,
+                MessageFormat.format(SEQ_FETCH[dbms], calls.get(fieldname)), incrementBy, true));
     }
 
     /**
@@ -117,8 +174,7 @@ public class SqlUtil implements Serializable {
         if (value == null) return null;
         value = value.trim();
         if (value.length() == 0) return null;
-        Object def = calls.get(fieldName);
-        return new java.sql.Date(((DateFormat) def).parse(value).getTime());
+        return ((DateConverter) calls.get(fieldName)).date(value);
     }
 
     public java.sql.Timestamp timestamp(String fieldName, String value)
@@ -126,24 +182,21 @@ public class SqlUtil implements Serializable {
         if (value == null) return null;
         value = value.trim();
         if (value.length() == 0) return null;
-        Object def = calls.get(fieldName);
-        return new java.sql.Timestamp(((DateFormat) def).parse(value).getTime());
+        return ((DateConverter) calls.get(fieldName)).timestamp(value);
     }
 
     public java.sql.Time time(String fieldName, String value) throws ParseException {
         if (value == null) return null;
         value = value.trim();
         if (value.length() == 0) return null;
-        Object def = calls.get(fieldName);
-        return new java.sql.Time(((DateFormat) def).parse(value).getTime());
+        return ((DateConverter) calls.get(fieldName)).time(value);
     }
 
     public Number number(String fieldName, String value) throws ParseException {
         if (value == null) return null;
         value = value.trim();
         if (value.length() == 0) return null;
-        Object def = calls.get(fieldName);
-        return ((NumberFormat) def).parse(value);
+        return ((NumberConverter) calls.get(fieldName)).number(value);
     }
 
     public boolean isTrue(String value) {
@@ -170,8 +223,13 @@ public class SqlUtil implements Serializable {
         return value == null || value.length() == 0 ? null : value;
     }
 
-    /** fetch the next value of the sequence, defined under this name */
+    /**
+     * fetch the next value of the sequence, defined under this name.
+     * thread-safe for sequences defined with a block size or hi/lo.
+     */
     public long nextVal(Connection connection, String fieldName) throws SQLException {
+        SequenceAllocator allocator = sequences.get(fieldName);
+        if (allocator != null) return allocator.next(connection);
         final String sql = MessageFormat.format(SEQ_FETCH[dbms], get(fieldName));
         final Statement stmt = connection.createStatement();
         ResultSet result = null;
@@ -198,6 +256,11 @@ public class SqlUtil implements Serializable {
         return calls.get(fieldName);
     }
 
+    /** @return the allocator of a sequence defined with a block size or hi/lo, or null */
+    public SequenceAllocator getSequenceAllocator(String fieldName) {
+        return sequences.get(fieldName);
+    }
+
     /**
      * a null-aware trim function
      *
@@ -22,6 +22,11 @@ import org.codehaus.groovy.runtime.InvokerInvocationException;
         println "inside row closure " + processor.rowCount + ": " + processor.currentRow;
  });
   </pre>
+ * example 3 (statically compiled handler, no dynamic dispatch per row):<pre>
+ def spec = new LineImporterSpecGroovy(new RowHandlerCompiler().compile('''
+        println "inside row handler " + processor.rowCount + ": " + processor.currentRow
+ '''));
+  </pre>
  * User: roman.stumm <br/>
  * Date: 30.08.2007 <br/>
  * Time: 10:57:42 <br/>
@@ -29,20 +34,40 @@ import org.codehaus.groovy.runtime.InvokerInvocationException;
 public class LineImporterSpecGroovy extends LineImporterSpecAutoFields {
     private final Closure rowProcessing;
     private final Closure headerProcessing;
+    private final RowHandler rowHandler;
+    private final RowHandler headerHandler;
 
     public LineImporterSpecGroovy(Closure rowProcessing) {
-        this.headerProcessing = null;
-        this.rowProcessing = rowProcessing;
+        this(null, rowProcessing);
     }
 
     public LineImporterSpecGroovy(Closure headerProcessing, Closure rowProcessing) {
         this.headerProcessing = headerProcessing;
         this.rowProcessing = rowProcessing;
+        this.headerHandler = null;
+        this.rowHandler = null;
+    }
+
+    public LineImporterSpecGroovy(RowHandler rowHandler) {
+        this(null, rowHandler);
+    }
+
+    /**
+     * @param headerHandler - null to get the field names from the header line
+     * @param rowHandler    - called for each row
+     */
+    public LineImporterSpecGroovy(RowHandler headerHandler, RowHandler rowHandler) {
+        this.headerProcessing = null;
+        this.rowProcessing = null;
+        this.headerHandler = headerHandler;
+        this.rowHandler = rowHandler;
     }
 
     @Override
     public void processHeaderLine(LineImportProcessor processorimporter) throws ImporterException {
-        if (headerProcessing == null) {
+        if (headerHandler != null) {
+            headerHandler.process(processorimporter);
+        } else if (headerProcessing == null) {
             super.processHeaderLine(processorimporter);   // call super!
         } else {
             headerProcessing.call(processorimporter);
@@ -51,6 +76,10 @@ public class LineImporterSpecGroovy extends LineImporterSpecAutoFields {
 
     @Override
     public void processRow(LineImportProcessor processor) throws ImporterException {
+        if (rowHandler != null) {
+            rowHandler.process(processor);
+            return;
+        }
         try {
             rowProcessing.call(processor);
         } catch(InvokerInvocationException ex) {
@@ -0,0 +1,15 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import com.agimatec.utility.fileimport.LineImportProcessor;
+
+/**
+ * Description: typed replacement of a header or row closure of
+ * {@link LineImporterSpecGroovy}. An implementation is called directly,
+ * without the dynamic dispatch of Closure.call().<br>
+ * Implement it in java, in a groovy class annotated with @CompileStatic,
+ * or let a {@link RowHandlerCompiler} create it from a script.
+ */
+public interface RowHandler {
+    void process(LineImportProcessor processor) throws ImporterException;
+}
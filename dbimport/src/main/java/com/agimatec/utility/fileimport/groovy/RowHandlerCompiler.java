@@ -0,0 +1,239 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.codehaus.groovy.util.ReleaseInfo;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: compile the body of a header or row handler with
+ * groovy's static compilation (@CompileStatic) into a {@link RowHandler}.<br>
+ * The script is the body of the method {@link RowHandler#process(com.agimatec.utility.fileimport.LineImportProcessor)},
+ * the processor is available as variable 'processor'. Because the script is compiled
+ * statically, property access must be resolvable by type, e.g.
+ * <pre>
+ * def handler = new RowHandlerCompiler(new File("target/handlers")).compile('''
+ *   Map row = processor.currentRow
+ *   println "row " + processor.rowCount + ": " + row.get("name")
+ * ''')
+ * def spec = new LineImporterSpecGroovy(handler)
+ * </pre>
+ * The compiled classes are cached by the hash of the script (and groovy and dbimport version)
+ * in memory of the compiler and - when a cache directory is set - in class files of the directory,
+ * so that further runs do not compile the same script again.
+ */
+public class RowHandlerCompiler {
+    private static final String CLASS_PREFIX = "RowHandler_";
+    /** version of dbimport, the handlers are compiled against, or "" when unknown */
+    private static final String VERSION = version();
+    /** compiled classes, key = class name with the hash of the script */
+    private final Map<String, Class> compiled = new ConcurrentHashMap<String, Class>();
+
+    private final File cacheDir;
+    private final HandlerClassLoader classLoader;
+    private String imports = "import com.agimatec.utility.fileimport.*\n";
+
+    /** compiler that caches the compiled classes in memory only */
+    public RowHandlerCompiler() {
+        this(null);
+    }
+
+    /** @param cacheDir - directory for the class files of compiled handlers, null to cache in memory only */
+    public RowHandlerCompiler(File cacheDir) {
+        this(cacheDir, RowHandlerCompiler.class.getClassLoader());
+    }
+
+    public RowHandlerCompiler(File cacheDir, ClassLoader parent) {
+        this.cacheDir = cacheDir;
+        this.classLoader = new HandlerClassLoader(parent);
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public String getImports() {
+        return imports;
+    }
+
+    /** @param imports - import statements for the compiled scripts */
+    public void setImports(String imports) {
+        this.imports = imports;
+    }
+
+    /**
+     * @param script - body of the handler method, variable 'processor' is the LineImportProcessor
+     * @return a new handler instance
+     * @throws ImporterException if the script cannot be compiled
+     */
+    public RowHandler compile(String script) throws ImporterException {
+        String className = CLASS_PREFIX + hash(imports + script);
+        try {
+            return (RowHandler) compileClass(className, script).newInstance();
+        } catch (InstantiationException e) {
+            throw new ImporterException(e, true);
+        } catch (IllegalAccessException e) {
+            throw new ImporterException(e, true);
+        }
+    }
+
+    protected Class compileClass(String className, String script) {
+        Class handlerClass = compiled.get(className);
+        if (handlerClass == null) {
+            synchronized (compiled) {
+                handlerClass = compiled.get(className);
+                if (handlerClass == null) {
+                    handlerClass = loadCached(className);
+                    if (handlerClass == null) {
+                        defineClasses(className, createSource(className, script));
+                        handlerClass = loadCached(className);
+                        if (handlerClass == null) {
+                            throw new ImporterException(
+                                    "class " + className + " not defined by compiled script", true);
+                        }
+                    }
+                    compiled.put(className, handlerClass);
+                }
+            }
+        }
+        return handlerClass;
+    }
+
+    protected String createSource(String className, String script) {
+        return imports + "@groovy.transform.CompileStatic\n" +
+                "class " + className + " implements " + RowHandler.class.getName() + " {\n" +
+                "void process(LineImportProcessor processor) throws ImporterException {\n" +
+                script + "\n}\n}\n";
+    }
+
+    private Class loadCached(String className) {
+        try {
+            return classLoader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void defineClasses(String className, String source) {
+        CompilerConfiguration config = new CompilerConfiguration();
+        CompilationUnit unit = new CompilationUnit(config, null,
+                new groovy.lang.GroovyClassLoader(classLoader.getParent(), config));
+        unit.addSource(className + ".groovy", source);
+        unit.compile(Phases.CLASS_GENERATION);
+        for (GroovyClass each : (List<GroovyClass>) unit.getClasses()) {
+            classLoader.addClass(each.getName(), each.getBytes());
+            if (cacheDir != null) writeClassFile(each.getName(), each.getBytes());
+        }
+    }
+
+    private void writeClassFile(String name, byte[] bytes) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new ImporterException("cannot create directory " + cacheDir, true);
+        }
+        try {
+            // write to a temp file first: another process may read the cache concurrently
+            File tmp = File.createTempFile(name, ".tmp", cacheDir);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            File file = new File(cacheDir, name + ".class");
+            if (!tmp.renameTo(file)) tmp.delete();
+        } catch (IOException e) {
+            throw new ImporterException(e, true);
+        }
+    }
+
+    private static String hash(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(ReleaseInfo.getVersion().getBytes("UTF-8"));
+            digest.update(VERSION.getBytes("UTF-8"));
+            byte[] bytes = digest.digest(script.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte each : bytes) {
+                hex.append(Character.forDigit((each >> 4) & 0xF, 16))
+                        .append(Character.forDigit(each & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new ImporterException(e, true);
+        } catch (UnsupportedEncodingException e) {
+            throw new ImporterException(e, true);
+        }
+    }
+
+    /** @return the version from the manifest or from the maven properties of the dbimport jar */
+    private static String version() {
+        String version = RowHandlerCompiler.class.getPackage() == null ? null :
+                RowHandlerCompiler.class.getPackage().getImplementationVersion();
+        if (version != null) return version;
+        InputStream in = RowHandlerCompiler.class.getResourceAsStream(
+                "/META-INF/maven/de.viaboxx/dbimport/pom.properties");
+        if (in == null) return "";
+        try {
+            try {
+                Properties properties = new Properties();
+                properties.load(in);
+                return properties.getProperty("version", "");
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /** define classes from the bytes of the compilation or from the class files in the cache directory */
+    private class HandlerClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes = new ConcurrentHashMap<String, byte[]>();
+
+        HandlerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        void addClass(String name, byte[] bytes) {
+            classes.put(name, bytes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.remove(name);
+            if (bytes == null && cacheDir != null && name.startsWith(CLASS_PREFIX)) {
+                bytes = readClassFile(new File(cacheDir, name + ".class"));
+            }
+            if (bytes == null) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        private byte[] readClassFile(File file) {
+            if (!file.isFile()) return null;
+            try {
+                InputStream in = new FileInputStream(file);
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+                    byte[] buf = new byte[4096];
+                    int n;
+                    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                    return out.toByteArray();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import java.util.*;
+
+/**
+ * Description: a xml element read by the {@link XmlStreamImportProcessor}.
+ * It is a Map that supports GPath-like access in groovy:
+ * <pre>
+ *   node.child          // list of the child elements 'child' (XmlNode.Children)
+ *   node.child.text()   // text of the child elements
+ *   node.'@attr'        // value of attribute 'attr'
+ * </pre>
+ */
+public class XmlNode extends AbstractMap<String, Object> {
+    private final String name;
+    private final Map<String, String> attributes;
+    /** child XmlNodes and text Strings in document order */
+    private final List<Object> content = new ArrayList<Object>(4);
+
+    public XmlNode(String name, Map<String, String> attributes) {
+        this.name = name;
+        this.attributes = attributes;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Map<String, String> attributes() {
+        return attributes;
+    }
+
+    public String attribute(String attributeName) {
+        return attributes.get(attributeName);
+    }
+
+    /** @return child XmlNodes and text Strings in document order */
+    public List<Object> content() {
+        return content;
+    }
+
+    public void add(Object child) {
+        content.add(child);
+    }
+
+    /** @return the child elements */
+    public Children children() {
+        Children children = new Children();
+        for (Object each : content) {
+            if (each instanceof XmlNode) children.add((XmlNode) each);
+        }
+        return children;
+    }
+
+    /** @return the child elements with the name */
+    public Children children(String childName) {
+        Children children = new Children();
+        for (Object each : content) {
+            if (each instanceof XmlNode && ((XmlNode) each).name.equals(childName)) {
+                children.add((XmlNode) each);
+            }
+        }
+        return children;
+    }
+
+    /** @return the text of the element and its children */
+    public String text() {
+        if (content.size() == 1 && content.get(0) instanceof String) return (String) content.get(0);
+        StringBuilder text = new StringBuilder();
+        for (Object each : content) {
+            text.append(each instanceof XmlNode ? ((XmlNode) each).text() : each);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param key - '@' + attribute name or name of child elements
+     * @return attribute value or child elements
+     */
+    @Override
+    public Object get(Object key) {
+        String str = String.valueOf(key);
+        if (str.startsWith("@")) return attributes.get(str.substring(1));
+        return children(str);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        String str = String.valueOf(key);
+        if (str.startsWith("@")) return attributes.containsKey(str.substring(1));
+        return !children(str).isEmpty();
+    }
+
+    /** @return '@' + attribute names and the names of the child elements */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> entries = new LinkedHashMap<String, Object>();
+        for (Entry<String, String> each : attributes.entrySet()) {
+            entries.put("@" + each.getKey(), each.getValue());
+        }
+        for (Object each : content) {
+            if (each instanceof XmlNode && !entries.containsKey(((XmlNode) each).name)) {
+                entries.put(((XmlNode) each).name, children(((XmlNode) each).name));
+            }
+        }
+        return Collections.unmodifiableMap(entries).entrySet();
+    }
+
+    @Override
+    public String toString() {
+        return name + attributes + content;
+    }
+
+    /** list of elements */
+    public static class Children extends ArrayList<XmlNode> {
+        /** @return the text of all elements */
+        public String text() {
+            if (size() == 1) return get(0).text();
+            StringBuilder text = new StringBuilder();
+            for (XmlNode each : this) {
+                text.append(each.text());
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterException;
+import com.agimatec.utility.fileimport.ImporterProcessor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description: Process the repeated elements of a xml document with a StAX parser.
+ * Only the current element is kept in memory.
+ */
+public class XmlStreamImportProcessor extends ImporterProcessor {
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    protected final XmlStreamSpec spec;
+    protected XMLStreamReader xmlReader;
+    /** the current XmlNode * */
+    protected Object current;
+
+    public XmlStreamImportProcessor(XmlStreamSpec spec, Importer importer) {
+        super(importer);
+        this.spec = spec;
+    }
+
+    public XmlStreamSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * API - this method starts the import process.
+     * It imports the data read from the given reader.
+     * The reader is closed afterwards.
+     *
+     * @param aReader - reader to read the import data from.
+     * @throws Exception
+     */
+    @Override
+    public void importFrom(Closeable aReader) throws ImporterException {
+        super.importFrom(aReader);
+        try {
+            try {
+                if (aReader instanceof InputStream) {
+                    xmlReader = xmlInputFactory.createXMLStreamReader((InputStream) aReader);
+                } else {
+                    xmlReader = xmlInputFactory.createXMLStreamReader((Reader) aReader);
+                }
+                importElements();
+            } finally {
+                if (xmlReader != null) xmlReader.close();
+                aReader.close();
+                release();
+                logFinished();
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        }
+    }
+
+    protected void importElements() throws XMLStreamException {
+        List<String> elementPath = new ArrayList<String>();
+        while (xmlReader.hasNext() && !isCancelled()) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                elementPath.add(xmlReader.getLocalName());
+                if (elementPath.size() == 1) {
+                    current = new XmlNode(xmlReader.getLocalName(), attributes());
+                    spec.processFirst(this);
+                }
+                if (spec.isElement(elementPath)) {
+                    current = readElement();
+                    elementPath.remove(elementPath.size() - 1);
+                    rowCount++;
+                    importEach();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                elementPath.remove(elementPath.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * read the current element with its children up to its END_ELEMENT
+     * (like groovy XmlParser: text trimmed, whitespace ignored)
+     */
+    protected XmlNode readElement() throws XMLStreamException {
+        XmlNode node = new XmlNode(xmlReader.getLocalName(), attributes());
+        while (true) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                node.add(readElement());
+            } else if (event == XMLStreamConstants.CHARACTERS ||
+                    event == XMLStreamConstants.CDATA) {
+                String text = xmlReader.getText().trim();
+                if (text.length() > 0) node.add(text);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return node;
+            }
+        }
+    }
+
+    private Map<String, String> attributes() {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            attributes.put(xmlReader.getAttributeLocalName(i), xmlReader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    protected void importEach() throws ImporterException {
+        try {
+            spec.processEach(this);
+        } catch (ImporterException ex) {
+            handleRowException(ex, current);
+            if (ex.isCancelImport()) throw ex;
+        } catch (Exception ex) {
+            handleRowException(ex, current);
+        }
+    }
+
+    public void release() {
+        super.release();
+        current = null;
+    }
+
+    public Object getCurrent() {
+        return current;
+    }
+
+    public XMLStreamReader getXmlReader() {
+        return xmlReader;
+    }
+}
@@ -0,0 +1,85 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterProcessor;
+import com.agimatec.utility.fileimport.ImporterSpec;
+import groovy.lang.Closure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Description: Specify how to import the repeated elements of a xml document
+ * with a StAX parser, without parsing the whole document like the {@link XmlSlurperSpec}.
+ * Each element found by the path is passed as a {@link XmlNode} (a Map with GPath-like
+ * access) to the element closure, e.g.
+ * <pre>
+ *   new XmlStreamSpec("/root/sample", { processor ->
+ *      def sample = processor.current
+ *      println sample.first.text() + " " + sample.'@id'
+ *   })
+ * </pre>
+ * The path is a '/' separated list of the local element names. A path starting with '/'
+ * begins at the root element, otherwise it matches the innermost elements at any depth.
+ * Elements nested in a matched element are not matched again.
+ */
+public class XmlStreamSpec implements ImporterSpec {
+    protected static final Logger log = LoggerFactory.getLogger(XmlStreamSpec.class);
+    private final Closure headerProcessing;
+    private final String[] path;
+    private final boolean absolutePath;
+    private final Closure elementProcessing;
+
+    public XmlStreamSpec(String elementPath, Closure elementProcessing) {
+        this(null, elementPath, elementProcessing);
+    }
+
+    /**
+     * @param headerProcessing  - null or closure called with the root XmlNode (without children)
+     * @param elementPath       - path of the repeated elements, e.g. "/root/sample" or "sample"
+     * @param elementProcessing - null or closure called with the processor for each element
+     */
+    public XmlStreamSpec(Closure headerProcessing, String elementPath,
+                         Closure elementProcessing) {
+        this.headerProcessing = headerProcessing;
+        this.absolutePath = elementPath.startsWith("/");
+        this.path = (absolutePath ? elementPath.substring(1) : elementPath).split("/");
+        this.elementProcessing = elementProcessing;
+    }
+
+    public Writer getErrorWriter() {
+        return null;
+    }
+
+    public ImporterProcessor createProcessor(Importer importer) {
+        return new XmlStreamImportProcessor(this, importer);
+    }
+
+    /**
+     * @param elementPath - local names of the current element and its parents, root first
+     * @return true when the current element is a repeated element to import
+     */
+    public boolean isElement(List<String> elementPath) {
+        int offset = elementPath.size() - path.length;
+        if (offset < 0 || (absolutePath && offset != 0)) return false;
+        for (int i = 0; i < path.length; i++) {
+            if (!path[i].equals(elementPath.get(offset + i))) return false;
+        }
+        return true;
+    }
+
+    public void processFirst(XmlStreamImportProcessor processor) {
+        if (headerProcessing != null) headerProcessing.call(processor.getCurrent());
+    }
+
+    public void processEach(XmlStreamImportProcessor processor) {
+        if (elementProcessing == null) {
+            log.info("element " + processor.getRowCount() + ": " +
+                    processor.getCurrent());
+        } else {
+            elementProcessing.call(processor);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Description: encode rows for the PostgreSQL COPY ... FROM STDIN command,
+ * in text format (tab-separated, \N for null, backslash escapes)
+ * or csv format (comma-separated, empty for null, double quotes).
+ */
+public class CopyEncoder {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static enum Format {
+        TEXT, CSV
+    }
+
+    private final Format format;
+
+    public CopyEncoder(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /** @return the options of the COPY command for the format, e.g. " WITH (FORMAT csv)" */
+    public String getCopyOptions() {
+        return format == Format.CSV ? " WITH (FORMAT csv)" : "";
+    }
+
+    /** append the values as a line, terminated by \n */
+    public void encodeRow(Object[] values, StringBuilder out) {
+        char delimiter = format == Format.CSV ? ',' : '\t';
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.append(delimiter);
+            encodeValue(values[i], out);
+        }
+        out.append('\n');
+    }
+
+    public void encodeValue(Object value, StringBuilder out) {
+        if (value == null) {
+            if (format == Format.TEXT) out.append("\\N"); // csv: unquoted empty
+            return;
+        }
+        String str = toText(value);
+        if (format == Format.TEXT) {
+            escapeText(str, out);
+        } else {
+            quoteCsv(str, out);
+        }
+    }
+
+    /** @return the value in a representation the database can parse */
+    protected String toText(Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? "t" : "f";
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Date && !(value instanceof java.sql.Date) &&
+                !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime()).toString();
+        } else if (value instanceof byte[]) { // bytea hex format
+            byte[] bytes = (byte[]) value;
+            char[] hex = new char[2 + bytes.length * 2];
+            hex[0] = '\\';
+            hex[1] = 'x';
+            for (int i = 0; i < bytes.length; i++) {
+                hex[2 + i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+                hex[3 + i * 2] = HEX[bytes[i] & 0xf];
+            }
+            return new String(hex);
+        }
+        return value.toString(); // java.sql.Date/Time/Timestamp are ISO formatted
+    }
+
+    private static void escapeText(String str, StringBuilder out) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case 0x0b:
+                    out.append("\\v");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    private static void quoteCsv(String str, StringBuilder out) {
+        boolean quote = str.length() == 0 || str.equals("\\.");
+        for (int i = 0; !quote && i < str.length(); i++) {
+            char c = str.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(str);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,232 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.*;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: The processor used by the {@link JdbcBatchImporterSpec}.
+ * It collects the converted rows and executes them in batches.
+ * Rows of a failed batch are retried in halves (each half within its own savepoint)
+ * until the rows that cannot be imported are isolated and passed to handleRowException().
+ * The batch mode requires a single connection, so rows are always processed in the
+ * importing thread (workerThreads of the spec are ignored, parseThreads can be used).
+ * With a checkpointer (see {@link LineImporterSpec#setCheckpointer(ImportCheckpointer)})
+ * a checkpoint is saved on commit, within the transaction when the
+ * checkpointer uses the same connection.
+ */
+public class JdbcBatchImportProcessor extends LineImportProcessor {
+    private final List<BatchRow> batch = new ArrayList<BatchRow>();
+    private PreparedStatement statement;
+    private Boolean autoCommit;
+    private int uncommittedRows;
+    private int committedRows;
+
+    public JdbcBatchImportProcessor(JdbcBatchImporterSpec spec, Importer importer) {
+        super(spec, importer);
+    }
+
+    @Override
+    public JdbcBatchImporterSpec getSpec() {
+        return (JdbcBatchImporterSpec) spec;
+    }
+
+    /**
+     * convert the current row and add it to the batch.
+     * execute the batch when the batch size has been reached.
+     */
+    public void addBatchRow() throws ImporterException {
+        Object[] params;
+        try {
+            params = getSpec().toParameters(getCurrentRow());
+        } catch (Exception ex) {
+            throw new ImporterException(ex, false);
+        }
+        batch.add(new BatchRow(rowCount, getCurrentLine(), recordOffset, params));
+        if (batch.size() >= getSpec().getBatchSize()) {
+            try {
+                flush();
+            } catch (SQLException ex) {
+                throw new ImporterException(ex, true);
+            }
+        }
+    }
+
+    @Override
+    protected void importAllRows() throws Exception {
+        boolean completed = false;
+        try {
+            super.importAllRows();
+            completed = true;
+        } finally {
+            finish(completed);
+        }
+    }
+
+    @Override
+    protected void importRowsParallel() throws Exception {
+        importRows();
+    }
+
+    /** execute the rows of the current batch and commit, when the commit interval has been reached */
+    public void flush() throws SQLException {
+        if (batch.isEmpty()) return;
+        if (autoCommit == null) {
+            Connection connection = getSpec().getConnection();
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) connection.setAutoCommit(false);
+            prepare(connection);
+        }
+        ImportMetrics metrics = importer.getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+        int executed = executeBatch(batch);
+        if (metrics != null) metrics.addDbTime(System.nanoTime() - start);
+        uncommittedRows += executed;
+        batch.clear();
+        if (getSpec().getCommitInterval() > 0 &&
+                uncommittedRows >= getSpec().getCommitInterval()) {
+            commit();
+        }
+    }
+
+    private void commit() throws SQLException {
+        Connection connection = getSpec().getConnection();
+        ImportCheckpointer checkpointer = getSpec().getCheckpointer();
+        boolean checkpointInTransaction = checkpointer != null &&
+                checkpointer.isSameConnection(connection);
+        if (checkpointInTransaction) checkpoint();
+        ImportMetrics metrics = importer.getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+        connection.commit();
+        if (metrics != null) metrics.addDbTime(System.nanoTime() - start);
+        committedRows += uncommittedRows;
+        uncommittedRows = 0;
+        if (checkpointer != null && !checkpointInTransaction) checkpoint();
+    }
+
+    /** called once before the first rows are executed */
+    protected void prepare(Connection connection) throws SQLException {
+        statement = connection.prepareStatement(getSpec().getSql());
+    }
+
+    /** send the rows to the database, all or none of them */
+    protected void execute(List<BatchRow> rows) throws SQLException {
+        try {
+            for (BatchRow row : rows) {
+                for (int i = 0; i < row.params.length; i++) {
+                    if (row.params[i] == null) {
+                        statement.setNull(i + 1, getSpec().getNullType(i));
+                    } else {
+                        statement.setObject(i + 1, row.params[i]);
+                    }
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException ex) {
+            statement.clearBatch();
+            throw ex;
+        }
+    }
+
+    /** @return number of rows executed without error */
+    private int executeBatch(List<BatchRow> rows) throws SQLException {
+        Connection connection = getSpec().getConnection();
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            execute(rows);
+        } catch (SQLException ex) {
+            connection.rollback(savepoint);
+            if (rows.size() == 1) {
+                handleRowException(ex.getNextException() != null ? ex.getNextException() : ex,
+                        rows.get(0));
+                return 0;
+            } else {
+                int half = rows.size() / 2;
+                return executeBatch(rows.subList(0, half)) +
+                        executeBatch(rows.subList(half, rows.size()));
+            }
+        }
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException ex) {
+            // not supported by all databases (e.g. oracle), savepoint ends with the transaction
+        }
+        return rows.size();
+    }
+
+    /**
+     * report the error with the row number, line and record offset of the failed row
+     * instead of those of the last row added to the batch
+     */
+    private void handleRowException(SQLException ex, BatchRow row) {
+        int currentRowCount = rowCount;
+        Object currentLine = this.currentLine;
+        long currentOffset = recordOffset;
+        rowCount = row.rowNumber;
+        this.currentLine = row.line;
+        recordOffset = row.offset;
+        try {
+            handleRowException(ex, row.line);
+        } finally {
+            rowCount = currentRowCount;
+            this.currentLine = currentLine;
+            recordOffset = currentOffset;
+        }
+    }
+
+    /**
+     * execute the remaining rows and commit.
+     *
+     * @param completed - false when the import ended with an exception
+     */
+    protected void finish(boolean completed) throws ImporterException {
+        try {
+            flush();
+            if (autoCommit != null) commit();
+        } catch (SQLException ex) {
+            if (completed) {
+                throw new ImporterException(ex, true);
+            } else {
+                log(ex); // do not hide the original exception
+            }
+        }
+    }
+
+    /** @return number of rows committed so far */
+    public int getCommittedRows() {
+        return committedRows;
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        batch.clear();
+        try {
+            if (statement != null) statement.close();
+            if (autoCommit != null && autoCommit) {
+                getSpec().getConnection().setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            log(ex);
+        }
+        statement = null;
+        autoCommit = null;
+    }
+
+    protected static class BatchRow {
+        protected final int rowNumber;
+        protected final Object line;
+        protected final long offset;
+        protected final Object[] params;
+
+        BatchRow(int rowNumber, Object line, long offset, Object[] params) {
+            this.rowNumber = rowNumber;
+            this.line = line;
+            this.offset = offset;
+            this.params = params;
+        }
+    }
+}
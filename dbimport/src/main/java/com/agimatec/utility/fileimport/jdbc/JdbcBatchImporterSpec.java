@@ -0,0 +1,169 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.*;
+import com.agimatec.utility.fileimport.spreadsheet.ICell;
+
+import java.sql.Connection;
+import java.sql.Types;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description: ImporterSpec that writes each row into the database with a
+ * parameterized INSERT/UPDATE/MERGE statement using JDBC batches.
+ * The statement parameters are taken from the current row by field name
+ * and converted with the {@link SqlUtil} definitions of the field.<br>
+ * Example:
+ * <pre>
+ *     SqlUtil util = SqlUtil.forConnection(connection);
+ *     util.defDate("birthday", "dd.MM.yyyy");
+ *     JdbcBatchImporterSpec spec = new JdbcBatchImporterSpec(connection, util,
+ *        "INSERT INTO person (id, name, birthday) VALUES (?, ?, ?)", "id", "name", "birthday");
+ *     spec.defType("id", Types.NUMERIC);
+ *     spec.defType("birthday", Types.DATE);
+ *     new Importer(spec).importFrom(reader);
+ * </pre>
+ * A failed batch is split until the rows causing the failure are found.
+ * Only these rows are written to the error writer and counted as errors.
+ * The connection is used with autoCommit=false during the import and requires
+ * savepoint support.
+ */
+public class JdbcBatchImporterSpec extends LineImporterSpecAutoFields {
+    private final Connection connection;
+    private final SqlUtil sqlUtil;
+    private final String sql;
+    private final String[] parameterFields;
+    private final Map<String, Integer> parameterTypes = new HashMap<String, Integer>();
+    private int batchSize = 500;
+    private int commitInterval = 10000;
+
+    /**
+     * @param connection      - connection to execute the statement
+     * @param sqlUtil         - converters (date, number formats) for the fields
+     * @param sql             - statement with ? placeholders
+     * @param parameterFields - the field names of the row for each ? placeholder
+     */
+    public JdbcBatchImporterSpec(Connection connection, SqlUtil sqlUtil, String sql,
+                                 String... parameterFields) {
+        this.connection = connection;
+        this.sqlUtil = sqlUtil;
+        this.sql = sql;
+        this.parameterFields = parameterFields;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public SqlUtil getSqlUtil() {
+        return sqlUtil;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String[] getParameterFields() {
+        return parameterFields;
+    }
+
+    /**
+     * define the conversion of a field value.
+     * Types.DATE, TIMESTAMP, TIME and NUMERIC (or any other number type) use the format
+     * defined with the sqlUtil (defDate(), defNumber()), Types.BOOLEAN and BIT
+     * use sqlUtil.bool(). Fields without a type are bound as nullable strings.
+     *
+     * @param fieldName - symbolic field name
+     * @param sqlType   - a type from java.sql.Types
+     */
+    public void defType(String fieldName, int sqlType) {
+        parameterTypes.put(fieldName, sqlType);
+    }
+
+    /**
+     * @param index - 0-based index of the statement parameter
+     * @return the type from java.sql.Types to bind a null value: the type defined
+     *         with defType() or VARCHAR (an untyped null is rejected by some databases)
+     */
+    public int getNullType(int index) {
+        Integer type = index < parameterFields.length ?
+                parameterTypes.get(parameterFields[index]) : null;
+        return type == null ? Types.VARCHAR : type;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /** @param batchSize - number of rows sent to the database with one executeBatch() */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /** @param commitInterval - commit after this number of rows, 0 = commit when import has finished */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * convert the current row to the statement parameters.
+     * overwrite in subclasses to compute additional values.
+     *
+     * @throws ParseException - value cannot be converted, row will be handled as error
+     */
+    public Object[] toParameters(Map row) throws ParseException {
+        Object[] params = new Object[parameterFields.length];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = convert(parameterFields[i], row.get(parameterFields[i]));
+        }
+        return params;
+    }
+
+    protected Object convert(String fieldName, Object value) throws ParseException {
+        if (value instanceof ICell) {
+            value = ((ICell) value).getValue();
+        }
+        // Strings and the field views of the tokenizers (CSVField, ByteLine)
+        if (!(value instanceof CharSequence)) return value;
+        String str = value.toString();
+        Integer type = parameterTypes.get(fieldName);
+        if (type == null) return sqlUtil.nullable(str);
+        switch (type) {
+            case Types.DATE:
+                return sqlUtil.date(fieldName, str);
+            case Types.TIMESTAMP:
+                return sqlUtil.timestamp(fieldName, str);
+            case Types.TIME:
+                return sqlUtil.time(fieldName, str);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return sqlUtil.bool(sqlUtil.trim(str));
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return sqlUtil.get(fieldName) == null ? sqlUtil.trim(str) :
+                        sqlUtil.number(fieldName, str);
+            default:
+                return sqlUtil.nullable(str);
+        }
+    }
+
+    @Override
+    public void processRow(LineImportProcessor processor) throws ImporterException {
+        ((JdbcBatchImportProcessor) processor).addBatchRow();
+    }
+
+    @Override
+    public ImporterProcessor createProcessor(Importer importer) {
+        return new JdbcBatchImportProcessor(this, importer);
+    }
+}
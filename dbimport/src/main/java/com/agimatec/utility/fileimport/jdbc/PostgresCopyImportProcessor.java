@@ -0,0 +1,71 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.Importer;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Description: The processor used by the {@link PostgresCopyImporterSpec}.
+ * Each batch of rows is encoded and sent with one COPY command through the
+ * CopyManager of the PostgreSQL JDBC driver (accessed by reflection, so that
+ * the driver is only required at runtime).
+ * A rejected batch is split in halves like in the {@link JdbcBatchImportProcessor}.
+ */
+public class PostgresCopyImportProcessor extends JdbcBatchImportProcessor {
+    private Object copyManager;
+    private Method copyIn;
+
+    public PostgresCopyImportProcessor(PostgresCopyImporterSpec spec, Importer importer) {
+        super(spec, importer);
+    }
+
+    @Override
+    public PostgresCopyImporterSpec getSpec() {
+        return (PostgresCopyImporterSpec) spec;
+    }
+
+    @Override
+    protected void prepare(Connection connection) throws SQLException {
+        // no statement required
+    }
+
+    @Override
+    protected void execute(List<BatchRow> rows) throws SQLException {
+        CopyEncoder encoder = getSpec().getEncoder();
+        StringBuilder data = new StringBuilder(rows.size() * 64);
+        for (BatchRow row : rows) {
+            encoder.encodeRow(row.params, data);
+        }
+        copyIn(getSpec().getCopySql(), new StringReader(data.toString()));
+    }
+
+    /**
+     * execute the COPY command with the data
+     *
+     * @return number of rows copied
+     */
+    protected long copyIn(String sql, Reader data) throws SQLException {
+        try {
+            if (copyManager == null) {
+                Class pgConnection = Class.forName("org.postgresql.PGConnection");
+                Object connection = getSpec().getConnection().unwrap(pgConnection);
+                copyManager = pgConnection.getMethod("getCopyAPI").invoke(connection);
+                copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+            }
+            return (Long) copyIn.invoke(copyManager, sql, data);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+            throw new SQLException(ex.getCause());
+        } catch (SQLException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SQLException("COPY requires the PostgreSQL JDBC driver", ex);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.ImporterProcessor;
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.SqlUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Description: ImporterSpec that loads the rows into a table with the COPY command
+ * of PostgreSQL, in batches of batchSize rows (default: 5000).
+ * For other databases the rows are inserted with JDBC batches,
+ * as by the {@link JdbcBatchImporterSpec}.<br>
+ * Example:
+ * <pre>
+ *     SqlUtil util = SqlUtil.forConnection(connection);
+ *     util.defDate("birthday", "dd.MM.yyyy");
+ *     PostgresCopyImporterSpec spec = new PostgresCopyImporterSpec(connection, util,
+ *        "person", "id", "name", "birthday");
+ *     spec.defType("birthday", Types.DATE);
+ *     new Importer(spec).importFrom(reader);
+ * </pre>
+ */
+public class PostgresCopyImporterSpec extends JdbcBatchImporterSpec {
+    private final String table;
+    private final String[] columns;
+    private CopyEncoder encoder = new CopyEncoder(CopyEncoder.Format.TEXT);
+
+    /**
+     * @param connection - connection to execute the COPY command
+     * @param sqlUtil    - converters (date, number formats) for the fields
+     * @param table      - the table to load
+     * @param columns    - the columns of the table, the field names of the row are the same
+     */
+    public PostgresCopyImporterSpec(Connection connection, SqlUtil sqlUtil, String table,
+                                    String... columns) {
+        super(connection, sqlUtil, insertSql(table, columns), columns);
+        this.table = table;
+        this.columns = columns;
+        setBatchSize(5000);
+    }
+
+    private static String insertSql(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columns[i]);
+            values.append('?');
+        }
+        return sql.append(") VALUES (").append(values).append(')').toString();
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /** @return the COPY command for the table and columns */
+    public String getCopySql() {
+        StringBuilder sql = new StringBuilder("COPY ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columns[i]);
+        }
+        return sql.append(") FROM STDIN").append(encoder.getCopyOptions()).toString();
+    }
+
+    public CopyEncoder getEncoder() {
+        return encoder;
+    }
+
+    /** @param format - TEXT (default) or CSV format of the COPY data */
+    public void setFormat(CopyEncoder.Format format) {
+        this.encoder = new CopyEncoder(format);
+    }
+
+    /**
+     * @return true when the connection is a PostgreSQL connection (same check as
+     *         {@link SqlUtil#forConnection(Connection)}, that also uses the postgres syntax
+     *         for unknown databases)
+     */
+    protected boolean isCopySupported() {
+        try {
+            return "PostgreSQL".equals(getConnection().getMetaData().getDatabaseProductName());
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public ImporterProcessor createProcessor(Importer importer) {
+        if (isCopySupported()) {
+            return new PostgresCopyImportProcessor(this, importer);
+        }
+        return super.createProcessor(importer);
+    }
+}
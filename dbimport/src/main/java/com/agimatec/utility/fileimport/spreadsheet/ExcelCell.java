@@ -17,16 +17,24 @@ import java.util.Date;
  * Time: 17:21:33 <br/>
  */
 public class ExcelCell implements ICell {
-  private final DecimalFormat plainNumericFormat = new DecimalFormat("#.#");
+  /** DecimalFormat is not thread-safe and too expensive to create it per cell */
+  private static final ThreadLocal<DecimalFormat> plainNumericFormat =
+      new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+          DecimalFormat format = new DecimalFormat("#.#");
+          format.setGroupingUsed(false);
+          DecimalFormatSymbols dfs = new DecimalFormatSymbols();
+          dfs.setDecimalSeparator('.');
+          format.setDecimalFormatSymbols(dfs);
+          return format;
+        }
+      };
   private final Cell cell;
   private CellStyle style;
 
   public ExcelCell(Cell hssfCell) {
     cell = hssfCell;
-    plainNumericFormat.setGroupingUsed(false);
-    DecimalFormatSymbols dfs = new DecimalFormatSymbols();
-    dfs.setDecimalSeparator('.');
-    plainNumericFormat.setDecimalFormatSymbols(dfs);
   }
 
   /**
@@ -83,9 +91,7 @@ public class ExcelCell implements ICell {
     if (val == null) return null;
     else if (val instanceof String) return (String) val;
     else if (val instanceof Double) {
-      synchronized (plainNumericFormat) {
-        return plainNumericFormat.format(val);
-      }
+      return plainNumericFormat.get().format(val);
     } else return String.valueOf(val);
   }
 
@@ -1,7 +1,10 @@
 package com.agimatec.utility.fileimport.spreadsheet;
 
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 
+import java.util.Iterator;
+
 /**
  * Description: Abstraction for a single excel-spreadsheet row<br/>
  * User: roman.stumm <br/>
@@ -35,6 +38,26 @@ public class ExcelRow implements IRow {
         return new ExcelCell(row.getCell(num));
     }
 
+    /**
+     * @return iterator over the physical cells of the row
+     */
+    public Iterator<? extends ExcelCell> cellIterator() {
+        final Iterator<Cell> cells = row.cellIterator();
+        return new Iterator<ExcelCell>() {
+            public boolean hasNext() {
+                return cells.hasNext();
+            }
+
+            public ExcelCell next() {
+                return new ExcelCell(cells.next());
+            }
+
+            public void remove() {
+                cells.remove();
+            }
+        };
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -1,7 +1,6 @@
 package com.agimatec.utility.fileimport.spreadsheet;
 
 import com.agimatec.utility.fileimport.LineTokenizer;
-import org.apache.poi.ss.usermodel.Cell;
 
 import java.util.Iterator;
 
@@ -12,12 +11,12 @@ import java.util.Iterator;
  * Time: 17:13:30 <br/>
  */
 public class ExcelRowTokenizer implements LineTokenizer<ExcelRow, ExcelCell> {
-    private Iterator<Cell> cellIterator;
+    private Iterator<? extends ExcelCell> cellIterator;
 //    private final ExcelRow row;
 
     public ExcelRowTokenizer(ExcelRow aLine) {
 //        row = aLine;
-        cellIterator = aLine.getRow().cellIterator();
+        cellIterator = aLine.cellIterator();
     }
 
     public boolean isLineIncomplete() {
@@ -33,6 +32,6 @@ public class ExcelRowTokenizer implements LineTokenizer<ExcelRow, ExcelCell> {
     }
 
     public ExcelCell nextElement() {
-        return new ExcelCell(cellIterator.next());
+        return cellIterator.next();
     }
 }
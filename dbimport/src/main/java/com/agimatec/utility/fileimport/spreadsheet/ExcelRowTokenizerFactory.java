@@ -11,12 +11,33 @@ import com.agimatec.utility.fileimport.LineTokenizerFactory;
  * Time: 17:12:58 <br/>
  */
 public class ExcelRowTokenizerFactory implements LineTokenizerFactory<ExcelRow, ExcelCell> {
+    private boolean streaming;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @param streaming - true to read the rows with a {@link StreamingExcelRowReader}
+     *                  (.xls and .xlsx, values only, no workbook in memory).
+     *                  false (default) to read .xls files with an {@link ExcelRowReader}.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 
     public LineTokenizer<ExcelRow, ExcelCell> createTokenizer(ExcelRow aLine) {
         return new ExcelRowTokenizer(aLine);
     }
 
     public LineReader<ExcelRow> createLineReader() {
-        return new ExcelRowReader();
+        return createExcelRowReader(false);
+    }
+
+    /**
+     * @param keepOpen - true to prevent stream.close() on call of close()
+     */
+    protected ExcelRowReader createExcelRowReader(boolean keepOpen) {
+        return streaming ? new StreamingExcelRowReader(keepOpen) : new ExcelRowReader(keepOpen);
     }
 }
@@ -0,0 +1,228 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Description: read the rows of a sheet of an .xls file record by record.
+ * Only the shared strings and the formats of the workbook are kept in memory,
+ * and the rows of the current row block (max. 32 rows).
+ */
+class HSSFRecordRowSource implements StreamingExcelRowReader.RowSource {
+    private final InputStream stream;
+    private final RecordFactoryInputStream records;
+    private SSTRecord sst;
+    private boolean date1904;
+    private final Map<Integer, String> formats = new HashMap<Integer, String>();
+    private final List<ExtendedFormatRecord> xfs = new ArrayList<ExtendedFormatRecord>();
+    private final Map<Integer, Boolean> dateXfs = new HashMap<Integer, Boolean>();
+    /** rows of the current row block, that may get more cells */
+    private final SortedMap<Integer, StreamingExcelRow> pending = new TreeMap<Integer, StreamingExcelRow>();
+    private final LinkedList<StreamingExcelRow> ready = new LinkedList<StreamingExcelRow>();
+    /** nesting of BOF/EOF in the sheet (embedded charts) */
+    private int depth;
+    private boolean finished;
+    /** formula with a string result, that is contained in the next StringRecord */
+    private FormulaRecord stringFormula;
+
+    HSSFRecordRowSource(NPOIFSFileSystem fs, String sheetName, int sheetIndex) throws IOException {
+        stream = fs.createDocumentInputStream(
+                fs.getRoot().hasEntry("Workbook") ? "Workbook" : "WORKBOOK");
+        records = new RecordFactoryInputStream(stream, false);
+        List<BoundSheetRecord> sheets = readWorkbookRecords();
+        BoundSheetRecord sheet = null;
+        if (sheetName != null) {
+            for (BoundSheetRecord each : sheets) {
+                if (each.getSheetname().equalsIgnoreCase(sheetName)) {
+                    sheet = each;
+                    break;
+                }
+            }
+            if (sheet == null) {
+                throw new ImporterException("Sheet not found by name: " + sheetName, true);
+            }
+        } else if (sheetIndex < sheets.size()) {
+            sheet = sheets.get(sheetIndex);
+        } else {
+            throw new ImporterException("Sheet index (" + sheetIndex + ") is out of range (0.." +
+                    (sheets.size() - 1) + ")", true);
+        }
+        skipToSheet(Arrays.asList(BoundSheetRecord.orderByBofPosition(sheets)).indexOf(sheet));
+    }
+
+    /** @return the sheets of the workbook */
+    private List<BoundSheetRecord> readWorkbookRecords() {
+        List<BoundSheetRecord> sheets = new ArrayList<BoundSheetRecord>();
+        Record record;
+        while ((record = records.nextRecord()) != null && !(record instanceof EOFRecord)) {
+            if (record instanceof BoundSheetRecord) {
+                sheets.add((BoundSheetRecord) record);
+            } else if (record instanceof SSTRecord) {
+                sst = (SSTRecord) record;
+            } else if (record instanceof FormatRecord) {
+                FormatRecord format = (FormatRecord) record;
+                formats.put(format.getIndexCode(), format.getFormatString());
+            } else if (record instanceof ExtendedFormatRecord) {
+                xfs.add((ExtendedFormatRecord) record);
+            } else if (record instanceof DateWindow1904Record) {
+                date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            }
+        }
+        return sheets;
+    }
+
+    /** skip the substreams before the sheet, read until the BOF of the sheet */
+    private void skipToSheet(int ordinal) {
+        int substream = -1;
+        Record record;
+        while ((record = records.nextRecord()) != null) {
+            if (record instanceof BOFRecord) {
+                if (depth++ == 0 && ++substream == ordinal) return;
+            } else if (record instanceof EOFRecord) {
+                depth--;
+            }
+        }
+        finished = true;
+    }
+
+    public StreamingExcelRow nextRow() {
+        while (ready.isEmpty() && !finished) {
+            Record record = records.nextRecord();
+            if (record == null) {
+                endOfSheet();
+            } else {
+                processRecord(record);
+            }
+        }
+        return ready.isEmpty() ? null : ready.removeFirst();
+    }
+
+    private void processRecord(Record record) {
+        if (record instanceof BOFRecord) {
+            depth++;
+        } else if (record instanceof EOFRecord) {
+            if (--depth == 0) endOfSheet();
+        } else if (depth > 1) {
+            // records of an embedded chart
+        } else if (record instanceof RowRecord) {
+            row(((RowRecord) record).getRowNumber());
+        } else if (record instanceof StringRecord) {
+            if (stringFormula != null) {
+                addCell(stringFormula, ((StringRecord) record).getString());
+                stringFormula = null;
+            }
+        } else if (record instanceof FormulaRecord) {
+            FormulaRecord formula = (FormulaRecord) record;
+            if (formula.hasCachedResultString()) {
+                stringFormula = formula;
+            } else {
+                addCell(formula, formulaValue(formula));
+            }
+        } else if (record instanceof NumberRecord) {
+            NumberRecord number = (NumberRecord) record;
+            addCell(number, numericValue(number.getXFIndex(), number.getValue()));
+        } else if (record instanceof RKRecord) {
+            RKRecord number = (RKRecord) record;
+            addCell(number, numericValue(number.getXFIndex(), number.getRKNumber()));
+        } else if (record instanceof LabelSSTRecord) {
+            LabelSSTRecord label = (LabelSSTRecord) record;
+            addCell(label, sst.getString(label.getSSTIndex()).getString());
+        } else if (record instanceof LabelRecord) {
+            LabelRecord label = (LabelRecord) record;
+            addCell(label.getRow(), label.getColumn(), label.getValue());
+        } else if (record instanceof BoolErrRecord) {
+            BoolErrRecord boolErr = (BoolErrRecord) record;
+            addCell(boolErr, boolErr.isBoolean() ? (Object) boolErr.getBooleanValue() :
+                    (Object) boolErr.getErrorValue());
+        } else if (record instanceof BlankRecord) {
+            addCell((BlankRecord) record, null);
+        } else if (record instanceof MulRKRecord) {
+            MulRKRecord mulRK = (MulRKRecord) record;
+            for (int i = 0; i < mulRK.getNumColumns(); i++) {
+                addCell(mulRK.getRow(), mulRK.getFirstColumn() + i,
+                        numericValue(mulRK.getXFAt(i), mulRK.getRKNumberAt(i)));
+            }
+        } else if (record instanceof MulBlankRecord) {
+            MulBlankRecord mulBlank = (MulBlankRecord) record;
+            for (int i = 0; i < mulBlank.getNumColumns(); i++) {
+                addCell(mulBlank.getRow(), mulBlank.getFirstColumn() + i, null);
+            }
+        }
+    }
+
+    private void endOfSheet() {
+        ready.addAll(pending.values());
+        pending.clear();
+        finished = true;
+    }
+
+    private StreamingExcelRow row(int rowNum) {
+        StreamingExcelRow row = pending.get(rowNum);
+        if (row == null) {
+            row = new StreamingExcelRow(rowNum);
+            pending.put(rowNum, row);
+        }
+        return row;
+    }
+
+    private void addCell(CellValueRecordInterface cell, Object value) {
+        addCell(cell.getRow(), cell.getColumn(), value);
+    }
+
+    private void addCell(int rowNum, int column, Object value) {
+        // the cells are stored row by row: previous rows are complete
+        while (!pending.isEmpty() && pending.firstKey() < rowNum) {
+            ready.add(pending.remove(pending.firstKey()));
+        }
+        row(rowNum).addCell(new StreamingExcelCell(column, value));
+    }
+
+    private Object formulaValue(FormulaRecord formula) {
+        switch (formula.getCachedResultType()) {
+            case Cell.CELL_TYPE_NUMERIC:
+                return numericValue(formula.getXFIndex(), formula.getValue());
+            case Cell.CELL_TYPE_BOOLEAN:
+                return formula.getCachedBooleanValue();
+            case Cell.CELL_TYPE_ERROR:
+                return (byte) formula.getCachedErrorValue();
+            default:
+                return null;
+        }
+    }
+
+    /** @return a Date when the cell is date-formatted (same as HSSFDateUtil), a Double otherwise */
+    private Object numericValue(int xfIndex, double value) {
+        if (isDateFormatted(xfIndex) && DateUtil.isValidExcelDate(value)) {
+            return DateUtil.getJavaDate(value, date1904);
+        }
+        return value;
+    }
+
+    private boolean isDateFormatted(int xfIndex) {
+        Boolean isDate = dateXfs.get(xfIndex);
+        if (isDate == null) {
+            isDate = false;
+            if (xfIndex < xfs.size()) {
+                int formatIndex = xfs.get(xfIndex).getFormatIndex();
+                String format = formats.get(formatIndex);
+                if (format == null) format = BuiltinFormats.getBuiltinFormat(formatIndex);
+                isDate = format != null && DateUtil.isADateFormat(formatIndex, format);
+            }
+            dateXfs.put(xfIndex, isDate);
+        }
+        return isDate;
+    }
+
+    public void close() throws IOException {
+        stream.close();
+    }
+}
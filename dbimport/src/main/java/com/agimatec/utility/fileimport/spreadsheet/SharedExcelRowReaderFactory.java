@@ -82,7 +82,7 @@ public class SharedExcelRowReaderFactory extends ExcelRowTokenizerFactory {
     @Override
     public LineReader<ExcelRow> createLineReader() {
         if (sharedReader == null) {
-            sharedReader = new ExcelRowReader(keepOpen);
+            sharedReader = createExcelRowReader(keepOpen);
         } else {
             sharedReader.setRowIterator(null);
         }
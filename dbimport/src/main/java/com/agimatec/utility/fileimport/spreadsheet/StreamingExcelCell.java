@@ -0,0 +1,58 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.util.Date;
+
+/**
+ * Description: a cell read by a {@link StreamingExcelRowReader}. It only holds the
+ * value of the cell, there is no POI cell, style or comment behind it.
+ */
+public class StreamingExcelCell extends ExcelCell {
+    private final int columnIndex;
+    private final Object value;
+
+    /**
+     * @param columnIndex - 0-based column
+     * @param value       - Date, Boolean, Double, String, Byte (error) or null (blank cell)
+     */
+    public StreamingExcelCell(int columnIndex, Object value) {
+        super(null);
+        this.columnIndex = columnIndex;
+        this.value = value;
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public Date getDateValue() {
+        if (value instanceof Date) {
+            return (Date) value;
+        } else if (value instanceof Double) {
+            return DateUtil.getJavaDate((Double) value, false);
+        } else {
+            return null;
+        }
+    }
+
+    /** @return null, styles are not read */
+    @Override
+    public CellStyle getStyle() {
+        return null;
+    }
+
+    /** @return null, comments are not read */
+    @Override
+    public String getComment() {
+        return null;
+    }
+
+    @Override
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+}
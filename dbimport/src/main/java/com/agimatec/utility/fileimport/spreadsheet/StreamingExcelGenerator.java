@@ -0,0 +1,478 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.RichTextString;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Description: write data as .xlsx file with bounded memory. subclass to customize.
+ * Unlike the {@link ExcelGenerator}, no workbook is built in memory: each row is
+ * written to the output stream (into the zip entry of its sheet) when it is added,
+ * strings are written inline. Only the styles are kept until the end.
+ * A sheet can have up to 1048576 rows.
+ * <br>
+ * <pre>
+ *         new MyStreamingExcelGenerator(resultSet).generate(outputStream);
+ * </pre>
+ * with
+ * <pre>
+ *     protected void generateSheets() throws Exception {
+ *         Sheet sheet = createSheet("Report");
+ *         sheet.writeRow(style(STYLE_boldHeader), "Name", "Birthday");
+ *         writeRows(sheet, new RowCallback() {
+ *             public boolean nextRow(Sheet sheet) throws Exception {
+ *                 if (!resultSet.next()) return false;
+ *                 sheet.writeRow(new Object[]{resultSet.getString(1), resultSet.getDate(2)});
+ *                 return true;
+ *             }
+ *         });
+ *     }
+ * </pre>
+ */
+public abstract class StreamingExcelGenerator {
+    public static final int MAX_ROWS = 1048576;
+
+    protected static final String STYLE_boldTitle = "boldTitle";
+    protected static final String STYLE_boldHeader = "boldHeader";
+    protected static final String STYLE_redCell = "redCell";
+    protected static final String STYLE_blueCell = "blueCell";
+    protected static final String STYLE_date = "date";
+
+    protected Styles styles;
+    private ZipOutputStream zip;
+    private Writer writer;
+    private final List<String> sheetNames = new ArrayList<String>();
+    private Sheet currentSheet;
+    /** style -> index in cellXfs, index 0 is the default style */
+    private final Map<XlsxStyle, Integer> styleIndexes = new IdentityHashMap<XlsxStyle, Integer>();
+    private final List<XlsxStyle> styleList = new ArrayList<XlsxStyle>();
+
+    /**
+     * API - generate the workbook into the stream. The stream is finished, but not closed.
+     */
+    public void generate(OutputStream out) throws IOException {
+        zip = new ZipOutputStream(out);
+        writer = new BufferedWriter(new OutputStreamWriter(zip, "UTF-8"), 64 * 1024);
+        initStyles();
+        try {
+            generateSheets();
+            if (currentSheet != null) currentSheet.end();
+            if (sheetNames.isEmpty()) createSheet("Sheet1").end();
+            writeWorkbook();
+            zip.finish();
+        } catch (IOException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ImporterException(ex, true);
+        } finally {
+            writer = null;
+            zip = null;
+            currentSheet = null;
+        }
+    }
+
+    /**
+     * override in subclasses to write the sheets with createSheet()
+     */
+    protected abstract void generateSheets() throws Exception;
+
+    /**
+     * method can be overwritten to create additional styles
+     */
+    protected void initStyles() {
+        styles = new Styles();
+    }
+
+    public Styles getStyles() {
+        return styles;
+    }
+
+    protected XlsxStyle style(String name) {
+        return getStyles().get(name);
+    }
+
+    /** start the next sheet, the previous sheet cannot be written anymore */
+    protected Sheet createSheet(String name) throws IOException {
+        if (currentSheet != null) currentSheet.end();
+        sheetNames.add(name);
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+        currentSheet = new Sheet();
+        return currentSheet;
+    }
+
+    /** call the callback until it returns false */
+    protected void writeRows(Sheet sheet, RowCallback callback) throws Exception {
+        while (callback.nextRow(sheet)) {
+        }
+    }
+
+    /**
+     * write the columns of all rows of the resultSet as rows, with the
+     * column labels as header row (when headerStyle is not null)
+     */
+    protected void writeRows(Sheet sheet, ResultSet resultSet, XlsxStyle headerStyle) throws Exception {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Object[] values = new Object[metaData.getColumnCount()];
+        if (headerStyle != null) {
+            for (int i = 0; i < values.length; i++) values[i] = metaData.getColumnLabel(i + 1);
+            sheet.writeRow(headerStyle, values);
+        }
+        while (resultSet.next()) {
+            for (int i = 0; i < values.length; i++) values[i] = resultSet.getObject(i + 1);
+            sheet.writeRow(values);
+        }
+    }
+
+    /** write rows into a sheet, e.g. from a JDBC cursor */
+    public interface RowCallback {
+        /**
+         * @return false when there are no more rows
+         */
+        boolean nextRow(Sheet sheet) throws Exception;
+    }
+
+    private int styleIndex(XlsxStyle style) {
+        if (style == null) return 0;
+        Integer index = styleIndexes.get(style);
+        if (index == null) {
+            styleList.add(style);
+            index = styleList.size();
+            styleIndexes.put(style, index);
+        }
+        return index;
+    }
+
+    /** a sheet of the workbook, written row by row */
+    public class Sheet {
+        private int rowNum;
+        private int[] columnWidths;
+        private boolean started;
+        private final List<String> columnNames = new ArrayList<String>();
+
+        /** @return number of rows written */
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        /** @param widths - width of the columns in characters, must be set before the first row */
+        public void setColumnWidths(int... widths) {
+            if (started) throw new IllegalStateException("Rows have already been written");
+            columnWidths = widths;
+        }
+
+        private void start() throws IOException {
+            started = true;
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                    "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+            if (columnWidths != null && columnWidths.length > 0) {
+                writer.write("<cols>");
+                for (int i = 0; i < columnWidths.length; i++) {
+                    writer.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" +
+                            columnWidths[i] + "\" customWidth=\"1\"/>");
+                }
+                writer.write("</cols>");
+            }
+            writer.write("<sheetData>");
+        }
+
+        /** write a row with the default styles */
+        public void writeRow(Object... values) throws IOException {
+            writeRow(values, (XlsxStyle[]) null);
+        }
+
+        /** write a row, all cells with the same style */
+        public void writeRow(XlsxStyle style, Object... values) throws IOException {
+            writeRow(values, style == null ? null : new XlsxStyle[]{style});
+        }
+
+        /**
+         * write a row.
+         *
+         * @param values - the cell values (String, Enum, Number, Boolean, Date, Calendar, RichTextString, null)
+         * @param styles - null or the style of each cell. when it has a single element,
+         *               it is used for all cells. dates without a style get the 'date' style.
+         */
+        public void writeRow(Object[] values, XlsxStyle[] styles) throws IOException {
+            if (currentSheet != this) throw new IllegalStateException("Sheet has been ended");
+            if (rowNum >= MAX_ROWS) {
+                throw new ImporterException("Too many rows for a sheet: " + MAX_ROWS, true);
+            }
+            if (!started) start();
+            rowNum++;
+            writer.write("<row r=\"");
+            writer.write(Integer.toString(rowNum));
+            writer.write("\">");
+            for (int i = 0; i < values.length; i++) {
+                XlsxStyle style = styles == null ? null : (styles.length == 1 ? styles[0] :
+                        (i < styles.length ? styles[i] : null));
+                writeCell(i, values[i], style);
+            }
+            writer.write("</row>");
+        }
+
+        private void writeCell(int column, Object value, XlsxStyle style) throws IOException {
+            if (value == null) return;
+            if (value instanceof Calendar) value = ((Calendar) value).getTime();
+            if (value instanceof Date && style == null) style = style(STYLE_date);
+            writer.write("<c r=\"");
+            writer.write(columnName(column));
+            writer.write(Integer.toString(rowNum));
+            int index = styleIndex(style);
+            if (index > 0) {
+                writer.write("\" s=\"");
+                writer.write(Integer.toString(index));
+            }
+            if (value instanceof Number) {
+                writer.write("\"><v>");
+                writer.write(numberText((Number) value));
+                writer.write("</v></c>");
+            } else if (value instanceof Date) {
+                writer.write("\"><v>");
+                writer.write(Double.toString(DateUtil.getExcelDate((Date) value)));
+                writer.write("</v></c>");
+            } else if (value instanceof Boolean) {
+                writer.write("\" t=\"b\"><v>");
+                writer.write((Boolean) value ? "1" : "0");
+                writer.write("</v></c>");
+            } else {
+                String text;
+                if (value instanceof String) text = (String) value;
+                else if (value instanceof Enum) text = ((Enum) value).name();
+                else if (value instanceof RichTextString) text = ((RichTextString) value).getString();
+                else throw new ImporterException("Unsupported cell value " + value, true);
+                writer.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                writeEscaped(text);
+                writer.write("</t></is></c>");
+            }
+        }
+
+        private String columnName(int column) {
+            while (columnNames.size() <= column) {
+                int n = columnNames.size() + 1;
+                StringBuilder name = new StringBuilder();
+                while (n > 0) {
+                    name.insert(0, (char) ('A' + (n - 1) % 26));
+                    n = (n - 1) / 26;
+                }
+                columnNames.add(name.toString());
+            }
+            return columnNames.get(column);
+        }
+
+        private void end() throws IOException {
+            if (!started) start();
+            writer.write("</sheetData></worksheet>");
+            writer.flush();
+            zip.closeEntry();
+            currentSheet = null;
+        }
+    }
+
+    private static String numberText(Number number) {
+        if (number instanceof BigDecimal) return ((BigDecimal) number).toPlainString();
+        if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new ImporterException("Unsupported cell value " + number, true);
+            }
+            return Double.toString(d);
+        }
+        return number.toString();
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                default:
+                    // control characters are not allowed in XML 1.0
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') writer.write(c);
+            }
+        }
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private void writeWorkbook() throws IOException {
+        StringBuilder types = new StringBuilder("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+                "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+                "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+                "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+                "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        StringBuilder sheets = new StringBuilder();
+        StringBuilder rels = new StringBuilder();
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            types.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            sheets.append("<sheet name=\"").append(attribute(sheetNames.get(i - 1))).append("\" sheetId=\"")
+                    .append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+            rels.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        rels.append("<Relationship Id=\"rId").append(sheetNames.size() + 1)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        writeEntry("xl/styles.xml", stylesXml());
+        writeEntry("xl/workbook.xml", "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" " +
+                "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>" +
+                sheets + "</sheets></workbook>");
+        writeEntry("xl/_rels/workbook.xml.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                        rels + "</Relationships>");
+        writeEntry("_rels/.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" " +
+                "Target=\"xl/workbook.xml\"/></Relationships>");
+        writeEntry("[Content_Types].xml", types.append("</Types>").toString());
+    }
+
+    private String stylesXml() {
+        StringBuilder numFmts = new StringBuilder();
+        StringBuilder fonts = new StringBuilder("<font><sz val=\"11\"/><name val=\"Calibri\"/></font>");
+        StringBuilder xfs = new StringBuilder("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+        Map<String, Integer> formatIds = new ConcurrentHashMap<String, Integer>();
+        for (int i = 0; i < styleList.size(); i++) {
+            XlsxStyle style = styleList.get(i);
+            int formatId = 0;
+            if (style.getDataFormat() != null) {
+                Integer id = formatIds.get(style.getDataFormat());
+                if (id == null) {
+                    id = 164 + formatIds.size(); // first id of custom formats
+                    formatIds.put(style.getDataFormat(), id);
+                    numFmts.append("<numFmt numFmtId=\"").append(id).append("\" formatCode=\"")
+                            .append(attribute(style.getDataFormat())).append("\"/>");
+                }
+                formatId = id;
+            }
+            fonts.append("<font>");
+            if (style.isBold()) fonts.append("<b/>");
+            if (style.isItalic()) fonts.append("<i/>");
+            fonts.append("<sz val=\"").append(style.getFontHeightInPoints()).append("\"/>");
+            if (style.getColor() >= 0) fonts.append("<color indexed=\"").append(style.getColor()).append("\"/>");
+            fonts.append("<name val=\"Calibri\"/></font>");
+            xfs.append("<xf numFmtId=\"").append(formatId).append("\" fontId=\"").append(i + 1)
+                    .append("\" fillId=\"0\" borderId=\"0\" xfId=\"0\"")
+                    .append(formatId > 0 ? " applyNumberFormat=\"1\"" : "").append(" applyFont=\"1\"/>");
+        }
+        return "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">" +
+                (formatIds.isEmpty() ? "" : "<numFmts count=\"" + formatIds.size() + "\">" + numFmts + "</numFmts>") +
+                "<fonts count=\"" + (styleList.size() + 1) + "\">" + fonts + "</fonts>" +
+                "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>" +
+                "<fill><patternFill patternType=\"gray125\"/></fill></fills>" +
+                "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>" +
+                "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                "<cellXfs count=\"" + (styleList.size() + 1) + "\">" + xfs + "</cellXfs>" +
+                "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>" +
+                "</styleSheet>";
+    }
+
+    private static String attribute(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * style factory class. add additional styles by overriding method 'initStyles()'.
+     * Each style is created once and written once to the workbook.
+     */
+    public class Styles {
+        protected Map<String, XlsxStyle> styles = new ConcurrentHashMap<String, XlsxStyle>();
+
+        /**
+         * @param name
+         * @return the style with given name. if not already contained in 'styles' map, invoke
+         *         the public method in the receiver class to create and cache the style.
+         */
+        public XlsxStyle get(String name) {
+            XlsxStyle style = styles.get(name);
+            if (style == null) {
+                try {
+                    style = (XlsxStyle) getClass().getMethod(name).invoke(this);
+                    put(name, style);
+                } catch (Exception e) {
+                    throw new ImporterException("Cannot create style " + name, e, true);
+                }
+            }
+            return style;
+        }
+
+        public void put(String name, XlsxStyle style) {
+            styles.put(name, style);
+        }
+
+        /*
+          STYLE METHODS: must return a XlsxStyle, must be public, must be no-arg methods.
+         */
+
+        public XlsxStyle boldTitle() {
+            XlsxStyle style = new XlsxStyle();
+            style.setBold(true);
+            style.setFontHeightInPoints((short) 14);
+            return style;
+        }
+
+        public XlsxStyle boldHeader() {
+            XlsxStyle style = new XlsxStyle();
+            style.setBold(true);
+            style.setFontHeightInPoints((short) 10);
+            return style;
+        }
+
+        public XlsxStyle redCell() {
+            XlsxStyle style = new XlsxStyle();
+            style.setColor(IndexedColors.RED.getIndex());
+            style.setFontHeightInPoints((short) 10);
+            return style;
+        }
+
+        public XlsxStyle blueCell() {
+            XlsxStyle style = new XlsxStyle();
+            style.setColor(IndexedColors.BLUE.getIndex());
+            style.setFontHeightInPoints((short) 10);
+            return style;
+        }
+
+        public XlsxStyle date() {
+            XlsxStyle style = new XlsxStyle();
+            style.setDataFormat("dd.mm.yyyy");
+            return style;
+        }
+    }
+}
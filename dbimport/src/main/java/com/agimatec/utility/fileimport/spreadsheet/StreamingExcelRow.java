@@ -0,0 +1,54 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Description: a row read by a {@link StreamingExcelRowReader}, containing the
+ * physical cells of the row in column order. getRow() is null.
+ */
+public class StreamingExcelRow extends ExcelRow {
+    private final int rowNum;
+    private final List<StreamingExcelCell> cells = new ArrayList<StreamingExcelCell>();
+
+    public StreamingExcelRow(int rowNum) {
+        super(null);
+        this.rowNum = rowNum;
+    }
+
+    public void addCell(StreamingExcelCell cell) {
+        cells.add(cell);
+    }
+
+    @Override
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    /** @return column of the first cell or -1 if the row contains no cells */
+    @Override
+    public int getFirstCellNum() {
+        return cells.isEmpty() ? -1 : cells.get(0).getColumnIndex();
+    }
+
+    /** @return column of the last cell PLUS ONE or -1 if the row contains no cells */
+    @Override
+    public int getLastCellNum() {
+        return cells.isEmpty() ? -1 : cells.get(cells.size() - 1).getColumnIndex() + 1;
+    }
+
+    /** @return the cell or null when the row contains no cell in the column */
+    @Override
+    public ICell getCell(int num) {
+        for (StreamingExcelCell cell : cells) {
+            if (cell.getColumnIndex() == num) return cell;
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<? extends ExcelCell> cellIterator() {
+        return cells.iterator();
+    }
+}
@@ -0,0 +1,208 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import com.agimatec.utility.fileimport.LineImportProcessor;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.zip.ZipFile;
+
+/**
+ * Description: read a spreadsheet row by row without building a workbook in memory.
+ * .xls files are read record by record from the POI filesystem,
+ * .xlsx files with a StAX parser from the zip file. The format is detected by the first bytes.
+ * Only the values of the cells are read (no styles, comments, formulas).
+ * .xlsx streams are copied to a temporary file before, so local files should be
+ * set with {@link #setFile(File)} (as {@link com.agimatec.utility.fileimport.ImportJob} does).
+ * <br>
+ * Can be used instead of an {@link ExcelRowReader} with
+ * {@link ExcelRowTokenizerFactory#setStreaming(boolean)}.
+ */
+public class StreamingExcelRowReader extends ExcelRowReader implements Closeable {
+    private static final int OLE2_MAGIC = 0xD0CF11E0;
+    private static final int ZIP_MAGIC = 0x504B0304;
+
+    /** the rows of a single sheet */
+    interface RowSource extends Closeable {
+        /** @return the next row or null at the end of the sheet */
+        StreamingExcelRow nextRow() throws IOException;
+    }
+
+    private File file;
+    /** temporary copy of a stream that is not a local file */
+    private File spoolFile;
+    private NPOIFSFileSystem poifs;
+    private ZipFile zipFile;
+    private RowSource rows;
+
+    /**
+     * @param keepOpen - true to prevent stream.close() on call of close()
+     */
+    public StreamingExcelRowReader(boolean keepOpen) {
+        super(keepOpen);
+    }
+
+    public StreamingExcelRowReader() {
+        super();
+    }
+
+    /**
+     * read from the given file instead of a stream
+     */
+    public void setFile(File file) throws IOException {
+        closeFile();
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void setStream(InputStream aReader) throws IOException {
+        if (aReader != getStream()) closeFile();
+        super.setStream(aReader);
+    }
+
+    /**
+     * reset to the first row, e.g. after the sheet has been changed
+     */
+    @Override
+    public void setRowIterator(Iterator<Row> rowIterator) {
+        super.setRowIterator(rowIterator);
+        closeRows();
+    }
+
+    @Override
+    public ExcelRow readLine() throws IOException {
+        if (rows == null) rows = openRows();
+        return rows.nextRow();
+    }
+
+    protected RowSource openRows() throws IOException {
+        if (poifs == null && zipFile == null) openFile();
+        if (poifs != null) {
+            return new HSSFRecordRowSource(poifs, getSheetName(), getSheetIndex());
+        } else {
+            return new XlsxRowSource(zipFile, getSheetName(), getSheetIndex());
+        }
+    }
+
+    private void openFile() throws IOException {
+        File source = file;
+        if (source == null) {
+            InputStream stream = getStream();
+            if (stream == null) {
+                throw new ImporterException("Neither stream nor file set", true);
+            }
+            if (stream instanceof FileInputStream) {
+                FileChannel channel = ((FileInputStream) stream).getChannel();
+                if (readMagic(channel) == OLE2_MAGIC) {
+                    // the channel is closed with the filesystem, so only when the stream may be closed
+                    poifs = new NPOIFSFileSystem(channel, true);
+                    return;
+                }
+            }
+            source = spoolFile = spool(stream);
+        }
+        FileChannel channel = new FileInputStream(source).getChannel();
+        try {
+            int magic = readMagic(channel);
+            if (magic == OLE2_MAGIC) {
+                poifs = new NPOIFSFileSystem(source, true);
+            } else if (magic == ZIP_MAGIC) {
+                zipFile = new ZipFile(source);
+            } else {
+                throw new ImporterException("Unknown spreadsheet format", true);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static int readMagic(FileChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) {
+            // positional reads, the stream is still at its start
+        }
+        buf.flip();
+        return buf.remaining() < 4 ? 0 : buf.getInt();
+    }
+
+    private static File spool(InputStream stream) throws IOException {
+        File tmp = File.createTempFile("spreadsheet", ".tmp");
+        tmp.deleteOnExit();
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = stream.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            out.close();
+        }
+        return tmp;
+    }
+
+    private void closeRows() {
+        if (rows != null) {
+            try {
+                rows.close();
+            } catch (IOException e) {
+                // ignore, there is nothing more to read
+            }
+            rows = null;
+        }
+    }
+
+    private void closeFile() throws IOException {
+        closeRows();
+        try {
+            if (zipFile != null) zipFile.close();
+            if (poifs != null && (spoolFile != null || file != null || !isKeepOpen())) {
+                poifs.close();
+            }
+        } finally {
+            zipFile = null;
+            poifs = null;
+            if (spoolFile != null) {
+                spoolFile.delete();
+                spoolFile = null;
+            }
+        }
+    }
+
+    /**
+     * close underlying stream and file (if keepOpen is false).
+     * with keepOpen, the file is kept to read other sheets from it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isKeepOpen()) {
+            closeRows();
+            return;
+        }
+        try {
+            closeFile();
+        } finally {
+            super.close();
+        }
+    }
+
+    /** @throws UnsupportedOperationException - the reader has no workbook */
+    @Override
+    public void removeCurrentRow(LineImportProcessor processor) {
+        throw new UnsupportedOperationException("not supported when streaming");
+    }
+
+    /** @throws UnsupportedOperationException - the reader has no workbook */
+    @Override
+    public void removeColumn(int columnNum) {
+        throw new UnsupportedOperationException("not supported when streaming");
+    }
+}
@@ -0,0 +1,278 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+import com.agimatec.utility.fileimport.ImporterException;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Description: read the rows of a sheet of an .xlsx file with a StAX parser.
+ * Only the shared strings and the number formats of the workbook are kept in memory.
+ */
+class XlsxRowSource implements StreamingExcelRowReader.RowSource {
+    private static final String RELATIONSHIP_NS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final List<String> sharedStrings = new ArrayList<String>();
+    /** date-formatted flag of the cell formats (index = attribute 's' of a cell) */
+    private final List<Boolean> dateStyles = new ArrayList<Boolean>();
+    private boolean date1904;
+    private final InputStream stream;
+    private final XMLStreamReader sheet;
+    private int nextRowNum;
+
+    XlsxRowSource(ZipFile zipFile, String sheetName, int sheetIndex) throws IOException {
+        try {
+            String sheetPath = findSheet(zipFile, sheetName, sheetIndex);
+            readSharedStrings(zipFile);
+            readStyles(zipFile);
+            ZipEntry entry = zipFile.getEntry(sheetPath);
+            if (entry == null) {
+                throw new ImporterException("Sheet not found: " + sheetPath, true);
+            }
+            stream = zipFile.getInputStream(entry);
+            sheet = xmlInputFactory.createXMLStreamReader(stream);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** @return path of the sheet in the zip file */
+    private String findSheet(ZipFile zipFile, String sheetName, int sheetIndex)
+            throws IOException, XMLStreamException {
+        String relationId = null;
+        int index = 0;
+        XMLStreamReader xml = open(zipFile, "xl/workbook.xml");
+        if (xml == null) {
+            throw new ImporterException("Not a spreadsheet: xl/workbook.xml not found", true);
+        }
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                if ("workbookPr".equals(xml.getLocalName())) {
+                    String value = xml.getAttributeValue(null, "date1904");
+                    date1904 = "1".equals(value) || "true".equals(value);
+                } else if ("sheet".equals(xml.getLocalName())) {
+                    if (sheetName != null ? sheetName.equalsIgnoreCase(xml.getAttributeValue(null, "name")) :
+                            index == sheetIndex) {
+                        relationId = xml.getAttributeValue(RELATIONSHIP_NS, "id");
+                        break;
+                    }
+                    index++;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+        if (relationId == null) {
+            throw new ImporterException(sheetName != null ? "Sheet not found by name: " + sheetName :
+                    "Sheet index (" + sheetIndex + ") is out of range (0.." + (index - 1) + ")", true);
+        }
+        xml = open(zipFile, "xl/_rels/workbook.xml.rels");
+        if (xml == null) {
+            throw new ImporterException("Not a spreadsheet: xl/_rels/workbook.xml.rels not found", true);
+        }
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT &&
+                        "Relationship".equals(xml.getLocalName()) &&
+                        relationId.equals(xml.getAttributeValue(null, "Id"))) {
+                    String target = xml.getAttributeValue(null, "Target");
+                    return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+        throw new ImporterException("Sheet not found: " + relationId, true);
+    }
+
+    private void readSharedStrings(ZipFile zipFile) throws IOException, XMLStreamException {
+        XMLStreamReader xml = open(zipFile, "xl/sharedStrings.xml");
+        if (xml == null) return;
+        try {
+            StringBuilder text = null;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("si".equals(xml.getLocalName())) {
+                        text = new StringBuilder();
+                    } else if ("t".equals(xml.getLocalName()) && text != null) {
+                        text.append(xml.getElementText());
+                    } else if ("rPh".equals(xml.getLocalName())) {
+                        skipElement(xml); // phonetic text is not part of the value
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "si".equals(xml.getLocalName())) {
+                    sharedStrings.add(text.toString());
+                    text = null;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private void readStyles(ZipFile zipFile) throws IOException, XMLStreamException {
+        XMLStreamReader xml = open(zipFile, "xl/styles.xml");
+        if (xml == null) return;
+        try {
+            Map<Integer, String> formats = new HashMap<Integer, String>();
+            boolean cellXfs = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("numFmt".equals(xml.getLocalName())) {
+                        formats.put(Integer.valueOf(xml.getAttributeValue(null, "numFmtId")),
+                                xml.getAttributeValue(null, "formatCode"));
+                    } else if ("cellXfs".equals(xml.getLocalName())) {
+                        cellXfs = true;
+                    } else if (cellXfs && "xf".equals(xml.getLocalName())) {
+                        String numFmtId = xml.getAttributeValue(null, "numFmtId");
+                        int formatIndex = numFmtId == null ? 0 : Integer.parseInt(numFmtId);
+                        String format = formats.get(formatIndex);
+                        if (format == null) format = BuiltinFormats.getBuiltinFormat(formatIndex);
+                        dateStyles.add(format != null && DateUtil.isADateFormat(formatIndex, format));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "cellXfs".equals(xml.getLocalName())) {
+                    break;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private static XMLStreamReader open(ZipFile zipFile, String path)
+            throws IOException, XMLStreamException {
+        ZipEntry entry = zipFile.getEntry(path);
+        return entry == null ? null : xmlInputFactory.createXMLStreamReader(zipFile.getInputStream(entry));
+    }
+
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    public StreamingExcelRow nextRow() throws IOException {
+        try {
+            while (sheet.hasNext()) {
+                int event = sheet.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "row".equals(sheet.getLocalName())) {
+                    return readRow();
+                } else if (event == XMLStreamConstants.END_ELEMENT &&
+                        "sheetData".equals(sheet.getLocalName())) {
+                    break;
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private StreamingExcelRow readRow() throws XMLStreamException {
+        String r = sheet.getAttributeValue(null, "r");
+        StreamingExcelRow row = new StreamingExcelRow(r == null ? nextRowNum : Integer.parseInt(r) - 1);
+        nextRowNum = row.getRowNum() + 1;
+        int column = -1;
+        while (true) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheet.getLocalName())) {
+                String ref = sheet.getAttributeValue(null, "r");
+                column = ref == null ? column + 1 : columnIndex(ref);
+                row.addCell(readCell(column));
+            } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheet.getLocalName())) {
+                return row;
+            }
+        }
+    }
+
+    private StreamingExcelCell readCell(int column) throws XMLStreamException {
+        String type = sheet.getAttributeValue(null, "t");
+        String style = sheet.getAttributeValue(null, "s");
+        String value = null;
+        while (true) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("v".equals(sheet.getLocalName())) {
+                    value = sheet.getElementText();
+                } else if ("t".equals(sheet.getLocalName())) { // inline string
+                    value = value == null ? sheet.getElementText() : value + sheet.getElementText();
+                } else if (!"is".equals(sheet.getLocalName()) && !"r".equals(sheet.getLocalName())) {
+                    skipElement(sheet); // formula, phonetic text, extensions
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "c".equals(sheet.getLocalName())) {
+                return new StreamingExcelCell(column, cellValue(type, style, value));
+            }
+        }
+    }
+
+    /** @return same value types as {@link ExcelCell#getValue()} */
+    private Object cellValue(String type, String style, String value) {
+        if (value == null) return null;
+        if (type == null || "n".equals(type)) {
+            double number = Double.parseDouble(value);
+            if (style != null && isDateStyle(Integer.parseInt(style)) && DateUtil.isValidExcelDate(number)) {
+                return DateUtil.getJavaDate(number, date1904);
+            }
+            return number;
+        } else if ("s".equals(type)) {
+            return sharedStrings.get(Integer.parseInt(value));
+        } else if ("b".equals(type)) {
+            return "1".equals(value) || "true".equals(value);
+        } else if ("e".equals(type)) {
+            try {
+                return FormulaError.forString(value).getCode();
+            } catch (IllegalArgumentException e) {
+                return value;
+            }
+        } else { // str, inlineStr, d
+            return value;
+        }
+    }
+
+    private boolean isDateStyle(int style) {
+        return style < dateStyles.size() && dateStyles.get(style);
+    }
+
+    /** @return 0-based column index of a cell reference like "AB12" */
+    static int columnIndex(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') break;
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    public void close() throws IOException {
+        try {
+            sheet.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            stream.close();
+        }
+    }
+}
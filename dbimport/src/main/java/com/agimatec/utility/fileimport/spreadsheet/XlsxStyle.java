@@ -0,0 +1,56 @@
+package com.agimatec.utility.fileimport.spreadsheet;
+
+/**
+ * Description: the format of cells written by the {@link StreamingExcelGenerator}:
+ * font and number/date format.
+ */
+public class XlsxStyle {
+    private boolean bold;
+    private boolean italic;
+    private short fontHeightInPoints = 11;
+    /** index of org.apache.poi.ss.usermodel.IndexedColors or -1 */
+    private short color = -1;
+    private String dataFormat;
+
+    public boolean isBold() {
+        return bold;
+    }
+
+    public void setBold(boolean bold) {
+        this.bold = bold;
+    }
+
+    public boolean isItalic() {
+        return italic;
+    }
+
+    public void setItalic(boolean italic) {
+        this.italic = italic;
+    }
+
+    public short getFontHeightInPoints() {
+        return fontHeightInPoints;
+    }
+
+    public void setFontHeightInPoints(short fontHeightInPoints) {
+        this.fontHeightInPoints = fontHeightInPoints;
+    }
+
+    public short getColor() {
+        return color;
+    }
+
+    /** @param color - e.g. IndexedColors.RED.getIndex() */
+    public void setColor(short color) {
+        this.color = color;
+    }
+
+    public String getDataFormat() {
+        return dataFormat;
+    }
+
+    /** @param dataFormat - null or a number/date format, e.g. "dd.mm.yyyy" or "#,##0.00" */
+    public void setDataFormat(String dataFormat) {
+        this.dataFormat = dataFormat;
+    }
+}
@@ -0,0 +1,89 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSVCharTokenizer Tester: same results as CSVStringTokenizer expected.
+ */
+public class CSVCharTokenizerTest extends TestCase {
+
+    public CSVCharTokenizerTest(String name) {
+        super(name);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(CSVCharTokenizerTest.class);
+    }
+
+    public void testSameAsCSVStringTokenizer() {
+        String[] lines = {"a;be;ce", "a;be;ce;", "a;be;ce;;", ";be;ce", ";be;d;;ce",
+                ";be;\"d;2\";;ce", "be;\"d;2\";;\"ce;x\";\"ff\"\"ss\"\"\";\";;;\"\";\";ende",
+                "a;\"c;\";\"d;e\"", "a;\"c;\";\"d;e\";", "a;\"c;\";\"d;e\";;",
+                "\"2FPAK\";\"1\";;\"der safe befindet sich auf dem\n   Schliessfach 12\";;\"1\";\n",
+                "flug:\nherr meier\n\nmachts", "x\"y;\"\";z", "",
+                // separators only: no empty field after the last separator
+                ";", ";;", ";;;", "\"\";", ";\"\";", ";;a;"};
+        CSVCharTokenizerFactory factory = new CSVCharTokenizerFactory();
+        for (String line : lines) {
+            assertEquals(line, parse(new CSVStringTokenizer(line, ";")),
+                    parse(factory.createTokenizer(line)));
+        }
+    }
+
+    public void testTrailingSeparator() {
+        CSVCharTokenizerFactory factory = new CSVCharTokenizerFactory();
+        assertEquals(1, parse(factory.createTokenizer(";")).size());
+        assertEquals(2, parse(factory.createTokenizer(";;")).size());
+        assertEquals(2, parse(factory.createTokenizer("a;")).size());
+        assertEquals(3, parse(factory.createTokenizer("a;;")).size());
+    }
+
+    public void testFieldViews() {
+        CSVCharTokenizerFactory factory = new CSVCharTokenizerFactory();
+        factory.setFieldViews(true);
+        LineTokenizer<String, CharSequence> t = factory.createTokenizer("ab;\"c\"\"d\";e");
+        CharSequence first = t.nextElement();
+        assertTrue(first instanceof CSVField);
+        assertEquals("ab", first.toString());
+        assertEquals("c\"d", t.nextElement().toString());
+        CharSequence last = t.nextElement();
+        assertTrue(((CSVField) last).contentEquals("e"));
+        assertFalse(t.hasMoreElements());
+        // views stay valid when the tokenizer is reused for the next line
+        factory.createTokenizer("xy;z");
+        assertEquals("ab", first.toString());
+    }
+
+    public void testMultiLine() {
+        CSVCharTokenizer tokens = new CSVCharTokenizer("\"1\";\"der safe", ";");
+        assertEquals("1", tokens.nextElement());
+        CharSequence half = tokens.nextElement();
+        assertEquals("der safe", half);
+        assertTrue(tokens.isLineIncomplete());
+        assertEquals("der safe\n 12\n\nja", tokens.continueParse(half, " 12"  + "\n\nja\";nextval;"));
+        assertEquals("nextval", tokens.nextElement());
+        assertEquals("", tokens.nextElement());
+        assertFalse(tokens.hasMoreElements());
+    }
+
+    public void testSeparatorExpected() {
+        try {
+            parse(new CSVCharTokenizer("\"a\"b;c", ";"));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private List<String> parse(LineTokenizer<String, ? extends CharSequence> tokens) {
+        List<String> result = new ArrayList<String>();
+        while (tokens.hasMoreElements()) {
+            result.add(tokens.nextElement().toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class CompressedInputStreamTest extends TestCase {
+    private static final String CSV = createCsv(2000);
+
+    private static String createCsv(int rows) {
+        StringBuilder csv = new StringBuilder("id;text\n");
+        for (int i = 1; i <= rows; i++) {
+            csv.append(i).append(";text").append(i).append('\n');
+        }
+        return csv.toString();
+    }
+
+    public void testNotCompressed() throws Exception {
+        byte[] plain = CSV.getBytes("UTF-8");
+        assertEquals(CSV, read(CompressedInputStream.open(new ByteArrayInputStream(plain), 1)));
+
+        File file = File.createTempFile("plain", ".csv");
+        try {
+            write(file, plain);
+            FileInputStream stream = new FileInputStream(file);
+            assertSame(stream, CompressedInputStream.open(stream, 1));
+            assertEquals(CSV, read(stream));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testGzipMultiMember() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int half = CSV.length() / 2;
+        out.write(gzip(CSV.substring(0, half).getBytes("UTF-8")));
+        out.write(gzip(CSV.substring(half).getBytes("UTF-8")));
+        for (int threads = 0; threads <= 2; threads++) {
+            InputStream stream = CompressedInputStream.open(new ByteArrayInputStream(out.toByteArray()), threads);
+            assertEquals(CompressedInputStream.Compression.GZIP,
+                    ((CompressedInputStream) stream).getCompression());
+            assertEquals(CSV, read(stream));
+        }
+    }
+
+    public void testBgzfParallel() throws Exception {
+        byte[] bgzf = bgzf(CSV.getBytes("UTF-8"), 1000);
+        for (int threads = 1; threads <= 3; threads++) {
+            assertEquals(CSV, read(CompressedInputStream.open(new ByteArrayInputStream(bgzf), threads)));
+        }
+        bgzf[bgzf.length - 40] ^= 1; // corrupt the last data block
+        try {
+            read(CompressedInputStream.open(new ByteArrayInputStream(bgzf), 2));
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testBgzfInvalidSize() throws Exception {
+        byte[] bgzf = bgzf(CSV.substring(0, 500).getBytes("UTF-8"), 1000);
+        int blockSize = ((bgzf[16] & 0xff) | (bgzf[17] & 0xff) << 8) + 1;
+        // ISIZE of the first member: 2 GB
+        bgzf[blockSize - 4] = (byte) 0xff;
+        bgzf[blockSize - 3] = (byte) 0xff;
+        bgzf[blockSize - 2] = (byte) 0xff;
+        bgzf[blockSize - 1] = 0x7f;
+        try {
+            read(CompressedInputStream.open(new ByteArrayInputStream(bgzf), 2));
+            fail("IOException expected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("exceeds"));
+        }
+    }
+
+    public void testZip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry("data/"));
+        zip.closeEntry();
+        zip.putNextEntry(new ZipEntry("data/import.csv"));
+        zip.write(CSV.getBytes("UTF-8"));
+        zip.closeEntry();
+        zip.close();
+        InputStream stream = CompressedInputStream.open(new ByteArrayInputStream(out.toByteArray()), 0);
+        assertEquals(CompressedInputStream.Compression.ZIP,
+                ((CompressedInputStream) stream).getCompression());
+        assertEquals(CSV, read(stream));
+    }
+
+    public void testImportJob() throws Exception {
+        File file = File.createTempFile("compressed", ".csv.gz");
+        try {
+            write(file, bgzf(CSV.getBytes("UTF-8"), 4096));
+            final List<String> rows = new ArrayList<String>();
+            LineImporterSpec spec = new LineImporterSpecAutoFields() {
+                @Override
+                public void processRow(LineImportProcessor processor) throws ImporterException {
+                    rows.add((String) processor.getCurrentRow().get("text"));
+                }
+            };
+            spec.setLineTokenizerFactory(new CSVStringTokenizerFactory());
+            ImportJob job = new ImportJob();
+            job.setDecompressThreads(2);
+            job.getControl().setFileName(file.getPath());
+            job.importFromURL(spec);
+            assertEquals(2000, rows.size());
+            assertEquals("text2000", rows.get(1999));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[777];
+            int n;
+            while ((n = stream.read(buf)) >= 0) out.write(buf, 0, n);
+            return out.toString("UTF-8");
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    /** @return data compressed as BGZF blocks of blockSize uncompressed bytes and the EOF block */
+    private static byte[] bgzf(byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int off = 0; off < data.length; off += blockSize) {
+            writeBgzfBlock(out, data, off, Math.min(blockSize, data.length - off));
+        }
+        writeBgzfBlock(out, data, 0, 0);
+        return out.toByteArray();
+    }
+
+    private static void writeBgzfBlock(ByteArrayOutputStream out, byte[] data, int off, int len) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data, off, len);
+        deflater.finish();
+        byte[] compressed = new byte[len + 1024];
+        int size = 0;
+        while (!deflater.finished()) {
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data, off, len);
+        int blockSize = 18 + size + 8;
+        out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0,
+                'B', 'C', 2, 0, (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)}, 0, 18);
+        out.write(compressed, 0, size);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, len);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+}
@@ -3,6 +3,11 @@ package com.agimatec.utility.fileimport;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * FixedLengthStringTokenizer Tester.
  *
@@ -31,6 +36,71 @@ public class FixedLengthStringTokenizerTest extends TestCase {
         assertEquals(false, myTokenizer.hasMoreElements());
     }
 
+    public void testFactory() {
+        FixedLengthStringTokenizerFactory factory = new FixedLengthStringTokenizerFactory();
+        factory.setFixedLengths(getTestConfig());
+        List<Object> expected = new ArrayList<Object>(
+                Arrays.asList("1234", "Hallo Welt", "", "20030310", "Bahnhof"));
+        List<Object> tokens = new ArrayList<Object>();
+        LineTokenizer<String, String> tokenizer = factory.createTokenizer(getTestString());
+        while (tokenizer.hasMoreElements()) {
+            String token = tokenizer.nextElement();
+            tokens.add(token);
+        }
+        assertEquals(expected, tokens);
+        try {
+            factory.createTokenizer(getTestString().substring(5));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testFieldFactory() {
+        FixedLengthFieldTokenizerFactory factory = new FixedLengthFieldTokenizerFactory();
+        factory.setFixedLengths(getTestConfig());
+        List<Object> expected = new ArrayList<Object>(
+                Arrays.asList("1234", "Hallo Welt", "", "20030310", "Bahnhof"));
+        assertEquals(expected, tokens(factory, getTestString()));
+        assertTrue(tokens(factory, getTestString()).get(0) instanceof String);
+
+        factory.setFieldViews(true);
+        List<Object> views = tokens(factory, getTestString());
+        assertTrue(views.get(1) instanceof CSVField);
+        assertEquals(expected.toString(), views.toString());
+        try {
+            factory.createTokenizer(getTestString().substring(5));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testSingleByteLines() throws Exception {
+        FixedLengthFieldTokenizerFactory factory = new FixedLengthFieldTokenizerFactory();
+        factory.setFixedLengths(getTestConfig());
+        factory.setSingleByteCharset("ISO-8859-1");
+        factory.setFieldViews(true);
+        LineReader<CharSequence> reader = factory.createLineReader();
+        reader.setStream(new ByteArrayInputStream((getTestString() + "\r\n" +
+                "|0001|Gr\u00fc\u00dfe     \u00ff     |19991231K\u00f6ln      |\r").getBytes("ISO-8859-1")));
+        List<Object> tokens = tokens(factory, reader.readLine());
+        assertTrue(tokens.get(1) instanceof ByteLine);
+        assertEquals("[1234, Hallo Welt, , 20030310, Bahnhof]", tokens.toString());
+        assertEquals("[0001, Gr\u00fc\u00dfe, \u00ff, 19991231, K\u00f6ln]",
+                tokens(factory, reader.readLine()).toString());
+        assertNull(reader.readLine());
+    }
+
+    private static List<Object> tokens(FixedLengthFieldTokenizerFactory factory, CharSequence line) {
+        List<Object> tokens = new ArrayList<Object>();
+        LineTokenizer<CharSequence, CharSequence> tokenizer = factory.createTokenizer(line);
+        while (tokenizer.hasMoreElements()) {
+            tokens.add(tokenizer.nextElement());
+        }
+        return tokens;
+    }
+
     private int[] getTestConfig() {
         // negative Werte stehen für absolute Anzahl Zeichen, die zu ignoreren sind
         return new int[]{-1, 4, -1, 10, 6, -1, 8, 10, -1};
@@ -0,0 +1,103 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ImportSchedulerTest extends TestCase {
+    private final List<File> files = new ArrayList<File>();
+    private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger runningA = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile int maxRunningA, maxRunning;
+
+    protected void tearDown() throws Exception {
+        for (File file : files) file.delete();
+        super.tearDown();
+    }
+
+    public void testLargestFirst() throws Exception {
+        ImportScheduler scheduler = new ImportScheduler();
+        scheduler.setThreads(1);
+        scheduler.add(createImport("a", 10));
+        scheduler.add(createImport("b", 300));
+        scheduler.add(createImport(null, 50));
+        scheduler.run();
+        assertEquals(Arrays.asList("300", "50", "10"), started);
+        assertEquals(360, scheduler.getRowCount());
+        assertEquals(0, scheduler.getErrorCount());
+        assertTrue(scheduler.getFailedImports().isEmpty());
+        assertTrue(scheduler.getSummary().startsWith("Executed 3 imports"));
+    }
+
+    public void testSameNameNotParallel() throws Exception {
+        ImportScheduler scheduler = new ImportScheduler();
+        scheduler.setThreads(4);
+        scheduler.add(createImport("a", 200));
+        scheduler.add(createImport("a", 100));
+        scheduler.add(createImport("a", 50));
+        scheduler.add(createImport("b", 150));
+        scheduler.add(createImport(null, 120));
+        ScheduledImport missing = new ScheduledImport("b", "target/does-not-exist.csv",
+                new LineImporterSpecAutoFields());
+        scheduler.add(missing);
+        scheduler.run();
+        assertEquals(5, started.size());
+        assertEquals(1, maxRunningA);
+        assertEquals(620, scheduler.getRowCount());
+        assertEquals(Arrays.asList(missing), scheduler.getFailedImports());
+    }
+
+    public void testConnectionBudget() throws Exception {
+        ImportScheduler scheduler = new ImportScheduler();
+        scheduler.setThreads(3);
+        scheduler.setMaxConnections(2);
+        for (int i = 1; i <= 4; i++) {
+            ScheduledImport each = createImport(null, 100 * i);
+            each.setConnections(2);
+            scheduler.add(each);
+        }
+        scheduler.run();
+        assertEquals(4, started.size());
+        assertEquals(1, maxRunning);
+    }
+
+    private ScheduledImport createImport(final String name, int rows) throws Exception {
+        File file = File.createTempFile("scheduled", ".csv");
+        files.add(file);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("id;text\n");
+        for (int i = 1; i <= rows; i++) {
+            writer.write(i + ";text" + i + "\n");
+        }
+        writer.close();
+        final String rowCount = String.valueOf(rows);
+        return new ScheduledImport(name, file.getPath(), new LineImporterSpecAutoFields()) {
+            @Override
+            protected void run(ImportJob job) throws Exception {
+                started.add(rowCount);
+                int n = running.incrementAndGet();
+                if (n > maxRunning) maxRunning = n;
+                if ("a".equals(name)) {
+                    n = runningA.incrementAndGet();
+                    if (n > maxRunningA) maxRunningA = n;
+                }
+                try {
+                    Thread.sleep(20);
+                    super.run(job);
+                } finally {
+                    running.decrementAndGet();
+                    if ("a".equals(name)) runningA.decrementAndGet();
+                }
+            }
+        };
+    }
+}
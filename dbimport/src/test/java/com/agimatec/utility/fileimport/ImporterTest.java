@@ -1,14 +1,41 @@
 package com.agimatec.utility.fileimport;
 
+import com.agimatec.utility.fileimport.groovy.XmlNode;
+import com.agimatec.utility.fileimport.groovy.XmlStreamImportProcessor;
+import com.agimatec.utility.fileimport.groovy.XmlStreamSpec;
 import groovy.lang.Binding;
 import groovy.util.GroovyScriptEngine;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Importer Tester.
@@ -40,6 +67,384 @@ public class ImporterTest extends TestCase {
         importer.importFrom(reader);
     }
 
+    public void testImportFromCsvParallel() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 500; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        final AtomicInteger processed = new AtomicInteger();
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                int id = Integer.parseInt((String) processor.getCurrentRow().get("id"));
+                assertEquals(id, processor.getRowCount());
+                if (id % 100 == 0) throw new IllegalArgumentException("invalid: " + id);
+                processed.incrementAndGet();
+            }
+        };
+        spec.setWorkerThreads(4);
+        spec.setWorkerQueueSize(16);
+        StringWriter errors = new StringWriter();
+        spec.setErrorWriter(errors);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        assertEquals(500, importer.getRowCount());
+        assertEquals(5, importer.getErrorCount());
+        assertEquals(495, processed.get());
+        assertEquals("100;name100\n200;name200\n300;name300\n400;name400\n500;name500\n",
+                errors.toString());
+    }
+
+    public void testWorkerCancels() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 500; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        final Set<Integer> processed = Collections.synchronizedSet(new HashSet<Integer>());
+        // the main thread has read ahead (with the workers only)
+        final CountDownLatch readAhead = new CountDownLatch(1);
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                int id = Integer.parseInt((String) processor.getCurrentRow().get("id"));
+                processed.add(id);
+                if (id == 105) readAhead.countDown();
+                if (id == 100) {
+                    if (getWorkerThreads() > 0) {
+                        try {
+                            readAhead.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException ex) {
+                            throw new ImporterException(ex, true);
+                        }
+                    }
+                    processor.setLastError("stopped at " + id);
+                    processor.setCancelled(true);
+                }
+            }
+        };
+        Importer single = new Importer(spec);
+        single.importFrom(new StringReader(csv.toString()));
+        processed.clear();
+        spec.setWorkerThreads(4);
+        spec.setWorkerQueueSize(16);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        assertTrue(importer.isCancelled());
+        assertEquals("stopped at 100", importer.getProcessor().getLastError());
+        // the rows read ahead after the row that cancelled are not counted
+        assertEquals(single.getRowCount(), importer.getRowCount());
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(processed.contains(i));
+        }
+        assertTrue(processed.size() < 500);
+    }
+
+    public void testErrorSink() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                int id = Integer.parseInt((String) processor.getCurrentRow().get("id"));
+                if (id % 10 == 0) throw new IllegalArgumentException("invalid: " + id);
+                if (id % 25 == 0) throw new IllegalStateException("invalid: " + id);
+            }
+        };
+        spec.setErrorQueueSize(2);
+        spec.setErrorTraceLimit(3);
+        StringWriter errors = new StringWriter();
+        spec.setErrorWriter(errors);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        assertEquals(100, importer.getRowCount());
+        assertEquals(12, importer.getErrorCount());
+        assertFalse(importer.isCancelled());
+        assertEquals("10;name10\n20;name20\n25;name25\n30;name30\n40;name40\n50;name50\n" +
+                "60;name60\n70;name70\n75;name75\n80;name80\n90;name90\n100;name100\n",
+                errors.toString());
+        assertNull(importer.getProcessor().getErrorSink());
+
+    }
+
+    public void testErrorRateExceeded() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                if (processor.getRowCount() % 4 == 0) throw new IllegalArgumentException();
+            }
+        };
+        spec.setMaxErrorRate(0.2);
+        spec.setErrorRateMinRows(20);
+        spec.setErrorWriter(new StringWriter());
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        // 5 errors in 20 rows exceed 20%
+        assertTrue(importer.isCancelled());
+        assertEquals(20, importer.getRowCount());
+        assertEquals(5, importer.getErrorCount());
+    }
+
+    public void testUniqueKeys() throws Exception {
+        StringBuilder csv = new StringBuilder("id;group;name\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append(i % 40).append(';').append(i % 3 == 0 ? "" : "g").append(";name").append(i)
+                    .append('\n');
+        }
+        for (int workers = 0; workers <= 2; workers += 2) {
+            final AtomicInteger processed = new AtomicInteger();
+            LineImporterSpec spec = new LineImporterSpecAutoFields() {
+                @Override
+                public void processRow(LineImportProcessor processor) throws ImporterException {
+                    processed.incrementAndGet();
+                }
+            };
+            spec.setUniqueKeyFields(new String[]{"id", "group"});
+            spec.setUniqueKeyExact(workers > 0);
+            spec.setWorkerThreads(workers);
+            StringWriter errors = new StringWriter();
+            spec.setErrorWriter(errors);
+            Importer importer = new Importer(spec);
+            importer.importFrom(new StringReader(csv.toString()));
+            assertEquals(100, importer.getRowCount());
+            // rows 41-80: only every 3rd row repeats (id, group), rows 81-100: all with group "g"
+            assertEquals(27, importer.getErrorCount());
+            assertEquals(73, processed.get());
+            assertTrue(errors.toString().startsWith("1;g;name41\n4;g;name44\n7;g;name47\n"));
+        }
+    }
+
+    public void testImportChunked() throws Exception {
+        File file = File.createTempFile("chunked", ".csv");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("id;text\n");
+        for (int i = 1; i <= 300; i++) {
+            // every 7th row contains a quoted field with line breaks
+            writer.write(i + (i % 7 == 0 ? ";\"first\nsecond\nthird\"\n" : ";text" + i + "\n"));
+            if (i == 150) {
+                // a record longer than two chunks
+                writer.write("long;\"");
+                for (int j = 0; j < 10; j++) writer.write("line " + j + " of a long field\n");
+                writer.write("\"\n");
+            }
+        }
+        writer.close();
+        assertEquals(importChunked(file, 0, true), importChunked(file, 3, true));
+        List<String> unordered = importChunked(file, 3, false);
+        Collections.sort(unordered);
+        List<String> expected = importChunked(file, 0, true);
+        Collections.sort(expected);
+        assertEquals(expected, unordered);
+        file.delete();
+    }
+
+    private List<String> importChunked(File file, int threads, boolean ordered)
+            throws Exception {
+        final List<String> rows = new ArrayList<String>();
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                rows.add(processor.getCurrentRow().get("id") + "=" +
+                        processor.getCurrentRow().get("text"));
+            }
+        };
+        spec.setParseThreads(threads);
+        spec.setParseChunkSize(50);
+        spec.setRowOrderRequired(ordered);
+        Importer importer = new Importer(spec);
+        MappedFileLineReader reader =
+                new MappedFileLineReader(Charset.forName("UTF-8"), 1024);
+        reader.setFile(file);
+        ((LineImportProcessor) importer.getProcessor()).importFrom(reader);
+        assertEquals(301, importer.getRowCount());
+        assertEquals(301, rows.size());
+        return rows;
+    }
+
+    public void testImportChunkedOutOfOrder() throws Exception {
+        File file = File.createTempFile("chunked", ".csv");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("id;text\n");
+        for (int i = 1; i <= 100; i++) {
+            writer.write(i + ";text" + i + "\n");
+        }
+        writer.close();
+        final CountDownLatch processed = new CountDownLatch(1);
+        final List<String> rows = new ArrayList<String>();
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                rows.add(String.valueOf(processor.getCurrentRow().get("id")));
+                processed.countDown();
+            }
+        };
+        spec.setLineTokenizerFactory(new CSVStringTokenizerFactory() {
+            @Override
+            public LineTokenizer<String, String> createTokenizer(String aLine) {
+                if (aLine.startsWith("1;")) {
+                    // the first chunk is finished after the rows of another chunk have been processed
+                    try {
+                        processed.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.createTokenizer(aLine);
+            }
+        });
+        spec.setParseThreads(3);
+        spec.setParseChunkSize(50);
+        spec.setRowOrderRequired(false);
+        spec.setMultiLineRecords(false);
+        Importer importer = new Importer(spec);
+        MappedFileLineReader reader =
+                new MappedFileLineReader(Charset.forName("UTF-8"), 1024);
+        reader.setFile(file);
+        ((LineImportProcessor) importer.getProcessor()).importFrom(reader);
+        file.delete();
+        assertEquals(100, rows.size());
+        assertFalse("1".equals(rows.get(0)));
+        Set<String> ids = new HashSet<String>(rows);
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(ids.contains(String.valueOf(i)));
+        }
+    }
+
+    public void testResumeAfterCheckpoint() throws Exception {
+        File file = File.createTempFile("resume", ".csv");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("id;text\n");
+        for (int i = 1; i <= 20; i++) {
+            writer.write(i + (i % 7 == 0 ? ";\"first\nsecond\"\n" : ";text" + i + "\n"));
+        }
+        writer.close();
+
+        final List<ImportCheckpoint> checkpoints = new ArrayList<ImportCheckpoint>();
+        ImportCheckpointer checkpointer = new ImportCheckpointer(null, new ImportControl(), 5) {
+            @Override
+            public void checkpoint(LineImportProcessor processor) {
+                checkpoints.add(processor.createCheckpoint());
+                resumed(checkpoints.get(checkpoints.size() - 1));
+            }
+        };
+        List<String> rows = importResumed(file, true, checkpointer, null);
+        assertEquals(20, rows.size());
+        assertEquals(4, checkpoints.size());
+        ImportCheckpoint checkpoint = checkpoints.get(1); // after row 10
+        assertEquals(10, checkpoint.getRowCount());
+        assertTrue(checkpoint.getRecordOffset() > 0);
+
+        List<String> resumed = importResumed(file, true, null, checkpoint);
+        assertEquals(rows.subList(10, 20), resumed);
+        checkpoint.setRecordOffset(-1); // skip rows instead of seek()
+        assertEquals(resumed, importResumed(file, false, null, checkpoint));
+    }
+
+    private List<String> importResumed(File file, boolean mapped, ImportCheckpointer checkpointer,
+                                       ImportCheckpoint resumePoint) throws Exception {
+        final List<String> rows = new ArrayList<String>();
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                rows.add(processor.getCurrentRow().get("id") + "=" +
+                        processor.getCurrentRow().get("text"));
+                processor.checkpoint();
+            }
+        };
+        spec.setCheckpointer(checkpointer);
+        Importer importer = new Importer(spec);
+        LineImportProcessor processor = (LineImportProcessor) importer.getProcessor();
+        processor.setResumePoint(resumePoint);
+        if (mapped) {
+            MappedFileLineReader reader = new MappedFileLineReader(Charset.forName("UTF-8"), 1024);
+            reader.setFile(file);
+            processor.importFrom(reader);
+        } else {
+            importer.importFrom(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        }
+        assertEquals(20, importer.getRowCount());
+        return rows;
+    }
+
+    public void testMetrics() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 200; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        LineImporterSpec spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                if ("13".equals(processor.getCurrentRow().get("id"))) throw new IllegalArgumentException();
+            }
+        };
+        spec.setWorkerThreads(2);
+        spec.setErrorWriter(new StringWriter());
+        Importer importer = new Importer(spec);
+        ImportMetricsReporter reporter = new ImportMetricsReporter(importer.enableMetrics());
+        final List<String> reports = new ArrayList<String>();
+        reporter.addListener(new ImportMetricsListener() {
+            public void metricsUpdated(ImportMetrics metrics) {
+                reports.add(metrics.getRowCount() + "/" + metrics.getErrorCount() + " " + metrics.isFinished());
+            }
+        });
+        reporter.registerMBean("testMetrics");
+        ObjectName name = reporter.getObjectName();
+        importer.importFrom(new StringReader(csv.toString()));
+        assertEquals(200, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RowCount"));
+        reporter.stop();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertEquals(Arrays.asList("200/1 true"), reports);
+        ImportMetrics metrics = importer.getMetrics();
+        assertEquals(0.005, metrics.getErrorRate(), 0.0001);
+        assertEquals(-1, metrics.getBytesRead());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getRowsPerSecond() > 0);
+        assertTrue(metrics.getProcessMillis() >= 0 && metrics.getTokenizeMillis() >= 0);
+    }
+
+    public void testMetricsControl() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        final InvocationHandler statement = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().startsWith("set")) events.add(method.getName() + " " + Arrays.asList(args));
+                if (method.getName().equals("executeUpdate")) return 0; // not committed by the import yet
+                return null;
+            }
+        };
+        Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement")) {
+                            events.add((String) args[0]);
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, statement);
+                        }
+                        if (method.getName().equals("commit")) events.add("commit");
+                        if (method.getReturnType() == boolean.class) return Boolean.FALSE;
+                        return null;
+                    }
+                });
+        ImportMetricsReporter reporter = new ImportMetricsReporter(
+                new Importer(new LineImporterSpecAutoFields()).enableMetrics());
+        ImportControl control = new ImportControl();
+        control.setImportId(7);
+        control.setImportName("testMetricsControl");
+        reporter.setControl(new ImportController(connection, SqlUtil.getDefault()), control);
+        reporter.report();
+        // the counters only, without an INSERT of the row, that is not visible yet
+        assertEquals(Arrays.asList(
+                "UPDATE Import_Control SET row_count = ?, error_count = ? WHERE import_id = ?",
+                "setQueryTimeout [5]", "setInt [1, 0]", "setInt [2, 0]", "setLong [3, 7]", "commit"), events);
+    }
+
     public void testImportFromXml() throws Exception {
         GroovyScriptEngine engine = new GroovyScriptEngine("src/test/resources");
         Binding binding = new Binding();
@@ -47,6 +452,33 @@ public class ImporterTest extends TestCase {
         assertEquals(new Integer(3), result);
     }
 
+    public void testImportFromXmlStream() throws Exception {
+        final List<String> samples = new ArrayList<String>();
+        Importer importer = new Importer(new XmlStreamSpec("/root/sample", null) {
+            @Override
+            public void processEach(XmlStreamImportProcessor processor) {
+                XmlNode sample = (XmlNode) processor.getCurrent();
+                samples.add(((XmlNode.Children) sample.get("first")).text() + " " +
+                        sample.children("second").text());
+            }
+        });
+        importer.importFrom(getClass().getResourceAsStream("/testimport.xml"));
+        assertEquals(3, importer.getRowCount());
+        assertEquals(Arrays.asList("Hello World", "John Doe", "Mary Poppins"), samples);
+
+        samples.clear();
+        importer = new Importer(new XmlStreamSpec("second", null) {
+            @Override
+            public void processEach(XmlStreamImportProcessor processor) {
+                XmlNode second = (XmlNode) processor.getCurrent();
+                samples.add(second.text() + second.get("@id"));
+            }
+        });
+        importer.importFrom(new StringReader(
+                "<a><b><second id='1'>x</second></b><second id='2'>y<c/></second></a>"));
+        assertEquals(Arrays.asList("x1", "y2"), samples);
+    }
+
     public static Test suite() {
         return new TestSuite(ImporterTest.class);
     }
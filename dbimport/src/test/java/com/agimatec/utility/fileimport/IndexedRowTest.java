@@ -0,0 +1,58 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IndexedRow Tester: same content as a HashMap with the field names expected.
+ */
+public class IndexedRowTest extends TestCase {
+
+    public IndexedRowTest(String name) {
+        super(name);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(IndexedRowTest.class);
+    }
+
+    public void testSameAsHashMap() {
+        LineImporterSpec spec = new LineImporterSpec();
+        spec.setFieldNames(new String[]{"a", "b", "a", null});
+        RowLayout layout = new RowLayout(spec);
+        String[][] rows = {{"1", "2", "3", "4", "5"}, {"1", "2"}, {"1"}, {}};
+        IndexedRow row = new IndexedRow(layout);
+        for (String[] values : rows) {
+            row.clear();
+            Map<String, Object> expected = new HashMap<String, Object>();
+            for (int i = 0; i < values.length; i++) {
+                row.set(i, values[i]);
+                expected.put(spec.getFieldName(i), values[i]);
+            }
+            assertEquals(expected, row);
+            assertEquals(expected.size(), row.size());
+            assertEquals(expected.get("a"), row.get("a"));
+            assertEquals(expected.containsKey("field_4"), row.containsKey("field_4"));
+        }
+        row.put("extra", "x");
+        row.put("a", "y");
+        assertEquals("x", row.get("extra"));
+        assertEquals("y", row.get("a"));
+        assertEquals(2, row.size());
+    }
+
+    public void testLayoutInvalidated() {
+        LineImporterSpec spec = new LineImporterSpec();
+        RowLayout layout = new RowLayout(spec);
+        IndexedRow row = new IndexedRow(layout);
+        row.set(1, "v");
+        assertEquals("v", row.get("field_1"));
+        assertNull(row.get("field_0"));
+        assertTrue(layout.isValid());
+        spec.setFieldNames(new String[]{"x"});
+        assertFalse(layout.isValid());
+    }
+}
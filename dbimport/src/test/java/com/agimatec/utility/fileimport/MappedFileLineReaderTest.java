@@ -0,0 +1,84 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MappedFileLineReader Tester.
+ */
+public class MappedFileLineReaderTest extends TestCase {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private File file;
+
+    public MappedFileLineReaderTest(String name) {
+        super(name);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(MappedFileLineReaderTest.class);
+    }
+
+    public void setUp() throws Exception {
+        file = File.createTempFile("mapped", ".csv");
+        file.deleteOnExit();
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testSameLinesAsBufferedReader() throws Exception {
+        String content = "a;b\r\nÄrger;größer als das Fenster\n\nx\ry\r\n" +
+                "eine sehr lange Zeile, die über mehrere Fenster geht;;;\nlast";
+        write(content);
+        List<String> expected = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new StringReader(content));
+        String line;
+        while ((line = reader.readLine()) != null) expected.add(line);
+
+        MappedFileLineReader mapped = new MappedFileLineReader(UTF8, 8);
+        mapped.setFile(file);
+        List<String> lines = new ArrayList<String>();
+        while ((line = mapped.readLine()) != null) lines.add(line);
+        mapped.close();
+        assertEquals(expected, lines);
+    }
+
+    public void testOffsetAndSeek() throws Exception {
+        write("eins\r\nzwei\ndrei");
+        MappedFileLineReader mapped = new MappedFileLineReader(UTF8, 1024);
+        mapped.setFile(file);
+        assertEquals("eins", mapped.readLine());
+        assertEquals(0, mapped.getRecordOffset());
+        assertEquals("zwei", mapped.readLine());
+        assertEquals(6, mapped.getRecordOffset());
+        long next = mapped.getNextOffset();
+        assertEquals(11, next);
+        assertEquals("drei", mapped.readLine());
+        assertNull(mapped.readLine());
+        mapped.seek(next);
+        assertEquals("drei", mapped.readLine());
+        assertEquals(11, mapped.getRecordOffset());
+        mapped.close();
+    }
+
+    public void testUnsupportedCharset() {
+        try {
+            new MappedFileLineReader(Charset.forName("UTF-16"), 1024);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private void write(String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+        writer.write(content);
+        writer.close();
+    }
+}
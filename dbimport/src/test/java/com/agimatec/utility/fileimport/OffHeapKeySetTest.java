@@ -0,0 +1,46 @@
+package com.agimatec.utility.fileimport;
+
+import junit.framework.TestCase;
+
+public class OffHeapKeySetTest extends TestCase {
+    public void testAddAndGrow() {
+        for (boolean exact : new boolean[]{false, true}) {
+            OffHeapKeySet keys = new OffHeapKeySet(10, exact);
+            long initialBytes = keys.getOffHeapBytes();
+            for (int i = 0; i < 100000; i++) {
+                assertTrue(keys.add("key" + i));
+            }
+            for (int i = 0; i < 100000; i += 7) {
+                assertFalse(keys.add("key" + i));
+            }
+            assertEquals(100000, keys.size());
+            assertTrue(keys.getOffHeapBytes() > initialBytes);
+            assertEquals(0, keys.getCollisions());
+        }
+    }
+
+    public void testHashCollisions() {
+        OffHeapKeySet exact = new SameHashKeySet(true);
+        assertTrue(exact.add("a"));
+        assertTrue(exact.add("b"));
+        assertTrue(exact.add("\u00e4"));
+        assertFalse(exact.add("b"));
+        assertFalse(exact.add("\u00e4"));
+        assertEquals(3, exact.size());
+        assertTrue(exact.getCollisions() > 0);
+
+        OffHeapKeySet hashOnly = new SameHashKeySet(false);
+        assertTrue(hashOnly.add("a"));
+        assertFalse(hashOnly.add("b")); // same hash: duplicate without exact compare
+    }
+
+    private static class SameHashKeySet extends OffHeapKeySet {
+        SameHashKeySet(boolean exact) {
+            super(10, exact);
+        }
+
+        protected long hash(CharSequence key) {
+            return 42;
+        }
+    }
+}
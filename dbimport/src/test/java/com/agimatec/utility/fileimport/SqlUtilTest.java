@@ -4,9 +4,27 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.DecimalFormat;
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SqlUtil Tester.
@@ -42,6 +60,160 @@ public class SqlUtilTest extends TestCase {
         assertEquals(13500, num.intValue());
     }
 
+    public void testDateConverter() throws Exception {
+        String[][] samples = {{"yyyy-MM-dd", "2007-12-30"}, {"dd.MM.yyyy", "01.03.2008"},
+                {"dd.MM.yyyy HH:mm:ss", "29.02.2008 23:59:01"}, {"yyyyMMdd", "19991231"},
+                {"yyyy-MM-dd'T'HH:mm:ss", "2010-06-15T12:00:00"}, {"HH:mm", "17:45"},
+                {"d.M.yyyy", "1.3.2008"}, {"dd.MM.yyyy", "1.3.2008"}, {"dd.MM.yyyy", "01.03.2008 xyz"}};
+        for (String[] sample : samples) {
+            long expected = new SimpleDateFormat(sample[0]).parse(sample[1]).getTime();
+            assertEquals(sample[0], expected, new DateConverter(sample[0]).millis(sample[1]));
+            assertEquals(sample[0], expected, new DateConverter(sample[0], 4).millis(sample[1]));
+        }
+        try {
+            new DateConverter("dd.MM.yyyy").date("xx.03.2008");
+            fail("ParseException expected");
+        } catch (ParseException ex) {
+            // expected
+        }
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        try {
+            // offsets, lenient dates, two-digit years and daylight saving time as with SimpleDateFormat
+            samples = new String[][]{{"yyyy-MM-dd HH:mm:ssZ", "2008-01-01 10:00:00+0500"},
+                    {"yyyy-MM-dd HH:mm:ssXXX", "2008-01-01 10:00:00+05:00"},
+                    {"dd.MM.yyyy", "31.02.2008"}, {"dd.MM.yyyy", "32.01.2008"}, {"dd.MM.yy", "01.03.08"},
+                    {"dd.MM.yyyy", "01.03.08"}, {"dd.MM.yyyy", "01.03.1582"},
+                    {"yyyy-MM-dd HH:mm:ss", "2008-03-30 02:30:00"},
+                    {"yyyy-MM-dd HH:mm:ss", "2008-10-26 02:30:00"}};
+            for (String[] sample : samples) {
+                long expected = new SimpleDateFormat(sample[0]).parse(sample[1]).getTime();
+                assertEquals(sample[1], expected, new DateConverter(sample[0]).millis(sample[1]));
+            }
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+        DateConverter cached = new DateConverter("dd.MM.yyyy", 8);
+        java.sql.Date date = cached.date("30.12.2007");
+        date.setTime(0); // the cache must not share mutable values
+        assertEquals(new java.sql.Date(createDate(2007, 12, 30).getTime()), cached.date("30.12.2007"));
+
+        SqlUtil util = SqlUtil.forPostgres();
+        util.setConverterCacheSize(16);
+        util.defDate("Time", "HH:mm:ss");
+        util.defDate("Stamp", "yyyy-MM-dd HH:mm:ss");
+        assertEquals(new SimpleDateFormat("HH:mm:ss").parse("08:15:00").getTime(),
+                util.time("Time", "08:15:00").getTime());
+        assertEquals(java.sql.Timestamp.valueOf("2008-02-29 10:11:12"),
+                util.timestamp("Stamp", "2008-02-29 10:11:12"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(util);
+        out.close();
+        SqlUtil copy = (SqlUtil) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(java.sql.Timestamp.valueOf("2008-02-29 10:11:12"),
+                copy.timestamp("Stamp", "2008-02-29 10:11:12"));
+    }
+
+    public void testNumberConverter() throws Exception {
+        String[][] samples = {{"#", "0013500"}, {"#", "-42"}, {"#", "-0"}, {"#,##0.00", "1234"},
+                {"#,##0.00", "1,234.5"}, {"0.0", "12.50"}, {"#", "123456789012345678901"}, {"#", "12abc"}};
+        for (String[] sample : samples) {
+            Number expected = new DecimalFormat(sample[0]).parse(sample[1]);
+            assertEquals(sample[0] + " " + sample[1], expected, new NumberConverter(sample[0]).number(sample[1]));
+            assertEquals(sample[0] + " " + sample[1], expected, new NumberConverter(sample[0], 4).number(sample[1]));
+        }
+    }
+
+    public void testConvertParallel() throws Exception {
+        final SqlUtil util = SqlUtil.forPostgres();
+        util.setConverterCacheSize(10);
+        util.defDate("Day", "dd.MM.yyyy HH:mm");
+        util.defNumber("Amount", "#,##0.00");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm");
+                        DecimalFormat numberFormat = new DecimalFormat("#,##0.00");
+                        for (int i = 0; i < 2000; i++) {
+                            String day = String.format("%02d.%02d.2008 %02d:%02d", i % 28 + 1, i % 12 + 1,
+                                    i % 24, i % 60);
+                            String amount = (i % 50) + "," + (i % 1000) + ".25";
+                            assertEquals(dateFormat.parse(day).getTime(), util.timestamp("Day", day).getTime());
+                            assertEquals(numberFormat.parse(amount), util.number("Amount", amount));
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testSequenceBlocks() throws Exception {
+        SqlUtil util = SqlUtil.forPostgres();
+        util.defSequence("id", "SEQ_norge_import", 50);
+        assertEquals("nextval('SEQ_norge_import')", util.get("id"));
+        assertEquals(50, util.getSequenceAllocator("id").getBlockSize());
+        util.defSequence("id", "SEQ_norge_import");
+        assertNull(util.getSequenceAllocator("id"));
+        util.defSequenceHiLo("id", "SEQ_norge_import", 100);
+        assertTrue(util.getSequenceAllocator("id").isHiLo());
+
+        final AtomicLong sequence = new AtomicLong();
+        final AtomicInteger roundTrips = new AtomicInteger();
+        final SequenceAllocator allocator = new SequenceAllocator(null, null, 7, false) {
+            @Override
+            protected long[] fetch(java.sql.Connection connection, int count) {
+                roundTrips.incrementAndGet();
+                long[] values = new long[count];
+                for (int i = 0; i < count; i++) values[i] = sequence.incrementAndGet();
+                return values;
+            }
+        };
+        final Set<Long> values = Collections.synchronizedSet(new HashSet<Long>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        for (int i = 0; i < 1000; i++) {
+                            assertTrue(values.add(allocator.next(null)));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results) result.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, values.size());
+        assertEquals(4000 / 7 + 1, roundTrips.get());
+
+        SequenceAllocator hiLo = new SequenceAllocator(null, null, 10, true) {
+            @Override
+            protected long fetchHi(java.sql.Connection connection) {
+                return sequence.getAndAdd(10);
+            }
+        };
+        sequence.set(1);
+        for (int i = 1; i <= 25; i++) {
+            assertEquals(i, hiLo.next(null));
+        }
+        assertEquals(31, sequence.get());
+    }
+
     public Date createDate(int year, int month, int day) {
         Calendar gc = Calendar.getInstance();
         gc.clear();
@@ -0,0 +1,50 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.LineImporterSpec;
+import groovy.lang.Closure;
+import groovy.lang.GroovyShell;
+
+import java.io.StringReader;
+
+/**
+ * Description: compare the row processing of LineImporterSpecGroovy with
+ * a dynamic closure and with a statically compiled {@link RowHandler}.<br>
+ * Not a unit test, run it with: <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.agimatec.utility.fileimport.groovy.RowHandlerBenchmark [-Dexec.args="rows rounds"]
+ * </pre>
+ * (on java 9+ the dynamic groovy 2.4 runtime needs the JVM option
+ * --add-opens java.base/java.lang=ALL-UNNAMED)
+ */
+public class RowHandlerBenchmark {
+    private static final String BODY = "def row = processor.currentRow\n" +
+            "long sum = 0\n" +
+            "for (int i = 0; i < 10; i++) { sum += ((String) row.get('amount')).length() + i }\n" +
+            "if (((String) row.get('name')).startsWith('x') && sum < 0) throw new IllegalStateException()\n";
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        StringBuilder csv = new StringBuilder("id;name;amount\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(";name").append(i).append(';').append(i * 17).append('\n');
+        }
+        String data = csv.toString();
+
+        Closure closure = (Closure) new GroovyShell().evaluate("{ processor -> " + BODY + "}");
+        RowHandler handler = new RowHandlerCompiler().compile(BODY);
+        for (int round = 0; round < rounds; round++) {
+            long dynamic = run(new LineImporterSpecGroovy(closure), data);
+            long compiled = run(new LineImporterSpecGroovy(handler), data);
+            System.out.println("round " + round + ": closure " + dynamic + " ms, compiled handler " +
+                    compiled + " ms (" + rows + " rows)");
+        }
+    }
+
+    private static long run(LineImporterSpec spec, String data) throws Exception {
+        long start = System.nanoTime();
+        new Importer(spec).importFrom(new StringReader(data));
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
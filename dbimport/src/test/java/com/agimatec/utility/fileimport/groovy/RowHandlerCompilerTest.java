@@ -0,0 +1,55 @@
+package com.agimatec.utility.fileimport.groovy;
+
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterException;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RowHandlerCompilerTest extends TestCase {
+    public static final List<String> ROWS = new ArrayList<String>();
+    private static final String SCRIPT = RowHandlerCompilerTest.class.getName() + ".ROWS" +
+            ".add(\"${processor.currentRow.get('id')}=${processor.currentRow.get('text')}\".toString())";
+
+    public RowHandlerCompilerTest(String name) {
+        super(name);
+    }
+
+    public void testCompileAndCache() throws Exception {
+        File dir = new File("target/rowhandlers");
+        RowHandlerCompiler compiler = new RowHandlerCompiler(dir);
+        RowHandler handler = compiler.compile(SCRIPT);
+        assertSame(handler.getClass(), compiler.compile(SCRIPT).getClass());
+        assertTrue(new File(dir, handler.getClass().getName() + ".class").isFile());
+
+        // another compiler (next run) loads the class file from the cache directory
+        RowHandler cached = new RowHandlerCompiler(dir).compile(SCRIPT);
+        assertEquals(handler.getClass().getName(), cached.getClass().getName());
+        assertNotSame(handler.getClass(), cached.getClass());
+
+        ROWS.clear();
+        Importer importer = new Importer(new LineImporterSpecGroovy(cached));
+        importer.importFrom(new StringReader("id;text\n1;one\n2;two\n"));
+        assertEquals(2, importer.getRowCount());
+        assertEquals(Arrays.asList("1=one", "2=two"), ROWS);
+    }
+
+    public void testClassNotDefined() throws Exception {
+        RowHandlerCompiler compiler = new RowHandlerCompiler() {
+            @Override
+            protected String createSource(String className, String script) {
+                return super.createSource("Other" + className, script);
+            }
+        };
+        try {
+            compiler.compile(SCRIPT);
+            fail("ImporterException expected");
+        } catch (ImporterException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("not defined by compiled script"));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterProcessor;
+import com.agimatec.utility.fileimport.SqlUtil;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CopyEncoderTest extends TestCase {
+    public void testEncodeText() {
+        CopyEncoder encoder = new CopyEncoder(CopyEncoder.Format.TEXT);
+        StringBuilder out = new StringBuilder();
+        encoder.encodeRow(new Object[]{1, null, "a\tb\\c\nd\re", "", Boolean.TRUE,
+                new BigDecimal("1E+3"), Timestamp.valueOf("2008-03-01 12:30:00"),
+                new byte[]{0x0f, (byte) 0xa0}}, out);
+        assertEquals("1\t\\N\ta\\tb\\\\c\\nd\\re\t\tt\t1000\t2008-03-01 12:30:00.0\t\\\\x0fa0\n",
+                out.toString());
+        assertEquals("", encoder.getCopyOptions());
+    }
+
+    public void testEncodeCsv() {
+        CopyEncoder encoder = new CopyEncoder(CopyEncoder.Format.CSV);
+        StringBuilder out = new StringBuilder();
+        encoder.encodeRow(new Object[]{1, null, "", "say \"hi\", ok", "a\\b", "\\.", "x\ny"}, out);
+        assertEquals("1,,\"\",\"say \"\"hi\"\", ok\",a\\b,\"\\.\",\"x\ny\"\n", out.toString());
+        assertEquals(" WITH (FORMAT csv)", encoder.getCopyOptions());
+    }
+
+    public void testCopyBisectsRejectedBatches() throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 50; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        final List<String> copied = new ArrayList<String>();
+        PostgresCopyImporterSpec spec = new PostgresCopyImporterSpec(
+                connection("PostgreSQL"), SqlUtil.forPostgres(), "person", "id", "name") {
+            @Override
+            public ImporterProcessor createProcessor(Importer importer) {
+                if (!isCopySupported()) fail("PostgreSQL expected");
+                return new PostgresCopyImportProcessor(this, importer) {
+                    @Override
+                    protected long copyIn(String sql, Reader data) throws SQLException {
+                        assertEquals("COPY person (id, name) FROM STDIN", sql);
+                        List<String> lines = readLines(data);
+                        for (String line : lines) {
+                            if (line.startsWith("13\t") || line.startsWith("42\t")) {
+                                throw new SQLException("duplicate key " + line);
+                            }
+                        }
+                        copied.addAll(lines);
+                        return lines.size();
+                    }
+                };
+            }
+        };
+        spec.defType("id", Types.NUMERIC);
+        spec.setBatchSize(16);
+        StringWriter errors = new StringWriter();
+        spec.setErrorWriter(errors);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        assertEquals(2, importer.getErrorCount());
+        assertEquals("13;name13\n42;name42\n", errors.toString());
+        assertEquals(48, copied.size());
+        assertEquals("1\tname1", copied.get(0));
+    }
+
+    public void testFallbackToBatchInsert() throws Exception {
+        PostgresCopyImporterSpec spec = new PostgresCopyImporterSpec(
+                connection("HSQL Database Engine"), SqlUtil.getDefault(), "person", "id", "name");
+        assertEquals("INSERT INTO person (id, name) VALUES (?, ?)", spec.getSql());
+        Importer importer = new Importer(spec);
+        assertFalse(importer.getProcessor() instanceof PostgresCopyImportProcessor);
+        assertTrue(importer.getProcessor() instanceof JdbcBatchImportProcessor);
+    }
+
+    private static List<String> readLines(Reader data) {
+        StringBuilder buf = new StringBuilder();
+        try {
+            int c;
+            while ((c = data.read()) >= 0) buf.append((char) c);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        List<String> lines = new ArrayList<String>();
+        for (String line : buf.toString().split("\n")) lines.add(line);
+        return lines;
+    }
+
+    /** @return a connection that does nothing */
+    private static Connection connection(final String productName) {
+        final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+                CopyEncoderTest.class.getClassLoader(), new Class[]{DatabaseMetaData.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getDatabaseProductName".equals(method.getName()) ? productName : null;
+                    }
+                });
+        return (Connection) Proxy.newProxyInstance(CopyEncoderTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getMetaData".equals(method.getName())) return metaData;
+                        if (method.getReturnType() == boolean.class) return Boolean.FALSE;
+                        return null;
+                    }
+                });
+    }
+}
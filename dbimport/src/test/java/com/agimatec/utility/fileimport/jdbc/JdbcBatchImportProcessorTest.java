@@ -0,0 +1,191 @@
+package com.agimatec.utility.fileimport.jdbc;
+
+import com.agimatec.utility.fileimport.CSVCharTokenizerFactory;
+import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterProcessor;
+import com.agimatec.utility.fileimport.SqlUtil;
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JdbcBatchImportProcessorTest extends TestCase {
+    private final List<String> events = new ArrayList<String>();
+    /** rows inserted in the current transaction */
+    private final List<Object> pending = new ArrayList<Object>();
+    private final List<Object> committed = new ArrayList<Object>();
+    private final Map<Savepoint, Integer> savepoints = new HashMap<Savepoint, Integer>();
+    /** row number and line of the rows reported as failed */
+    private final List<String> failedRows = new ArrayList<String>();
+
+    public void testBisectFailedBatch() throws Exception {
+        StringWriter errors = new StringWriter();
+        Importer importer = importRows(errors, false);
+
+        assertEquals(1, importer.getErrorCount());
+        assertEquals("6;name6\n", errors.toString());
+        assertEquals(Arrays.<Object>asList("1", "2", "3", "4", "5", "7", "8", "9", "10"), committed);
+        assertEquals(9, ((JdbcBatchImportProcessor) importer.getProcessor()).getCommittedRows());
+        // the row of id 6, not the last row of the batch (the header line is not counted)
+        assertEquals(Arrays.asList("6: 6;name6"), failedRows);
+        assertEquals(10, importer.getRowCount());
+        assertEquals(Arrays.asList(
+                "executeBatch [1, 2, 3, 4]", "commit",
+                // the rows before the failed row are rolled back with the savepoint
+                "executeBatch [5, 6, 7, 8] failed", "rollback",
+                "executeBatch [5, 6] failed", "rollback",
+                "executeBatch [5]",
+                "executeBatch [6] failed", "rollback",
+                // 3 rows executed, the commit interval is reached with the next batch
+                "executeBatch [7, 8]",
+                "executeBatch [9, 10]", "commit",
+                // the final commit of the import
+                "commit"), events);
+    }
+
+    public void testFieldViews() throws Exception {
+        StringWriter errors = new StringWriter();
+        Importer importer = importRows(errors, true);
+        // the CSVField views are bound as Strings
+        assertEquals("6;name6\n", errors.toString());
+        assertEquals(Arrays.<Object>asList("1", "2", "3", "4", "5", "7", "8", "9", "10"), committed);
+        assertEquals(1, importer.getErrorCount());
+    }
+
+    public void testNullValues() throws Exception {
+        JdbcBatchImporterSpec spec = new JdbcBatchImporterSpec(connection(), SqlUtil.getDefault(),
+                "INSERT INTO person (id, name, born) VALUES (?, ?, ?)", "id", "name", "born");
+        spec.defType("born", Types.DATE);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader("id;name;born\n1;;\n"));
+        assertEquals(0, importer.getErrorCount());
+        assertEquals(Arrays.<Object>asList("1"), committed);
+        // typed nulls, the type of the column or VARCHAR
+        assertEquals(Arrays.asList("setNull [2, " + Types.VARCHAR + "]", "setNull [3, " + Types.DATE + "]",
+                "executeBatch [1]", "commit"), events);
+    }
+
+    private Importer importRows(StringWriter errors, boolean fieldViews) throws Exception {
+        StringBuilder csv = new StringBuilder("id;name\n");
+        for (int i = 1; i <= 10; i++) {
+            csv.append(i).append(";name").append(i).append('\n');
+        }
+        JdbcBatchImporterSpec spec = new JdbcBatchImporterSpec(connection(), SqlUtil.getDefault(),
+                "INSERT INTO person (id, name) VALUES (?, ?)", "id", "name") {
+            @Override
+            public ImporterProcessor createProcessor(Importer importer) {
+                return new JdbcBatchImportProcessor(this, importer) {
+                    @Override
+                    protected void handleRowException(Exception iex, Object aLine) {
+                        failedRows.add(getRowCount() + ": " + getCurrentLine());
+                        super.handleRowException(iex, aLine);
+                    }
+                };
+            }
+        };
+        if (fieldViews) {
+            CSVCharTokenizerFactory factory = new CSVCharTokenizerFactory();
+            factory.setFieldViews(true);
+            spec.setLineTokenizerFactory(factory);
+        }
+        spec.setBatchSize(4);
+        spec.setCommitInterval(4);
+        spec.setErrorWriter(errors);
+        Importer importer = new Importer(spec);
+        importer.importFrom(new StringReader(csv.toString()));
+        return importer;
+    }
+
+    /**
+     * a connection to a table in memory. executeBatch() inserts the ids until the id 6,
+     * that fails with a BatchUpdateException.
+     */
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("prepareStatement".equals(name)) return statement();
+                        if ("setSavepoint".equals(name)) {
+                            Savepoint savepoint = (Savepoint) Proxy.newProxyInstance(
+                                    getClass().getClassLoader(), new Class[]{Savepoint.class},
+                                    new InvocationHandler() {
+                                        public Object invoke(Object proxy, Method method, Object[] args) {
+                                            if ("hashCode".equals(method.getName())) {
+                                                return System.identityHashCode(proxy);
+                                            }
+                                            if ("equals".equals(method.getName())) return proxy == args[0];
+                                            return null;
+                                        }
+                                    });
+                            savepoints.put(savepoint, pending.size());
+                            return savepoint;
+                        }
+                        if ("rollback".equals(name)) {
+                            events.add("rollback");
+                            int size = args == null ? 0 : savepoints.get(args[0]);
+                            pending.subList(size, pending.size()).clear();
+                        } else if ("commit".equals(name)) {
+                            events.add("commit");
+                            committed.addAll(pending);
+                            pending.clear();
+                            savepoints.clear();
+                        }
+                        if (method.getReturnType() == boolean.class) return Boolean.FALSE;
+                        return null;
+                    }
+                });
+    }
+
+    private PreparedStatement statement() {
+        final List<Object> batch = new ArrayList<Object>();
+        final Object[] id = new Object[1];
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        String name = method.getName();
+                        if ("setObject".equals(name) && args[0].equals(1)) {
+                            id[0] = args[1];
+                        } else if ("setNull".equals(name)) {
+                            events.add("setNull " + Arrays.asList(args));
+                        } else if ("addBatch".equals(name)) {
+                            batch.add(id[0]);
+                        } else if ("clearBatch".equals(name)) {
+                            batch.clear();
+                        } else if ("executeBatch".equals(name)) {
+                            List<Object> rows = new ArrayList<Object>(batch);
+                            batch.clear();
+                            int[] counts = new int[rows.size()];
+                            for (int i = 0; i < rows.size(); i++) {
+                                if ("6".equals(rows.get(i))) {
+                                    events.add("executeBatch " + rows + " failed");
+                                    BatchUpdateException ex = new BatchUpdateException(
+                                            "batch entry " + i, new int[i]);
+                                    ex.setNextException(new SQLException("duplicate key 6"));
+                                    throw ex;
+                                }
+                                pending.add(rows.get(i));
+                                counts[i] = 1;
+                            }
+                            events.add("executeBatch " + rows);
+                            return counts;
+                        }
+                        return null;
+                    }
+                });
+    }
+}
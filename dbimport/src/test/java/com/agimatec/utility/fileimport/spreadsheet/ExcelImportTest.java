@@ -1,6 +1,10 @@
 package com.agimatec.utility.fileimport.spreadsheet;
 
+import com.agimatec.utility.fileimport.ImportJob;
 import com.agimatec.utility.fileimport.Importer;
+import com.agimatec.utility.fileimport.ImporterException;
+import com.agimatec.utility.fileimport.ImporterSpec;
+import com.agimatec.utility.fileimport.LineImportProcessor;
 import com.agimatec.utility.fileimport.LineImporterSpec;
 import com.agimatec.utility.fileimport.LineImporterSpecAutoFields;
 import junit.framework.TestCase;
@@ -10,10 +14,12 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 
+import java.io.File;
 import java.io.FileOutputStream;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Description: <br/>
@@ -35,6 +41,169 @@ public class ExcelImportTest extends TestCase {
         importer.importFrom(getClass().getResourceAsStream("/Spreadsheet.xls"));        
     }
 
+    public void testStreamingSameAsWorkbook() throws Exception {
+        ExcelRowReader expected = new ExcelRowReader();
+        expected.setStream(getClass().getResourceAsStream("/Spreadsheet.xls"));
+        StreamingExcelRowReader actual = new StreamingExcelRowReader();
+        actual.setStream(getClass().getResourceAsStream("/Spreadsheet.xls"));
+        try {
+            ExcelRow row;
+            int rows = 0;
+            while ((row = expected.readLine()) != null) {
+                assertEquals(toValues(row), toValues(actual.readLine()));
+                rows++;
+            }
+            assertNull(actual.readLine());
+            assertTrue(rows > 5);
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    public void testStreamingXlsx() throws Exception {
+        File file = new File("target/streaming.xlsx");
+        writeXlsx(file);
+        StreamingExcelRowReader reader = new StreamingExcelRowReader();
+        reader.setFile(file);
+        reader.setSheetName("second");
+        try {
+            ExcelRow header = reader.readLine();
+            assertEquals(0, header.getRowNum());
+            assertEquals(Arrays.asList("name", "born"), toValues(header));
+            assertEquals(2, header.getCell(2).getColumnIndex());
+            ExcelRow row = reader.readLine();
+            assertEquals(2, row.getRowNum());
+            assertEquals("Roman", row.getCell(0).getStringValue());
+            assertEquals(Boolean.TRUE, row.getCell(1).getValue());
+            Calendar born = Calendar.getInstance();
+            born.setTime(row.getCell(2).getDateValue());
+            assertEquals(2010, born.get(Calendar.YEAR));
+            assertTrue(row.getCell(2).getValue() instanceof Date);
+            assertEquals("2", row.getCell(3).getStringValue());
+            assertEquals("x", row.getCell(4).getStringValue());
+            assertNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testStreamingXlsxImportJob() throws Exception {
+        File file = new File("target/streaming-job.xlsx");
+        writeXlsx(file);
+        final List<String> names = new ArrayList<String>();
+        LineImporterSpecAutoFields spec = new LineImporterSpecAutoFields() {
+            @Override
+            public void processRow(LineImportProcessor processor) throws ImporterException {
+                names.add(((ICell) processor.getCurrentRow().get("name")).getStringValue());
+            }
+        };
+        ExcelRowTokenizerFactory factory = new ExcelRowTokenizerFactory();
+        factory.setStreaming(true);
+        spec.setLineTokenizerFactory(factory);
+        final List<StreamingExcelRowReader> readers = new ArrayList<StreamingExcelRowReader>();
+        ImportJob job = new ImportJob() {
+            @Override
+            protected StreamingExcelRowReader createFileReader(ImporterSpec spec) throws IOException {
+                StreamingExcelRowReader reader = super.createFileReader(spec);
+                reader.setSheetName("second");
+                readers.add(reader);
+                return reader;
+            }
+        };
+        job.getControl().setFileName(file.getPath());
+        job.importFromStream(spec);
+        // the zip file is opened directly, not copied from the stream
+        assertEquals(file, readers.get(0).getFile());
+        assertEquals(Arrays.asList("Roman"), names);
+    }
+
+    private void writeXlsx(File file) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            addEntry(zip, "xl/workbook.xml", "<workbook xmlns:r=\"http://schemas.openxmlformats.org/" +
+                    "officeDocument/2006/relationships\"><sheets><sheet name=\"First\" sheetId=\"1\" " +
+                    "r:id=\"rId1\"/><sheet name=\"Second\" sheetId=\"2\" r:id=\"rId2\"/></sheets></workbook>");
+            addEntry(zip, "xl/_rels/workbook.xml.rels", "<Relationships>" +
+                    "<Relationship Id=\"rId1\" Target=\"worksheets/sheet1.xml\"/>" +
+                    "<Relationship Id=\"rId2\" Target=\"worksheets/sheet2.xml\"/></Relationships>");
+            addEntry(zip, "xl/sharedStrings.xml", "<sst><si><t>name</t></si><si><t>born</t></si>" +
+                    "<si><r><t>Ro</t></r><r><rPr><b/></rPr><t>man</t></r></si></sst>");
+            addEntry(zip, "xl/styles.xml", "<styleSheet><cellXfs><xf numFmtId=\"0\"/><xf numFmtId=\"14\"/>" +
+                    "</cellXfs></styleSheet>");
+            addEntry(zip, "xl/worksheets/sheet1.xml", "<worksheet><sheetData/></worksheet>");
+            addEntry(zip, "xl/worksheets/sheet2.xml", "<worksheet><sheetData>" +
+                    "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"C1\" t=\"s\"><v>1</v></c></row>" +
+                    "<row r=\"3\"><c r=\"A3\" t=\"s\"><v>2</v></c><c r=\"B3\" t=\"b\"><v>1</v></c>" +
+                    "<c r=\"C3\" s=\"1\"><v>40179</v></c><c r=\"D3\"><f>1+1</f><v>2</v></c>" +
+                    "<c r=\"E3\" t=\"inlineStr\"><is><t>x</t></is></c></row>" +
+                    "</sheetData></worksheet>");
+        } finally {
+            zip.close();
+        }
+    }
+
+    public void testStreamingGenerator() throws Exception {
+        final Calendar born = Calendar.getInstance();
+        born.clear();
+        born.set(2010, Calendar.JANUARY, 1);
+        File file = new File("target/generated.xlsx");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            new StreamingExcelGenerator() {
+                protected void generateSheets() throws Exception {
+                    Sheet sheet = createSheet("Persons");
+                    sheet.setColumnWidths(20, 12);
+                    sheet.writeRow(style(STYLE_boldHeader), "name", "born", "active", "count");
+                    final int[] count = {0};
+                    writeRows(sheet, new RowCallback() {
+                        public boolean nextRow(Sheet sheet) throws Exception {
+                            if (count[0] == 1000) return false;
+                            count[0]++;
+                            sheet.writeRow("<R&D> " + count[0], born, count[0] % 2 == 0, count[0]);
+                            return true;
+                        }
+                    });
+                    assertEquals(1001, sheet.getRowNum());
+                    createSheet("Empty");
+                }
+            }.generate(out);
+        } finally {
+            out.close();
+        }
+        StreamingExcelRowReader reader = new StreamingExcelRowReader();
+        reader.setFile(file);
+        reader.setSheetName("persons");
+        try {
+            assertEquals(Arrays.asList("name", "born", "active", "count"), toValues(reader.readLine()));
+            ExcelRow row = reader.readLine();
+            assertEquals(1, row.getRowNum());
+            assertEquals("<R&D> 1", row.getCell(0).getStringValue());
+            assertEquals(born.getTime(), row.getCell(1).getValue());
+            assertEquals(Boolean.FALSE, row.getCell(2).getValue());
+            assertEquals(1.0, row.getCell(3).getValue());
+            int rows = 2;
+            while (reader.readLine() != null) rows++;
+            assertEquals(1001, rows);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String xml) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(xml.getBytes("UTF-8"));
+        zip.closeEntry();
+    }
+
+    private static List<Object> toValues(ExcelRow row) {
+        List<Object> values = new ArrayList<Object>();
+        for (Iterator<? extends ExcelCell> cells = row.cellIterator(); cells.hasNext(); ) {
+            values.add(cells.next().getValue());
+        }
+        return values;
+    }
+
     public void testReadPOI() throws Exception {
         POIFSFileSystem fs =
                 new POIFSFileSystem(getClass().getResourceAsStream("/Spreadsheet.xls"));
@@ -115,6 +115,23 @@ COMMENT ON COLUMN Import_Control.end_time IS 'null when unfinished';
 COMMENT ON COLUMN Import_Control.status IS 'status (OK, FAILED, RUNNING)';
 COMMENT ON COLUMN Import_Control.import_name IS 'short description or symbolic name for the kind of import';
 
+/* ---------------------------------------------------------------------- */
+/* Table "Import_Checkpoint" */
+/* ---------------------------------------------------------------------- */
+
+CREATE TABLE Import_Checkpoint (
+    import_id INTEGER NOT NULL,
+    row_count INTEGER NOT NULL,
+    error_count INTEGER NOT NULL,
+    record_offset NUMBER(19) NOT NULL,
+    spec_state VARCHAR2(2000),
+    checkpoint_time TIMESTAMP NOT NULL,
+    CONSTRAINT Import_Checkpoint_pkey PRIMARY KEY (import_id) );
+
+
+COMMENT ON TABLE Import_Checkpoint IS 'last committed row of an import, to resume an interrupted import';
+COMMENT ON COLUMN Import_Checkpoint.record_offset IS 'byte offset of the last committed record or -1';
+
 /* ---------------------------------------------------------------------- */
 /* Table "Privilege" */
 /* ---------------------------------------------------------------------- */
@@ -181,6 +198,9 @@ ALTER TABLE Address ADD CONSTRAINT CV_Country_Address_FK_1
 ALTER TABLE CV_Postcode ADD CONSTRAINT CV_Country_CV_Postcode_FK_1
     FOREIGN KEY (country) REFERENCES CV_Country (code);
 
+ALTER TABLE Import_Checkpoint ADD CONSTRAINT Import_Checkpoint_FK
+    FOREIGN KEY (import_id) REFERENCES Import_Control (import_id) ON DELETE CASCADE;
+
 ALTER TABLE Role_Privilege ADD CONSTRAINT Privilege_Role_Privilege_FK_2
     FOREIGN KEY (privilege_id) REFERENCES Privilege (privilege_id) ON DELETE CASCADE;
 
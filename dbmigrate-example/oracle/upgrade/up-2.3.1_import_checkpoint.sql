@@ -0,0 +1,15 @@
+-- table for the checkpoints of dbimport (ImportController.saveCheckpoint)
+
+CREATE TABLE Import_Checkpoint (
+    import_id INTEGER NOT NULL,
+    row_count INTEGER NOT NULL,
+    error_count INTEGER NOT NULL,
+    record_offset NUMBER(19) NOT NULL,
+    spec_state VARCHAR2(2000),
+    checkpoint_time TIMESTAMP NOT NULL,
+    CONSTRAINT Import_Checkpoint_pkey PRIMARY KEY (import_id) );
+
+ALTER TABLE Import_Checkpoint ADD CONSTRAINT Import_Checkpoint_FK
+    FOREIGN KEY (import_id) REFERENCES Import_Control (import_id) ON DELETE CASCADE;
+
+-- @version(2.3.1)
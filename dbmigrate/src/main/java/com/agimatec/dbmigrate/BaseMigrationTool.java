@@ -13,6 +13,7 @@ import com.agimatec.jdbc.JdbcDatabase;
 import com.agimatec.jdbc.JdbcDatabaseFactory;
 import com.agimatec.jdbc.JdbcException;
 import com.agimatec.sql.meta.checking.DatabaseSchemaChecker;
+import com.agimatec.sql.script.BatchSQLScriptExecutor;
 import com.agimatec.sql.script.SQLScriptExecutor;
 import com.agimatec.sql.script.SQLScriptParser;
 import com.agimatec.sql.script.ScriptVisitor;
@@ -188,6 +189,35 @@ public abstract class BaseMigrationTool implements MigrationTool {
         iterateSQLScript(new SQLScriptExecutor(targetDatabase), scriptName, false);
     }
 
+    /**
+     * callback - parse the script and execute the DML statements in JDBC batches
+     * (size configurable with "batch-size", INSERTs with literals executed as PreparedStatements
+     * with "parameterize-inserts")
+     *
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void doSQLScriptBatch(String scriptName) throws IOException, SQLException {
+        iterateSQLScript(createBatchExecutor(), scriptName, true);
+    }
+
+    /**
+     * callback - parse the script and execute the DML statements in JDBC batches
+     *
+     * @throws Exception
+     */
+    public void doSQLScriptBatchIgnoreErrors(String scriptName) throws Exception {
+        iterateSQLScript(createBatchExecutor(), scriptName, false);
+    }
+
+    protected BatchSQLScriptExecutor createBatchExecutor() {
+        BatchSQLScriptExecutor executor = new BatchSQLScriptExecutor(targetDatabase);
+        executor.setBatchSize(getMigrateConfig().getInt("batch-size",
+            BatchSQLScriptExecutor.DEFAULT_BATCH_SIZE));
+        executor.setParameterizeInserts(getMigrateConfig().getBoolean("parameterize-inserts"));
+        return executor;
+    }
+
     /**
      * callback - read the script and execute each SQL line
      *
@@ -476,14 +506,22 @@ public abstract class BaseMigrationTool implements MigrationTool {
         Map env;
         parser.setEnvironment(env = getEnvironment());
         parser.setFailOnError(failOnError); // if error occurs, do NOT continue!
+        if (visitor instanceof BatchSQLScriptExecutor) {
+            ((BatchSQLScriptExecutor) visitor).setParser(parser);
+        }
 
         visitor = new ReconnectScriptVisitor(targetDatabase, visitor);
         visitor = new SubscriptCapableVisitor(visitor, parser);
         visitor = new UpdateVersionScriptVisitor(targetDatabase, visitor, dbVersionMeta);
-        visitor = new ConditionalScriptVisitor(visitor,
+        ConditionalScriptVisitor conditional = new ConditionalScriptVisitor(visitor,
             env); // must be outer visitor to prevent execution in case of false-conditions
 
-        parser.iterateSQLScript(visitor, scriptName);
+        try {
+            parser.iterateSQLScript(conditional, scriptName);
+            conditional.flush(); // the statements at the end of the script
+        } finally {
+            conditional.close(); // when the script has been aborted
+        }
     }
 
     public DBVersionMeta getDbVersionMeta() {
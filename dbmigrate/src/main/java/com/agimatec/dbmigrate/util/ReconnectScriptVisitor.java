@@ -27,6 +27,7 @@ public class ReconnectScriptVisitor extends ScriptVisitorDelegate {
     public int visitStatement(String statement) throws SQLException {
 
         if (statement.toUpperCase().startsWith("CONNECT ")) {
+            flush(); // before the connection is closed
             try {
                 reconnect(statement);
 
@@ -1,5 +1,6 @@
 package com.agimatec.dbmigrate.util;
 
+import com.agimatec.sql.script.BatchSQLScriptExecutor;
 import com.agimatec.sql.script.ScriptVisitor;
 
 import java.sql.SQLException;
@@ -36,4 +37,28 @@ public abstract class ScriptVisitorDelegate implements ScriptVisitor {
     public void doRollback() throws SQLException {
         if (nextVisitor != null) nextVisitor.doRollback();
     }
+
+    /**
+     * execute the statements collected by a {@link BatchSQLScriptExecutor} in the chain
+     * of visitors. call this before the database is accessed other than by the next visitor.
+     */
+    public void flush() throws SQLException {
+        if (nextVisitor instanceof ScriptVisitorDelegate) {
+            ((ScriptVisitorDelegate) nextVisitor).flush();
+        } else if (nextVisitor instanceof BatchSQLScriptExecutor) {
+            ((BatchSQLScriptExecutor) nextVisitor).flush();
+        }
+    }
+
+    /**
+     * release the resources of a {@link BatchSQLScriptExecutor} in the chain of visitors,
+     * also when the script has been aborted.
+     */
+    public void close() {
+        if (nextVisitor instanceof ScriptVisitorDelegate) {
+            ((ScriptVisitorDelegate) nextVisitor).close();
+        } else if (nextVisitor instanceof BatchSQLScriptExecutor) {
+            ((BatchSQLScriptExecutor) nextVisitor).close();
+        }
+    }
 }
@@ -46,6 +46,7 @@ public class SubscriptCapableVisitor extends ScriptVisitorDelegate {
             }
             return 0;
         } else if (statement.length() > 5 && statement.substring(0, 4).toLowerCase().equals("set ")) {
+            flush(); // with the options before SET
             doSetExpression(statement.substring(4));
             return 0;
         } else {
@@ -0,0 +1,483 @@
+package com.agimatec.sql.script;
+
+import com.agimatec.jdbc.JdbcDatabase;
+import com.agimatec.jdbc.JdbcException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Description: A {@link SQLScriptExecutor}, that collects consecutive DML statements
+ * (INSERT, UPDATE, DELETE, MERGE) and executes them as a JDBC batch.
+ * The batch is executed before any other statement, before commit and rollback, before comments
+ * with a directive (#if, #endif, #version, @version), when the batch size is reached
+ * and when {@link #flush()} is called at the end of the script.
+ * Optionally, the runs of INSERTs with the same shape are executed with a cached PreparedStatement
+ * and batched bind values (see {@link #setParameterizeInserts(boolean)}).<br>
+ * Errors are mapped to the statement of the batch, that failed, and handled by the parser
+ * as if the statement had been executed alone (so that failOnError works as before).
+ * Limitations: when the driver continues after a failed statement of a batch (e.g. MySQL with
+ * continueBatchOnError), the statements after it have been executed, even if failOnError stops
+ * the script. When the driver reports an error without the update counts of the batch,
+ * it is unknown which statements have been executed, so that the error is reported for the
+ * first statement of the batch and the statements are not executed again.</p>
+ */
+public class BatchSQLScriptExecutor extends SQLScriptExecutor {
+    private static final Logger myLogger = LoggerFactory.getLogger(BatchSQLScriptExecutor.class);
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String[] DML = {"INSERT", "UPDATE", "DELETE", "MERGE"};
+    private static final String[] DIRECTIVES = {"#if", "#endif", "#version", "@version"};
+
+    private SQLScriptParser parser;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean parameterizeInserts;
+    private final List<String> batch = new ArrayList<String>();
+    /** the values of the statements in the batch, when the batch is parameterized */
+    private final List<Object[]> binds = new ArrayList<Object[]>();
+    /** the positions of the statements in the batch, for the error messages of the parser */
+    private final List<String> positions = new ArrayList<String>();
+    /** the INSERT with bind variables of the statements in the batch or null */
+    private String template;
+
+    /* the cached statement of the last parameterized batch */
+    private PreparedStatement prepared;
+    private String preparedTemplate;
+    private Connection preparedConnection;
+    /* properties of the connection, that executes the batches */
+    private Connection inspectedConnection;
+    private boolean untypedStrings;
+    private boolean batchUpdates;
+
+    public BatchSQLScriptExecutor(JdbcDatabase aStore) {
+        super(aStore);
+    }
+
+    public BatchSQLScriptExecutor(JdbcDatabase aStore, SQLScriptParser aParser) {
+        super(aStore);
+        parser = aParser;
+    }
+
+    public SQLScriptParser getParser() {
+        return parser;
+    }
+
+    /**
+     * @param aParser - the parser, that handles the errors and affected rows of the
+     *                statements in the batch. without a parser, the first error is thrown.
+     */
+    public void setParser(SQLScriptParser aParser) {
+        parser = aParser;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param aBatchSize - max. number of statements in a batch
+     */
+    public void setBatchSize(int aBatchSize) {
+        batchSize = aBatchSize;
+    }
+
+    public boolean isParameterizeInserts() {
+        return parameterizeInserts;
+    }
+
+    /**
+     * @param aParameterizeInserts - true: the consecutive INSERTs with the same table, columns and
+     *                             NULL values are executed with a single PreparedStatement
+     *                             (see {@link InsertStatement}), the other statements as they are
+     */
+    public void setParameterizeInserts(boolean aParameterizeInserts) {
+        parameterizeInserts = aParameterizeInserts;
+    }
+
+    /**
+     * @return number of statements not executed yet
+     */
+    public int getPendingCount() {
+        return batch.size();
+    }
+
+    /**
+     * @return 0 for a statement, that has been added to the batch
+     *         (the affected rows are reported to the parser when the batch is executed)
+     */
+    public int visitStatement(String statement) throws SQLException {
+        if (!isBatchable(statement)) {
+            flush();
+            return super.visitStatement(statement);
+        }
+        mySQLLogger.info(statement);
+        if (getConnection() == null) {
+            throw new JdbcException("cannot exec: " + statement + ", because 'not connected to database'");
+        }
+        InsertStatement insert = parameterizeInserts ? InsertStatement.parse(statement) : null;
+        String shape = insert == null ? null : insert.getTemplate();
+        if (!batch.isEmpty() && (shape == null ? template != null : !shape.equals(template))) {
+            executePending();
+        }
+        template = shape;
+        batch.add(statement);
+        binds.add(insert == null ? null : insert.getValues());
+        positions.add(parser == null ? "" : parser.getStatementPosition());
+        if (batch.size() >= batchSize) executePending();
+        return 0;
+    }
+
+    public void visitComment(String theComment) throws SQLException {
+        if (isDirective(theComment)) executePending();
+        super.visitComment(theComment);
+    }
+
+    public void doCommit() throws SQLException {
+        executePending();
+        super.doCommit();
+    }
+
+    public void doRollback() throws SQLException {
+        executePending();
+        super.doRollback();
+    }
+
+    /**
+     * execute the statements collected so far and close the cached PreparedStatement.
+     *
+     * @throws SQLException - when the parser does not continue after the error of a statement
+     *                      (the error has already been handled for this statement)
+     */
+    public void flush() throws SQLException {
+        try {
+            executePending();
+        } finally {
+            closePrepared();
+        }
+    }
+
+    /**
+     * discard the statements not executed and close the cached PreparedStatement.
+     * call this when the script has been aborted (instead of {@link #flush()}).
+     */
+    public void close() {
+        batch.clear();
+        binds.clear();
+        positions.clear();
+        template = null;
+        closePrepared();
+    }
+
+    protected boolean isBatchable(String statement) {
+        int start = 0;
+        while (start < statement.length() && statement.charAt(start) <= ' ') start++;
+        for (String each : DML) {
+            if (statement.regionMatches(true, start, each, 0, each.length()) &&
+                    (statement.length() == start + each.length() ||
+                            !Character.isLetterOrDigit(statement.charAt(start + each.length())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean isDirective(String comment) {
+        for (String each : DIRECTIVES) {
+            if (comment.contains(each)) return true;
+        }
+        return false;
+    }
+
+    private void executePending() throws SQLException {
+        if (batch.isEmpty()) return;
+        Batch pending = new Batch(template, new ArrayList<String>(batch), new ArrayList<Object[]>(binds),
+                new ArrayList<String>(positions));
+        batch.clear();
+        binds.clear();
+        positions.clear();
+        template = null;
+        if (getConnection() == null) {
+            throw new JdbcException("cannot exec batch, because 'not connected to database'");
+        }
+        execute(pending);
+    }
+
+    private void execute(Batch pending) throws SQLException {
+        inspect(getConnection());
+        if (!batchUpdates) {
+            executeSingle(pending);
+        } else if (pending.shape == null) {
+            executeStatements(pending);
+        } else {
+            executePrepared(pending);
+        }
+    }
+
+    private void executeStatements(Batch pending) throws SQLException {
+        int[] counts = null;
+        SQLException failure = null;
+        boolean added = false;
+        Statement stmt = getConnection().createStatement();
+        try {
+            for (String each : pending.statements) {
+                stmt.addBatch(each);
+            }
+            added = true;
+            counts = stmt.executeBatch();
+        } catch (SQLException ex) {
+            failure = ex;
+        } finally {
+            stmt.close();
+        }
+        if (failure instanceof BatchUpdateException) {
+            handleBatchError(pending, (BatchUpdateException) failure);
+        } else if (failure != null && (!added || failure instanceof SQLFeatureNotSupportedException)) {
+            // the batch has not been executed
+            myLogger.debug("cannot execute batch, executing the statements one by one", failure);
+            executeSingle(pending);
+        } else if (failure != null) {
+            batchFailed(pending, failure);
+        } else {
+            affected(pending.statements, counts);
+        }
+    }
+
+    private void executePrepared(Batch pending) throws SQLException {
+        PreparedStatement stmt;
+        try {
+            stmt = prepare(pending.shape);
+        } catch (SQLException ex) {
+            myLogger.debug("cannot prepare " + pending.shape + ", executing the literal statements", ex);
+            executeStatements(pending.literal());
+            return;
+        }
+        int[] counts = null;
+        SQLException failure = null;
+        boolean added = false;
+        try {
+            stmt.clearBatch();
+            for (Object[] each : pending.values) {
+                bind(stmt, each);
+                stmt.addBatch();
+            }
+            added = true;
+            counts = stmt.executeBatch();
+        } catch (SQLException ex) {
+            failure = ex;
+        }
+        if (failure instanceof BatchUpdateException) {
+            handleBatchError(pending, (BatchUpdateException) failure);
+        } else if (failure != null && (!added || failure instanceof SQLFeatureNotSupportedException)) {
+            // the values cannot be bound or the batch has not been executed
+            myLogger.debug("cannot execute " + pending.shape + ", executing the literal statements",
+                    failure);
+            closePrepared();
+            executeStatements(pending.literal());
+        } else if (failure != null) {
+            batchFailed(pending, failure);
+        } else {
+            affected(pending.statements, counts);
+        }
+    }
+
+    /**
+     * read the properties of the connection once
+     */
+    private void inspect(Connection connection) throws SQLException {
+        if (connection == inspectedConnection) return;
+        DatabaseMetaData meta = connection.getMetaData();
+        // postgres does not convert varchar parameters like string literals (e.g. for a date column)
+        untypedStrings = meta != null && "PostgreSQL".equals(meta.getDatabaseProductName());
+        batchUpdates = meta == null || meta.supportsBatchUpdates();
+        inspectedConnection = connection;
+    }
+
+    /**
+     * @return the cached statement, when the shape has been prepared on this connection
+     */
+    private PreparedStatement prepare(String shape) throws SQLException {
+        if (prepared != null && shape.equals(preparedTemplate) && preparedConnection == getConnection()) {
+            return prepared;
+        }
+        closePrepared();
+        Connection connection = getConnection();
+        prepared = connection.prepareStatement(shape);
+        preparedTemplate = shape;
+        preparedConnection = connection;
+        return prepared;
+    }
+
+    private void bind(PreparedStatement stmt, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof String) {
+                if (untypedStrings) {
+                    stmt.setObject(i + 1, value, Types.OTHER);
+                } else {
+                    stmt.setString(i + 1, (String) value);
+                }
+            } else if (value instanceof Long) {
+                stmt.setLong(i + 1, (Long) value);
+            } else if (value instanceof BigDecimal) {
+                stmt.setBigDecimal(i + 1, (BigDecimal) value);
+            } else if (value instanceof Date) {
+                stmt.setDate(i + 1, (Date) value);
+            } else {
+                stmt.setTimestamp(i + 1, (Timestamp) value);
+            }
+        }
+    }
+
+    private void closePrepared() {
+        if (prepared == null) return;
+        try {
+            prepared.close();
+        } catch (SQLException ex) {
+            myLogger.debug("cannot close " + preparedTemplate, ex);
+        }
+        prepared = null;
+        preparedTemplate = null;
+        preparedConnection = null;
+    }
+
+    private void handleBatchError(Batch pending, BatchUpdateException ex) throws SQLException {
+        int[] counts = ex.getUpdateCounts();
+        if (counts == null) counts = new int[0];
+        SQLException cause = ex.getNextException();
+        List<String> statements = pending.statements;
+        if (counts.length < statements.size()) {
+            // the driver stopped at the statement that failed
+            for (int i = 0; i < counts.length; i++) {
+                affected(counts[i], statements.get(i));
+            }
+            error(cause == null ? ex : cause, pending, counts.length);
+            int rest = counts.length + 1;
+            if (rest < statements.size()) {
+                execute(pending.subList(rest));
+            }
+        } else {
+            // the driver continued after the statements that failed: all statements have been
+            // executed, even when the parser does not continue after the first error
+            for (int i = 0; i < statements.size(); i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    error(cause == null ? ex : cause, pending, i);
+                    if (cause != null) cause = cause.getNextException();
+                } else {
+                    affected(counts[i], statements.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * the batch failed without the update counts: it is unknown, which statements have been
+     * executed, so that they are not executed again.
+     */
+    private void batchFailed(Batch pending, SQLException ex) throws SQLException {
+        myLogger.warn("batch of " + pending.statements.size() +
+                " statements failed, the statements may have been executed partially");
+        error(ex, pending, 0);
+    }
+
+    private void executeSingle(Batch pending) throws SQLException {
+        for (int i = 0; i < pending.statements.size(); i++) {
+            String each = pending.statements.get(i);
+            int count;
+            Statement stmt = getConnection().createStatement();
+            try {
+                count = stmt.executeUpdate(each);
+            } catch (SQLException ex) {
+                error(ex, pending, i);
+                continue;
+            } finally {
+                stmt.close();
+            }
+            affected(count, each);
+        }
+    }
+
+    private void affected(List<String> statements, int[] counts) {
+        for (int i = 0; i < counts.length && i < statements.size(); i++) {
+            affected(counts[i], statements.get(i));
+        }
+    }
+
+    private void affected(int count, String statement) {
+        if (count > 0 && parser != null) parser.handleAffectedRow(count, statement);
+    }
+
+    /**
+     * let the parser handle the error of the statement at the index of the batch.
+     *
+     * @throws HandledException when the parser does not continue
+     */
+    private void error(SQLException ex, Batch pending, int index) throws SQLException {
+        if (parser == null) throw ex;
+        String statement = pending.statements.get(index);
+        try {
+            parser.handleError(ex, statement, pending.positions.get(index));
+        } catch (SQLException handled) {
+            throw new HandledException(statement, handled);
+        }
+    }
+
+    /**
+     * statements executed together.
+     */
+    private static final class Batch {
+        /** the prepared INSERT of the statements or null */
+        final String shape;
+        final List<String> statements;
+        /** the values of the statements or null */
+        final List<Object[]> values;
+        final List<String> positions;
+
+        Batch(String shape, List<String> statements, List<Object[]> values, List<String> positions) {
+            this.shape = shape;
+            this.statements = statements;
+            this.values = values;
+            this.positions = positions;
+        }
+
+        Batch subList(int from) {
+            return new Batch(shape, statements.subList(from, statements.size()),
+                    values.subList(from, values.size()), positions.subList(from, positions.size()));
+        }
+
+        /** @return the literal statements */
+        Batch literal() {
+            return new Batch(null, statements, values, positions);
+        }
+    }
+
+    /**
+     * the error of a statement in a batch, that has already been handled by the parser.
+     */
+    static final class HandledException extends SQLException {
+        private final String statement;
+
+        HandledException(String statement, SQLException cause) {
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+            this.statement = statement;
+        }
+
+        /**
+         * @return the statement, that failed
+         */
+        public String getStatement() {
+            return statement;
+        }
+    }
+}
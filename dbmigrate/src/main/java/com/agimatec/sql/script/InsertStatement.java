@@ -0,0 +1,255 @@
+package com.agimatec.sql.script;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Description: An INSERT statement with literal values, split into the statement with
+ * bind variables (the shape of the INSERT) and the values, so that the INSERTs with the same shape
+ * can be executed with the same PreparedStatement.<br>
+ * Only the form "INSERT INTO table [(columns)] VALUES (literals)" is supported. The literals can be
+ * strings, numbers, DATE '...' and TIMESTAMP '...'. NULL is kept in the statement, because
+ * the type of the column is not known.</p>
+ */
+public class InsertStatement {
+    private static final Object NULL = new Object();
+
+    private final String template;
+    private final Object[] values;
+
+    private InsertStatement(String template, Object[] values) {
+        this.template = template;
+        this.values = values;
+    }
+
+    /**
+     * @return the statement or null, when the sql cannot be parsed safely
+     */
+    public static InsertStatement parse(String sql) {
+        return new Scanner(sql).parse();
+    }
+
+    /**
+     * @return the statement with a ? for each value
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the values (String, Long, BigDecimal, Date or Timestamp) in the order of the ?s
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    public String toString() {
+        return template;
+    }
+
+    private static final class Scanner {
+        private final String sql;
+        private int pos;
+
+        Scanner(String sql) {
+            this.sql = sql;
+        }
+
+        InsertStatement parse() {
+            if (!keyword("INSERT") || !keyword("INTO")) return null;
+            String table = name();
+            if (table == null) return null;
+            StringBuilder template = new StringBuilder(sql.length());
+            template.append("INSERT INTO ").append(table);
+            int columns = -1;
+            if (symbol('(')) {
+                template.append(" (");
+                columns = 0;
+                do {
+                    String column = name();
+                    if (column == null) return null;
+                    if (columns++ > 0) template.append(", ");
+                    template.append(column);
+                } while (symbol(','));
+                if (!symbol(')')) return null;
+                template.append(')');
+            }
+            if (!keyword("VALUES") || !symbol('(')) return null;
+            template.append(" VALUES (");
+            List<Object> values = new ArrayList<Object>();
+            int count = 0;
+            do {
+                Object value = literal();
+                if (value == null) return null;
+                if (count++ > 0) template.append(", ");
+                if (value == NULL) {
+                    template.append("NULL");
+                } else {
+                    template.append('?');
+                    values.add(value);
+                }
+            } while (symbol(','));
+            if (!symbol(')')) return null;
+            skipSpace();
+            // columns and values must match, otherwise the database reports the error
+            if (pos < sql.length() || (columns >= 0 && columns != count)) return null;
+            template.append(')');
+            return new InsertStatement(template.toString(), values.toArray());
+        }
+
+        private void skipSpace() {
+            while (pos < sql.length() && Character.isWhitespace(sql.charAt(pos))) pos++;
+        }
+
+        private boolean isIdentifierChar(int index) {
+            if (index >= sql.length()) return false;
+            char c = sql.charAt(index);
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+        }
+
+        private boolean keyword(String word) {
+            skipSpace();
+            if (sql.regionMatches(true, pos, word, 0, word.length()) &&
+                    !isIdentifierChar(pos + word.length())) {
+                pos += word.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean symbol(char c) {
+            skipSpace();
+            if (pos < sql.length() && sql.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return a (qualified, quoted) name or null
+         */
+        private String name() {
+            skipSpace();
+            int start = pos;
+            do {
+                if (pos < sql.length() && sql.charAt(pos) == '"') {
+                    int end = sql.indexOf('"', pos + 1);
+                    if (end < 0) return null;
+                    pos = end + 1;
+                } else {
+                    int from = pos;
+                    while (isIdentifierChar(pos)) pos++;
+                    if (pos == from) return null;
+                }
+            } while (pos < sql.length() && sql.charAt(pos) == '.' && ++pos > 0);
+            return sql.substring(start, pos);
+        }
+
+        /**
+         * @return the value, NULL or null when the literal is not supported
+         */
+        @SuppressWarnings("deprecation")
+        private Object literal() {
+            skipSpace();
+            if (pos >= sql.length()) return null;
+            char c = sql.charAt(pos);
+            if (c == '\'') return string();
+            if (c == '-' || c == '+' || c == '.' || Character.isDigit(c)) return number();
+            if (keyword("NULL")) return NULL;
+            try {
+                if (keyword("DATE")) {
+                    skipSpace();
+                    String date = pos < sql.length() && sql.charAt(pos) == '\'' ? string() : null;
+                    if (date == null) return null;
+                    Date value = Date.valueOf(date.trim());
+                    return unchanged(date.trim(), value.getYear() + 1900, value.getMonth() + 1,
+                            value.getDate()) ? value : null;
+                } else if (keyword("TIMESTAMP")) {
+                    skipSpace();
+                    String timestamp = pos < sql.length() && sql.charAt(pos) == '\'' ? string() : null;
+                    if (timestamp == null) return null;
+                    Timestamp value = Timestamp.valueOf(timestamp.trim());
+                    return unchanged(timestamp.trim(), value.getYear() + 1900, value.getMonth() + 1,
+                            value.getDate(), value.getHours(), value.getMinutes(), value.getSeconds()) ?
+                            value : null;
+                }
+            } catch (IllegalArgumentException ex) {
+                return null; // not in JDBC format
+            }
+            return null;
+        }
+
+        /**
+         * valueOf() is lenient: a day after the end of the month and a local time in the gap
+         * of a daylight saving time change are moved (e.g. '2008-03-30 02:30:00' to 03:30 in
+         * Europe/Berlin). Such literals are kept in the statement, so that the database
+         * interprets them.
+         *
+         * @param fields - year, month, day [, hour, minute, second] of the value
+         * @return true when the value has the fields of the literal
+         */
+        private static boolean unchanged(String literal, int... fields) {
+            String[] parts = literal.split("[-: .]");
+            for (int i = 0; i < fields.length; i++) {
+                if (Integer.parseInt(parts[i]) != fields[i]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return the string, null when not terminated or when it contains a backslash
+         *         (an escape char for some databases)
+         */
+        private String string() {
+            StringBuilder buf = new StringBuilder();
+            pos++;
+            while (true) {
+                int end = sql.indexOf('\'', pos);
+                if (end < 0) return null;
+                buf.append(sql, pos, end);
+                pos = end + 1;
+                if (pos < sql.length() && sql.charAt(pos) == '\'') {
+                    buf.append('\'');
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            return buf.indexOf("\\") >= 0 ? null : buf.toString();
+        }
+
+        private Object number() {
+            int start = pos;
+            if (sql.charAt(pos) == '-' || sql.charAt(pos) == '+') pos++;
+            int digits = skipDigits();
+            boolean integer = true;
+            if (pos < sql.length() && sql.charAt(pos) == '.') {
+                pos++;
+                digits += skipDigits();
+                integer = false;
+            }
+            if (digits == 0) return null;
+            if (pos < sql.length() && (sql.charAt(pos) == 'e' || sql.charAt(pos) == 'E')) {
+                pos++;
+                if (pos < sql.length() && (sql.charAt(pos) == '-' || sql.charAt(pos) == '+')) pos++;
+                if (skipDigits() == 0) return null;
+                integer = false;
+            }
+            if (isIdentifierChar(pos)) return null;
+            String number = sql.substring(start, pos);
+            if (number.charAt(0) == '+') number = number.substring(1);
+            if (integer && number.length() < 19) return Long.valueOf(number);
+            return new BigDecimal(number);
+        }
+
+        private int skipDigits() {
+            int start = pos;
+            while (pos < sql.length() && Character.isDigit(sql.charAt(pos))) pos++;
+            return pos - start;
+        }
+    }
+}
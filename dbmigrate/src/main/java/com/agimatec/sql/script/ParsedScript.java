@@ -0,0 +1,129 @@
+package com.agimatec.sql.script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>Description: The events (statements, commit, rollback, comments) of a script parsed by
+ * the {@link SQLScriptParser}, as they have been visited. The texts are stored before
+ * the environment properties are replaced, so that the events can be replayed with
+ * any environment (see {@link SQLScriptParser#replay(ScriptVisitor, ParsedScript)}).</p>
+ */
+public class ParsedScript {
+    public static final byte STATEMENT = 1;
+    public static final byte COMMIT = 2;
+    public static final byte ROLLBACK = 3;
+    /** text of the comment without the leading -- */
+    public static final byte LINE_COMMENT = 4;
+    /** text of the comment without the enclosing slash-star and star-slash */
+    public static final byte BLOCK_COMMENT = 5;
+
+    private static final int MAGIC = 0x53514c43; // "SQLC"
+    private static final int VERSION = 2;
+    /** texts up to this size are read at once, larger texts as far as the data is available */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private byte[] types = new byte[64];
+    private String[] texts = new String[64];
+    private int size;
+
+    public void add(byte type, String text) {
+        if (size == types.length) {
+            byte[] largerTypes = new byte[size * 2];
+            System.arraycopy(types, 0, largerTypes, 0, size);
+            types = largerTypes;
+            String[] largerTexts = new String[size * 2];
+            System.arraycopy(texts, 0, largerTexts, 0, size);
+            texts = largerTexts;
+        }
+        types[size] = type;
+        texts[size] = text;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return the text of the event (may be null for a comment that is not closed)
+     */
+    public String getText(int index) {
+        return texts[index];
+    }
+
+    /**
+     * write the events followed by their checksum
+     */
+    public void write(DataOutputStream out) throws IOException {
+        CRC32 checksum = new CRC32();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, checksum));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            data.writeByte(types[i]);
+            if (texts[i] == null) {
+                data.writeInt(-1);
+            } else {
+                byte[] bytes = texts[i].getBytes("UTF-8");
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+        }
+        data.flush();
+        out.writeLong(checksum.getValue());
+    }
+
+    /**
+     * @throws IOException when the data has not been written by {@link #write(DataOutputStream)}
+     *                     of this version or is incomplete or corrupt (checksum mismatch)
+     */
+    public static ParsedScript read(DataInputStream in) throws IOException {
+        CRC32 checksum = new CRC32();
+        DataInputStream data = new DataInputStream(new CheckedInputStream(in, checksum));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unknown format");
+        }
+        ParsedScript script = new ParsedScript();
+        int count = data.readInt();
+        if (count < 0) throw new IOException("Corrupt data: " + count + " events");
+        for (int i = 0; i < count; i++) {
+            byte type = data.readByte();
+            if (type < STATEMENT || type > BLOCK_COMMENT) throw new IOException("Unknown event " + type);
+            int length = data.readInt();
+            if (length < -1) throw new IOException("Corrupt data: text length " + length);
+            script.add(type, length < 0 ? null : readText(data, length));
+        }
+        if (in.readLong() != checksum.getValue()) throw new IOException("Checksum mismatch");
+        return script;
+    }
+
+    /**
+     * the length may be corrupt, so that a large text is read in chunks until the end of the data
+     */
+    private static String readText(DataInputStream in, int length) throws IOException {
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+            if (remaining < chunk.length) chunk = new byte[remaining];
+            in.readFully(chunk);
+            bytes.write(chunk);
+        }
+        return bytes.toString("UTF-8");
+    }
+}
@@ -35,7 +35,7 @@ public class SQLScriptExecutor implements ScriptVisitor {
         }
     }
 
-    public void visitComment(String theComment) {
+    public void visitComment(String theComment) throws SQLException {
         log("Comment: " + theComment);
     }
 
@@ -5,6 +5,7 @@ import com.agimatec.commons.util.ClassUtils;
 import com.agimatec.commons.util.PropertyReplacer;
 import com.agimatec.jdbc.JdbcException;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +39,19 @@ public class SQLScriptParser {
     private static final Logger myClassLogger = LoggerFactory.getLogger(SQLScriptParser.class);
     private Logger myLog = myClassLogger;
     private boolean myFailOnError = false;
+    private boolean mySpanMode = false;
+    /**
+     * in span mode - the statement being parsed
+     */
+    private StatementSpan myStatementSpan;
+    /**
+     * the position of a statement visited before, while its error is handled
+     */
+    private String myErrorPosition;
+    /**
+     * optional - cache for parsed scripts
+     */
+    private ScriptCache myScriptCache = ScriptCache.getDefault();
     private final String myScriptRoot;
     /**
      * optional - environment map
@@ -69,6 +83,11 @@ public class SQLScriptParser {
 
     private static final String[] PROCEDURE_SEPARATORS = {"\n", "\r"};
 
+    /**
+     * content of the current line
+     */
+    private static final int LINE_EMPTY = 0, LINE_SLASH = 1, LINE_OTHER = 2;
+
     public SQLScriptParser(String aScriptRoot, Logger aLog) {
         myLog = aLog;
         myScriptRoot = aScriptRoot;
@@ -94,6 +113,62 @@ public class SQLScriptParser {
         myFailOnError = aFailOnError;
     }
 
+    /**
+     * default = false
+     * true: scripts are loaded completely and the statements are recorded as spans
+     * over the script text (see {@link #iterateSQLSpans(ScriptVisitor, CharSequence)}).
+     * false: scripts are parsed while they are read.
+     *
+     * @param aSpanMode - true/false
+     */
+    public void setSpanMode(boolean aSpanMode) {
+        mySpanMode = aSpanMode;
+    }
+
+    public boolean isSpanMode() {
+        return mySpanMode;
+    }
+
+    /**
+     * default = the directory of system property {@value ScriptCache#SYSTEM_PROPERTY} or null.
+     * When set, the scripts parsed by iterateSQLScript() are stored in the cache and
+     * unchanged scripts are replayed from the cache.
+     *
+     * @param aScriptCache - null or a cache
+     */
+    public void setScriptCache(ScriptCache aScriptCache) {
+        myScriptCache = aScriptCache;
+    }
+
+    public ScriptCache getScriptCache() {
+        return myScriptCache;
+    }
+
+    /**
+     * @return the options, that are part of the key of a script in the cache
+     */
+    protected String getCacheOptions() {
+        return "iterateSQLScript/1";
+    }
+
+    /**
+     * @return in span mode, while a statement is visited: the spans of the statement
+     *         with its line and column in the script. null otherwise
+     */
+    public StatementSpan getStatementSpan() {
+        return myStatementSpan;
+    }
+
+    /**
+     * @return " at line x, column y" in span mode, "" otherwise
+     */
+    protected String getStatementPosition() {
+        if (myErrorPosition != null) return myErrorPosition;
+        StatementSpan span = getStatementSpan();
+        if (span == null || span.getSpanCount() == 0) return "";
+        return " at line " + span.getLine() + ", column " + span.getColumn();
+    }
+
     protected void handleAffectedRow(int affectedRows, String command) {
         if (getLog().isInfoEnabled()) {
             getLog().info(affectedRows + " rows affected");
@@ -101,14 +176,28 @@ public class SQLScriptParser {
     }
 
     protected void handleError(SQLException ex, String command) throws SQLException {
-        getLog().error("SQL-EXCEPTION: " + ex.getMessage());
+        getLog().error("SQL-EXCEPTION" + getStatementPosition() + ": " + ex.getMessage());
         if (myFailOnError) {
             throw ex;
         }
     }
 
+    /**
+     * handle the error of a statement, that has been visited before (e.g. executed in a batch)
+     *
+     * @param position - the {@link #getStatementPosition()} when the statement was visited
+     */
+    void handleError(SQLException ex, String command, String position) throws SQLException {
+        myErrorPosition = position;
+        try {
+            handleError(ex, command);
+        } finally {
+            myErrorPosition = null;
+        }
+    }
+
     protected void handleError(JdbcException ex, String command) throws JdbcException {
-        getLog().error("JDBC-EXCEPTION: " + ex.getMessage());
+        getLog().error("JDBC-EXCEPTION" + getStatementPosition() + ": " + ex.getMessage());
         if (myFailOnError) {
             throw ex;
         }
@@ -168,7 +257,7 @@ public class SQLScriptParser {
             getLog().info("Parsing " + path + " ... ");
         }
         try {
-            iterateSQL(visitor, input);
+            iterateScript(visitor, input);
         } finally {
             input.close();
         }
@@ -325,7 +414,7 @@ public class SQLScriptParser {
         }
         Reader input = getURLReader(url);
         try {
-            iterateSQL(visitor, input);
+            iterateScript(visitor, input);
         } finally {
             input.close();
         }
@@ -348,8 +437,91 @@ public class SQLScriptParser {
      */
     public void iterateSQL(ScriptVisitor visitor, String aSqls)
             throws SQLException, IOException {
-        Reader input = new StringReader(aSqls);
-        iterateSQL(visitor, input);
+        if (mySpanMode) {
+            iterateSQLSpans(visitor, aSqls);
+        } else {
+            Reader input = new StringReader(aSqls);
+            iterateSQL(visitor, input);
+        }
+    }
+
+    /**
+     * parse and visit the statements in the given script text in span mode:
+     * the statements are recorded as spans (offset, length) over the text and
+     * the statement string is built once, when it is visited.
+     * While a statement is visited, {@link #getStatementSpan()} returns its spans and position.
+     *
+     * @param script  - a SQLScript, e.g. a String or a CharBuffer of a mapped file
+     * @param visitor - the visitor to do something with the parsed statements
+     */
+    public void iterateSQLSpans(ScriptVisitor visitor, CharSequence script)
+            throws SQLException, IOException {
+        parseSpans(new SpanParseState(visitor, new StatementSpan(script)), script);
+    }
+
+    private void parseSpans(SpanParseState state, CharSequence script)
+            throws SQLException, IOException {
+        StatementSpan outer = myStatementSpan; // subscripts are parsed while visiting a statement
+        myStatementSpan = state.span;
+        try {
+            parseSQL(state, new CharSequenceReader(script));
+        } finally {
+            myStatementSpan = outer;
+        }
+    }
+
+    /**
+     * parse and visit the script, or replay it from the script cache
+     */
+    private void iterateScript(ScriptVisitor visitor, Reader input)
+            throws SQLException, IOException {
+        if (myScriptCache == null) {
+            iterateSQL(visitor, input);
+            return;
+        }
+        String script = IOUtils.toString(input);
+        String key = myScriptCache.key(script, getCacheOptions());
+        ParsedScript parsed = myScriptCache.load(key);
+        if (parsed != null) {
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Replaying from cache " + key);
+            }
+            replay(visitor, parsed);
+        } else {
+            parsed = new ParsedScript();
+            if (mySpanMode) {
+                SpanParseState state = new SpanParseState(visitor, new StatementSpan(script));
+                state.recording = parsed;
+                parseSpans(state, script);
+            } else {
+                ParseState state = new ParseState(visitor);
+                state.recording = parsed;
+                parseSQL(state, new StringReader(script));
+            }
+            myScriptCache.store(key, parsed);
+        }
+    }
+
+    /**
+     * visit the events of a parsed script (e.g. from the script cache), with the
+     * environment properties of this parser replaced.
+     */
+    public void replay(ScriptVisitor visitor, ParsedScript script) throws SQLException {
+        ParseState state = new ParseState(visitor);
+        for (int i = 0; i < script.size(); i++) {
+            String text = script.getText(i);
+            switch (script.getType(i)) {
+                case ParsedScript.STATEMENT:
+                    state.execute(text);
+                    break;
+                case ParsedScript.COMMIT:
+                case ParsedScript.ROLLBACK:
+                    state.visitSql(text);
+                    break;
+                default:
+                    state.visitComment(script.getType(i), text);
+            }
+        }
     }
 
     /* * * * * * * * * * * * *
@@ -365,7 +537,11 @@ public class SQLScriptParser {
      */
     public void iterateSQL(ScriptVisitor visitor, Reader input)
             throws SQLException, IOException {
-        parseSQL(new ParseState(visitor), input);
+        if (mySpanMode) {
+            iterateSQLSpans(visitor, IOUtils.toString(input));
+        } else {
+            parseSQL(new ParseState(visitor), input);
+        }
     }
 
     /* other parse loop */
@@ -373,6 +549,7 @@ public class SQLScriptParser {
             throws IOException, SQLException {
         final WordTokenizer tokens =
                 new WordTokenizer(input, SQL_SEPARATORS, true, false);
+        state.tokens = tokens;
         String token = tokens.nextToken();
         int procMode =
                 1; // 1 = sep. before (prepare pro), 2 = "BEGIN" detected afterwards, 0 = other (no proc)
@@ -463,8 +640,7 @@ public class SQLScriptParser {
             throws IOException, SQLException {
         WordTokenizer tokens =
                 new WordTokenizer(parent, new String[]{COMMENT_MULTILINE_END}, false, true);
-        state.visitor.visitComment(COMMENT_MULTILINE_BEGIN + finish(tokens.nextToken()) +
-                COMMENT_MULTILINE_END);
+        state.visitComment(ParsedScript.BLOCK_COMMENT, tokens.nextToken());
         state.needsBlank = true;
         tokens.setReturnTokens(true);
         tokens.nextToken();
@@ -475,7 +651,7 @@ public class SQLScriptParser {
             throws IOException, SQLException {
         WordTokenizer tokens =
                 new WordTokenizer(parent, new String[]{"\n", "\r"}, true, true);
-        state.visitor.visitComment(COMMENT_LINE + finish(tokens.nextToken()));
+        state.visitComment(ParsedScript.LINE_COMMENT, tokens.nextToken());
         state.needsBlank = true;
         parent.continueFrom(tokens);
     }
@@ -491,8 +667,8 @@ public class SQLScriptParser {
             String token = tokens.nextToken();
             while (token != null) {
                 if (LITERAL.equals(token)) {
-                    int next = tokens.nextChar();
                     state.appendSql(LITERAL);
+                    int next = tokens.nextChar();
                     if (LITERAL.charAt(0) != (char) next) { // end of Literal
                         return next;
                     }
@@ -525,12 +701,20 @@ public class SQLScriptParser {
     class ParseState {
         final ScriptVisitor visitor;
         StringBuilder sqlBuf;
-        private StringBuilder currentLine;
+        /**
+         * what the current line contains (after trim): nothing, only "/" or something else
+         */
+        private int currentLine;
         boolean needsBlank;
+        WordTokenizer tokens;
+        /**
+         * optional - to record the visited events for the script cache
+         */
+        ParsedScript recording;
 
         ParseState(ScriptVisitor aVisitor) {
             visitor = aVisitor;
-            newBuf();
+            sqlBuf = new StringBuilder();
             newLine();
         }
 
@@ -540,31 +724,48 @@ public class SQLScriptParser {
         }
 
         void newLine() {
-            currentLine = new StringBuilder();
+            currentLine = LINE_EMPTY;
         }
 
         void appendSql(String token) {
-            if (needsBlank && sqlBuf.length() > 0 &&
-                    sqlBuf.charAt(sqlBuf.length() - 1) != ' ' && token.charAt(0) != ' ') {
-                sqlBuf.append(' ');
+            if (needsBlank && !isEmpty() && lastChar() != ' ' && token.charAt(0) != ' ') {
+                appendText(" ");
             }
             needsBlank = false;
-            sqlBuf.append(token);
+            appendText(token);
         }
 
         void appendPlain(String token) {
-            currentLine.append(token);
+            appendLine(token);
             needsBlank = false;
-            sqlBuf.append(token);
+            appendText(token);
         }
 
         void appendCurrentSql(String token) {
-            currentLine.append(token);
+            appendLine(token);
             if (!isSlashLine()) {
                 appendSql(token);
             }
         }
 
+        private void appendLine(String token) {
+            for (int i = 0; i < token.length() && currentLine != LINE_OTHER; i++) {
+                char c = token.charAt(i);
+                if (c > ' ') {
+                    currentLine = (currentLine == LINE_EMPTY && c == SLASH.charAt(0)) ?
+                            LINE_SLASH : LINE_OTHER;
+                }
+            }
+        }
+
+        void appendText(String token) {
+            sqlBuf.append(token);
+        }
+
+        char lastChar() {
+            return sqlBuf.charAt(sqlBuf.length() - 1);
+        }
+
         boolean isEmpty() {
             return sqlBuf.length() == 0;
         }
@@ -573,21 +774,18 @@ public class SQLScriptParser {
             return sqlBuf.toString();
         }
 
+        String trimmedSql() {
+            return sql().trim();
+        }
+
         boolean isSlashLine() {
-            return currentLine.toString().trim().equals(SLASH);
+            return currentLine == LINE_SLASH;
         }
 
         boolean procNewLine() throws SQLException {
             boolean result = false;
             if (isSlashLine()) { // a line with only "/" terminates always!
-                final String sql = sql();
-                try {
-                    execSQL(sql);
-                } catch (SQLException ex) {
-                    handleError(ex, sql);
-                } catch (JdbcException ex) {
-                    handleError(ex, sql);
-                }
+                execute(sql());
                 newBuf();
                 result = true;
             }
@@ -597,27 +795,66 @@ public class SQLScriptParser {
 
         /* decide if statement, commit or rollback */
         void visitSql() throws SQLException {
-            String sql = sql().trim();
+            visitSql(trimmedSql());
+            newBuf();
+        }
+
+        void visitSql(String sql) throws SQLException {
             try {
                 if ("COMMIT".equalsIgnoreCase(sql)) {
+                    record(ParsedScript.COMMIT, sql);
                     visitor.doCommit();
                 } else if ("ROLLBACK".equalsIgnoreCase(sql)) {
+                    record(ParsedScript.ROLLBACK, sql);
                     visitor.doRollback();
                 } else {
                     execSQL(sql);
                 }
             } catch (SQLException ex) {
+                handleStatementError(ex, sql);
+            } catch (JdbcException ex) {
                 handleError(ex, sql);
+            }
+        }
+
+        void execute(String sql) throws SQLException {
+            try {
+                execSQL(sql);
+            } catch (SQLException ex) {
+                handleStatementError(ex, sql);
             } catch (JdbcException ex) {
                 handleError(ex, sql);
             }
-            newBuf();
+        }
+
+        /**
+         * @param type - ParsedScript.LINE_COMMENT or BLOCK_COMMENT
+         * @param text - the comment without delimiters, properties not replaced
+         */
+        void visitComment(byte type, String text) throws SQLException {
+            record(type, text);
+            if (type == ParsedScript.BLOCK_COMMENT) {
+                visitor.visitComment(COMMENT_MULTILINE_BEGIN + finish(text) + COMMENT_MULTILINE_END);
+            } else {
+                visitor.visitComment(COMMENT_LINE + finish(text));
+            }
+        }
+
+        private void handleStatementError(SQLException ex, String sql) throws SQLException {
+            // a statement of a batch failed, the error has been handled for this statement
+            if (ex instanceof BatchSQLScriptExecutor.HandledException) throw ex;
+            handleError(ex, sql);
+        }
+
+        private void record(byte type, String text) {
+            if (recording != null) recording.add(type, text);
         }
 
         private void execSQL(String sql) throws SQLException, JdbcException {
             if (sql.length() == 0) {
                 return;
             }
+            record(ParsedScript.STATEMENT, sql);
             sql = finish(sql);
             int affected = visitor.visitStatement(sql);
             if (affected > 0) {
@@ -625,4 +862,53 @@ public class SQLScriptParser {
             }
         }
     }
+
+    /**
+     * inner class to hold the state during parsing in span mode:
+     * the statement is recorded as spans of the script text.
+     */
+    class SpanParseState extends ParseState {
+        final StatementSpan span;
+
+        SpanParseState(ScriptVisitor aVisitor, StatementSpan aSpan) {
+            super(aVisitor);
+            span = aSpan;
+        }
+
+        @Override
+        void newBuf() {
+            span.clear();
+            needsBlank = false;
+        }
+
+        @Override
+        void appendText(String token) {
+            int offset = tokens.getOffset();
+            if (span.matches(offset, token)) {
+                span.append(offset, token.length());
+            } else { // normalized whitespace
+                span.insert(token);
+            }
+        }
+
+        @Override
+        char lastChar() {
+            return span.lastChar();
+        }
+
+        @Override
+        boolean isEmpty() {
+            return span.isEmpty();
+        }
+
+        @Override
+        String sql() {
+            return span.toString(false);
+        }
+
+        @Override
+        String trimmedSql() {
+            return span.toString(true);
+        }
+    }
 }
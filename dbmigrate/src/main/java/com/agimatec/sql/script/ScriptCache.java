@@ -0,0 +1,125 @@
+package com.agimatec.sql.script;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>Description: A directory with the {@link ParsedScript}s of the scripts parsed by
+ * the {@link SQLScriptParser}, one file per script, keyed by the hash of the script content
+ * and the parser options. Unchanged scripts are replayed from the cache without parsing them again.
+ * The environment is not part of the key, because the properties are replaced when the script
+ * is replayed.<br>
+ * The parsers use the directory in the system property {@value #SYSTEM_PROPERTY} by default.</p>
+ */
+public class ScriptCache {
+    private static final Logger log = LoggerFactory.getLogger(ScriptCache.class);
+    public static final String SYSTEM_PROPERTY = "agimatec.sql.script-cache";
+    private static final String SUFFIX = ".sqlc";
+
+    private final File directory;
+
+    public ScriptCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the cache in the directory of the system property {@value #SYSTEM_PROPERTY} or null
+     */
+    public static ScriptCache getDefault() {
+        String dir = System.getProperty(SYSTEM_PROPERTY);
+        if (dir == null || dir.length() == 0) return null;
+        return new ScriptCache(new File(dir));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param script  - the script content
+     * @param options - the parser options, that influence the parsing
+     * @return the key of the script
+     */
+    public String key(String script, String options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(options.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(script.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte each : hash) {
+                key.append(Character.forDigit((each >> 4) & 0xf, 16));
+                key.append(Character.forDigit(each & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected File getFile(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /**
+     * @return the cached script or null, when the script is not cached or cannot be read
+     *         (e.g. an incomplete or corrupt file)
+     */
+    public ParsedScript load(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return ParsedScript.read(in);
+        } catch (IOException ex) {
+            log.warn("Cannot read cached script " + file + ": " + ex.getMessage());
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * store the script. errors are logged, because the script can be parsed again.
+     */
+    public void store(String key, ParsedScript script) {
+        File file = getFile(key);
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            // unique name: other threads and processes may store the same script
+            temp = File.createTempFile(key, ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            script.write(out);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) throw new IOException("Cannot rename " + temp);
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot cache script in " + file + ": " + ex.getMessage());
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (temp != null) temp.delete();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.agimatec.sql.script;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Description: Aho-Corasick automaton over the separator tokens of a {@link WordTokenizer}.
+ * Feeding the characters of a text one by one, the state tells which separators
+ * the text ends with, so that all separators are matched in a single pass.
+ * Instances are immutable and cached for each separator array.</p>
+ */
+final class SeparatorAutomaton {
+    private static final int ASCII = 128;
+    private static final int MAX_CACHED = 256;
+    private static final Map<String, SeparatorAutomaton> cache =
+            new ConcurrentHashMap<String, SeparatorAutomaton>();
+
+    private final boolean caseSensitive;
+    /** separators with folded case */
+    private final String[] folded;
+    /** separator index -> trie node of the complete separator */
+    private final int[] terminal;
+    /** state -> lowest index of a separator the text ends with, -1 if none */
+    private final int[] firstMatch;
+    private final int[] fail;
+    private final char[][] childChars;
+    private final int[][] childNodes;
+    /** complete transition table for ascii characters */
+    private final int[][] ascii;
+
+    /**
+     * @return the (cached) automaton for the separators
+     */
+    static SeparatorAutomaton get(String[] separators, boolean caseSensitive) {
+        StringBuilder key = new StringBuilder(caseSensitive ? "1" : "0");
+        for (String each : separators) {
+            key.append('\u0000').append(each);
+        }
+        String cacheKey = key.toString();
+        SeparatorAutomaton automaton = cache.get(cacheKey);
+        if (automaton == null) {
+            automaton = new SeparatorAutomaton(separators, caseSensitive);
+            if (cache.size() >= MAX_CACHED) cache.clear();
+            cache.put(cacheKey, automaton);
+        }
+        return automaton;
+    }
+
+    private SeparatorAutomaton(String[] separators, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        folded = new String[separators.length];
+        terminal = new int[separators.length];
+        List<StringBuilder> chars = new ArrayList<StringBuilder>();
+        List<List<Integer>> nodes = new ArrayList<List<Integer>>();
+        List<Integer> matches = new ArrayList<Integer>();
+        chars.add(new StringBuilder());
+        nodes.add(new ArrayList<Integer>());
+        matches.add(-1);
+        for (int i = 0; i < separators.length; i++) {
+            StringBuilder buf = new StringBuilder(separators[i].length());
+            int node = 0;
+            for (int j = 0; j < separators[i].length(); j++) {
+                char c = fold(separators[i].charAt(j));
+                buf.append(c);
+                int idx = chars.get(node).indexOf(String.valueOf(c));
+                if (idx < 0) {
+                    chars.get(node).append(c);
+                    nodes.get(node).add(chars.size());
+                    node = chars.size();
+                    chars.add(new StringBuilder());
+                    nodes.add(new ArrayList<Integer>());
+                    matches.add(-1);
+                } else {
+                    node = nodes.get(node).get(idx);
+                }
+            }
+            folded[i] = buf.toString();
+            terminal[i] = node;
+            // empty separators never match
+            if (node > 0 && matches.get(node) < 0) matches.set(node, i);
+        }
+        int size = chars.size();
+        childChars = new char[size][];
+        childNodes = new int[size][];
+        firstMatch = new int[size];
+        for (int i = 0; i < size; i++) {
+            childChars[i] = chars.get(i).toString().toCharArray();
+            childNodes[i] = new int[childChars[i].length];
+            for (int j = 0; j < childNodes[i].length; j++) {
+                childNodes[i][j] = nodes.get(i).get(j);
+            }
+            firstMatch[i] = matches.get(i);
+        }
+        // breadth first: failure links, inherited matches and ascii transitions
+        fail = new int[size];
+        ascii = new int[size][];
+        ascii[0] = new int[ASCII];
+        for (int j = 0; j < childChars[0].length; j++) {
+            if (childChars[0][j] < ASCII) ascii[0][childChars[0][j]] = childNodes[0][j];
+        }
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int child : childNodes[0]) queue.add(child);
+        while (!queue.isEmpty()) {
+            int node = queue.removeFirst();
+            int inherited = firstMatch[fail[node]];
+            if (inherited >= 0 && (firstMatch[node] < 0 || inherited < firstMatch[node])) {
+                firstMatch[node] = inherited;
+            }
+            ascii[node] = ascii[fail[node]].clone();
+            for (int j = 0; j < childChars[node].length; j++) {
+                int child = childNodes[node][j];
+                fail[child] = next(fail[node], childChars[node][j]);
+                if (childChars[node][j] < ASCII) ascii[node][childChars[node][j]] = child;
+                queue.add(child);
+            }
+        }
+    }
+
+    char fold(char c) {
+        return caseSensitive ? c : Character.toLowerCase(c);
+    }
+
+    /**
+     * @param state - 0 for the beginning of the text
+     * @param c     - the next character (not folded)
+     * @return the state after the character
+     */
+    int next(int state, char c) {
+        c = fold(c);
+        if (c < ASCII) return ascii[state][c];
+        int child;
+        while ((child = child(state, c)) < 0 && state > 0) {
+            state = fail[state];
+        }
+        return child < 0 ? 0 : child;
+    }
+
+    /**
+     * @return the lowest index of the separators the text ends with
+     *         (in the given state) or -1
+     */
+    int firstMatch(int state) {
+        return firstMatch[state];
+    }
+
+    /**
+     * @return true when the separator followed by c is the prefix of a separator
+     */
+    boolean continues(int separator, char c) {
+        return child(terminal[separator], fold(c)) >= 0;
+    }
+
+    /**
+     * @return the separator (with folded case) at the index
+     */
+    String folded(int separator) {
+        return folded[separator];
+    }
+
+    private int child(int node, char c) {
+        char[] keys = childChars[node];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == c) return childNodes[node][i];
+        }
+        return -1;
+    }
+}
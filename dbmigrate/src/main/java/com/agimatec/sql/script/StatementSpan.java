@@ -0,0 +1,230 @@
+package com.agimatec.sql.script;
+
+/**
+ * <p>Description: A statement of a script, recorded by the {@link SQLScriptParser} in span mode
+ * as spans (offset, length) over the script text plus the normalizations (text inserted
+ * at a position of the statement, e.g. a blank for a line break or a comment, that have been skipped).
+ * The statement string is built when needed, the line and column of the statement are computed
+ * on demand.</p>
+ */
+public class StatementSpan {
+    private final CharSequence script;
+    /** offset, length pairs */
+    private int[] spans = new int[16];
+    private int spanCount;
+    private int[] insertPositions = new int[4];
+    private String[] insertTexts = new String[4];
+    private int insertCount;
+    private int length;
+    private char lastChar;
+    /** true when the last span can be extended */
+    private boolean spanOpen;
+
+    /* line cursor: offsets only increase from statement to statement */
+    private int cursorOffset, cursorLine = 1, cursorLineStart;
+
+    public StatementSpan(CharSequence script) {
+        this.script = script;
+    }
+
+    public CharSequence getScript() {
+        return script;
+    }
+
+    /**
+     * append the chars of the script
+     */
+    public void append(int offset, int count) {
+        if (count == 0) return;
+        if (spanOpen && spans[spanCount * 2 - 2] + spans[spanCount * 2 - 1] == offset) {
+            spans[spanCount * 2 - 1] += count;
+        } else {
+            if (spanCount * 2 == spans.length) spans = grow(spans);
+            spans[spanCount * 2] = offset;
+            spans[spanCount * 2 + 1] = count;
+            spanCount++;
+            spanOpen = true;
+        }
+        length += count;
+        lastChar = script.charAt(offset + count - 1);
+    }
+
+    /**
+     * insert a text, that is not contained in the script at this position
+     */
+    public void insert(String text) {
+        if (text.length() == 0) return;
+        if (insertCount == insertPositions.length) {
+            insertPositions = grow(insertPositions);
+            String[] larger = new String[insertTexts.length * 2];
+            System.arraycopy(insertTexts, 0, larger, 0, insertCount);
+            insertTexts = larger;
+        }
+        insertPositions[insertCount] = length;
+        insertTexts[insertCount] = text;
+        insertCount++;
+        spanOpen = false;
+        length += text.length();
+        lastChar = text.charAt(text.length() - 1);
+    }
+
+    private static int[] grow(int[] array) {
+        int[] larger = new int[array.length * 2];
+        System.arraycopy(array, 0, larger, 0, array.length);
+        return larger;
+    }
+
+    /**
+     * @return true when the script contains the text at the offset
+     */
+    public boolean matches(int offset, String text) {
+        if (offset < 0 || offset + text.length() > script.length()) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (script.charAt(offset + i) != text.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        spanCount = 0;
+        insertCount = 0;
+        length = 0;
+        spanOpen = false;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return length of the statement (including the inserted texts)
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the last char of the statement, undefined when empty
+     */
+    public char lastChar() {
+        return lastChar;
+    }
+
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    public int getSpanOffset(int index) {
+        return spans[index * 2];
+    }
+
+    public int getSpanLength(int index) {
+        return spans[index * 2 + 1];
+    }
+
+    public int getInsertCount() {
+        return insertCount;
+    }
+
+    /**
+     * @return position in the statement, where the text is inserted
+     */
+    public int getInsertPosition(int index) {
+        return insertPositions[index];
+    }
+
+    public String getInsertText(int index) {
+        return insertTexts[index];
+    }
+
+    /**
+     * @return offset in the script of the first char of the statement, that is not whitespace
+     *         (or -1, when the statement contains no script chars)
+     */
+    public int getOffset() {
+        for (int i = 0; i < spanCount; i++) {
+            int offset = spans[i * 2];
+            int end = offset + spans[i * 2 + 1];
+            for (; offset < end; offset++) {
+                if (script.charAt(offset) > ' ') return offset;
+            }
+        }
+        return spanCount == 0 ? -1 : spans[0];
+    }
+
+    /**
+     * @return line (1-based) in the script of the statement
+     */
+    public int getLine() {
+        moveCursor(getOffset());
+        return cursorLine;
+    }
+
+    /**
+     * @return column (1-based) in the script of the statement
+     */
+    public int getColumn() {
+        int offset = getOffset();
+        moveCursor(offset);
+        return offset - cursorLineStart + 1;
+    }
+
+    private void moveCursor(int offset) {
+        if (offset < cursorOffset) {
+            cursorOffset = 0;
+            cursorLine = 1;
+            cursorLineStart = 0;
+        }
+        for (; cursorOffset < offset; cursorOffset++) {
+            if (script.charAt(cursorOffset) == '\n') {
+                cursorLine++;
+                cursorLineStart = cursorOffset + 1;
+            }
+        }
+    }
+
+    /**
+     * @return the statement, without leading and trailing whitespace when trim is true
+     */
+    public String toString(boolean trim) {
+        char[] chars = new char[length];
+        int pos = 0, insert = 0;
+        for (int i = 0; i < spanCount; i++) {
+            int offset = spans[i * 2];
+            int count = spans[i * 2 + 1];
+            while (count > 0) {
+                while (insert < insertCount && insertPositions[insert] == pos) {
+                    pos = copy(insertTexts[insert++], chars, pos);
+                }
+                int chunk = count;
+                if (insert < insertCount) chunk = Math.min(chunk, insertPositions[insert] - pos);
+                if (script instanceof String) {
+                    ((String) script).getChars(offset, offset + chunk, chars, pos);
+                } else {
+                    for (int j = 0; j < chunk; j++) chars[pos + j] = script.charAt(offset + j);
+                }
+                pos += chunk;
+                offset += chunk;
+                count -= chunk;
+            }
+        }
+        while (insert < insertCount) {
+            pos = copy(insertTexts[insert++], chars, pos);
+        }
+        int from = 0, to = length;
+        if (trim) {
+            while (from < to && chars[from] <= ' ') from++;
+            while (to > from && chars[to - 1] <= ' ') to--;
+        }
+        return new String(chars, from, to - from);
+    }
+
+    private static int copy(String text, char[] chars, int pos) {
+        text.getChars(0, text.length(), chars, pos);
+        return pos + text.length();
+    }
+
+    public String toString() {
+        return toString(false);
+    }
+}
@@ -5,18 +5,23 @@ import java.io.Reader;
 
 /**
  * <p>Description: This class can be used like the java.util.StringTokenizer.
- * The main difference is, that the separator tokens are Strings not characters.</p>
+ * The main difference is, that the separator tokens are Strings not characters.
+ * The input is read into a large char buffer and all separators are matched
+ * in one pass with a {@link SeparatorAutomaton}.</p>
  * <p>Copyright: Copyright (c) 2007</p>
  *
  * @author Roman Stumm
  */
 public final class WordTokenizer {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
     private boolean returnTokens;
     private boolean caseSensitive;
     private String[] separators;
-    private final Reader myInput;
+    private SeparatorAutomaton automaton;
 
-    private StringBuilder current;
+    /** the input and the current (read, but not yet returned) chars, shared with child tokenizers */
+    private Source current;
 
     /**
      * full constructor.
@@ -24,10 +29,10 @@ public final class WordTokenizer {
      * @param input            - a reader that reads the string to be parsed
      * @param separatorTokens  - array of separator strings
      * @param returnSeparators - true when nextToken() should return separators, false otherwise
-     * @param aCaseSensitive   - true when separators are caseSensitive (faster), false otherwise (slower)
+     * @param aCaseSensitive   - true when separators are caseSensitive, false otherwise
      */
     public WordTokenizer(Reader input, String[] separatorTokens, boolean returnSeparators, boolean aCaseSensitive) {
-        myInput = input;
+        current = new Source(input);
         separators = separatorTokens;
         returnTokens = returnSeparators;
         caseSensitive = aCaseSensitive;
@@ -42,7 +47,6 @@ public final class WordTokenizer {
      * @param aCaseSensitive
      */
     public WordTokenizer(WordTokenizer parent, String[] separatorTokens, boolean returnSeparators, boolean aCaseSensitive) {
-        myInput = parent.getReader();
         separators = separatorTokens;
         returnTokens = returnSeparators;
         caseSensitive = aCaseSensitive;
@@ -76,10 +80,12 @@ public final class WordTokenizer {
 
     public void setSeparators(String[] aSeparators) {
         separators = aSeparators;
+        automaton = null;
     }
 
     public void setCaseSensitive(boolean aCaseSensitive) {
         caseSensitive = aCaseSensitive;
+        automaton = null;
     }
 
     public void setReturnTokens(boolean aReturnTokens) {
@@ -102,78 +108,69 @@ public final class WordTokenizer {
      * @return null or the next element
      */
     private Object nextObject() throws IOException {
-        String token = findToken();
-        if (token != null) return popCurrent(token);
-        int next = readNext();
-        if (next != -1) {
-            addChar(next);
-            while ((token = findToken()) == null && next != -1) {
-                next = readNext();
-                addChar(next);
-            }
+        SeparatorAutomaton matcher = getAutomaton();
+        int token = findToken(matcher);
+        while (token < 0 && current.append()) {
+            token = findToken(matcher);
         }
-        return popCurrent(token);
+        return popCurrent(matcher, token);
     }
 
     protected int nextChar() throws IOException {
-        if (current.length() > 0) {
-            char r = current.charAt(0);
-            current = new StringBuilder(current.substring(1));
-            return r;  
-        }
-        else return readNext();
+        if (current.pending && current.length() > 0) {
+            return current.removeFirst();
+        } else return readNext();
     }
 
     protected int readNext() throws IOException {
-        return myInput.read();
+        return current.skip();
     }
 
     public Reader getReader() {
-        return myInput;
+        return current.input;
     }
 
-    private String findToken() {
-        String token = findPossibleToken();
-        if (token != null) {
-            String str = current.substring(current.length() - token.length() - 1);
-            for (String each : separators) {
-                if (startsWith(each, str)) {
-                    return null;
-                }
-            }
-            return token;
-        }
-        return null;
+    /**
+     * @return the offset in the input of the token returned last by nextToken()
+     *         (or of the char returned last by nextChar())
+     */
+    public int getOffset() {
+        return current.lastOffset;
     }
 
-    private String findPossibleToken() {
-        if (current == null || current.length() == 0) return null;
-        String str = current.substring(0, current.length() - 1);
-        if (str.length() == 0) return null;
-        for (String each : separators) {
-            if (endsWith(str, each)) {
-                return each;
-            }
+    private SeparatorAutomaton getAutomaton() {
+        if (automaton == null) {
+            automaton = SeparatorAutomaton.get(separators, caseSensitive);
         }
-        return null;
+        return automaton;
     }
 
-    private String endsWithToken() {
-        if (current == null) return null;
-        String str = current.toString();
-        if (str.length() == 0) return null;
-        for (String each : separators) {
-            if (endsWith(str, each)) {
-                return each;
-            }
+    /**
+     * @return the index of the separator, that the current chars (without the last char)
+     *         end with, when the last char does not continue a separator. -1 otherwise
+     */
+    private int findToken(SeparatorAutomaton matcher) {
+        int length = current.length();
+        if (!current.pending || length < 2) return -1;
+        int token = matcher.firstMatch(current.scan(matcher, length - 1));
+        if (token >= 0 && matcher.continues(token, current.charAt(length - 1))) {
+            return -1;
         }
-        return null;
+        return token;
+    }
+
+    /**
+     * @return the index of the separator, that the current chars end with, or -1
+     */
+    private int endsWithToken(SeparatorAutomaton matcher) {
+        int length = current.length();
+        if (length == 0) return -1;
+        return matcher.firstMatch(current.scan(matcher, length));
     }
 
     protected void addChar(int next) {
         if (next != -1) {
-            if (current == null) current = new StringBuilder();
-            current.append((char) next);
+            current.add((char) next);
         }
     }
 
@@ -195,50 +192,196 @@ public final class WordTokenizer {
                 (!caseSensitive && s1.equalsIgnoreCase(s2));
     }
 
-    private boolean endsWith(String s1, String s2) {
-        return (caseSensitive && s1.endsWith(s2)) ||
-                (!caseSensitive && s1.toLowerCase().endsWith(s2.toLowerCase()));
-    }
-
-    private boolean startsWith(String s1, String s2) {
-        return (caseSensitive && s1.startsWith(s2)) ||
-                (!caseSensitive && s1.toLowerCase().startsWith(s2.toLowerCase()));
-    }
-
-    private int indexOf(String str, String token) {
-        return caseSensitive ? str.indexOf(token) :
-                str.toLowerCase().indexOf(token.toLowerCase());
-    }
-
-    private Object popCurrent(String token) {
-        if (current == null) return null;
-        final String str = current.toString();
-        if (token != null) {
-            if (equals(str, token)) {
-                current = null;
+    private Object popCurrent(SeparatorAutomaton matcher, int token) {
+        if (!current.pending) return null;
+        if (token >= 0) {
+            String separator = matcher.folded(token);
+            int length = current.length();
+            if (length == separator.length() && current.regionMatches(matcher, 0, separator)) {
+                String str = current.pop(length);
+                current.pending = false;
                 if (returnTokens) return str;
                 else return this;  // return this to mark unwanted separator
             } else {
-                int idx = indexOf(str, token);
+                int idx = current.indexOf(matcher, separator);
                 if (idx > 0) {
-                    current = new StringBuilder(str.substring(idx));
-                    return str.substring(0, idx);
+                    return current.pop(idx);
                 } else {
-                    idx = token.length();
-                    current = new StringBuilder(str.substring(idx));
-                    if (returnTokens) return str.substring(0, idx);
+                    String str = current.pop(separator.length());
+                    if (returnTokens) return str;
                     else return this;  // return this to mark unwanted separator
                 }
             }
         } else {
-            token = endsWithToken();
-            if (token != null) {
-                return popCurrent(token); // recursion!
+            token = endsWithToken(matcher);
+            if (token >= 0) {
+                return popCurrent(matcher, token); // recursion!
             } else {
-                current = null;
+                String str = current.pop(current.length());
+                current.pending = false;
                 return str;
             }
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * the buffered input. the chars between start and end are the current chars,
+     * that have been read but not returned as a token, the chars between end and limit
+     * have been read from the reader but not yet by the tokenizer.
+     */
+    private static final class Source {
+        final Reader input;
+        char[] buf = new char[BUFFER_SIZE];
+        int start, end, limit;
+        /** offset in the input of buf[0] and of the token or char returned last */
+        int base, lastOffset;
+        /** false when there are no current chars, not even an empty token */
+        boolean pending;
+        /** changed whenever the positions of the current chars change */
+        int version;
+        /** state of the automaton after the first scanned current chars */
+        SeparatorAutomaton scanAutomaton;
+        int scanVersion, scanned, scanState;
+
+        Source(Reader input) {
+            this.input = input;
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        char charAt(int index) {
+            return buf[start + index];
+        }
+
+        /**
+         * @return the state of the automaton after the first length current chars
+         */
+        int scan(SeparatorAutomaton automaton, int length) {
+            if (scanAutomaton != automaton || scanVersion != version || scanned > length) {
+                scanAutomaton = automaton;
+                scanVersion = version;
+                scanned = 0;
+                scanState = 0;
+            }
+            int state = scanState;
+            for (int i = start + scanned; i < start + length; i++) {
+                state = automaton.next(state, buf[i]);
+            }
+            scanned = length;
+            scanState = state;
+            return state;
+        }
+
+        boolean regionMatches(SeparatorAutomaton automaton, int offset, String folded) {
+            for (int i = 0; i < folded.length(); i++) {
+                if (automaton.fold(buf[start + offset + i]) != folded.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        int indexOf(SeparatorAutomaton automaton, String folded) {
+            int last = length() - folded.length();
+            for (int i = 0; i <= last; i++) {
+                if (regionMatches(automaton, i, folded)) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the first count current chars, that are removed
+         */
+        String pop(int count) {
+            String str = new String(buf, start, count);
+            lastOffset = base + start;
+            start += count;
+            version++;
+            return str;
+        }
+
+        char removeFirst() {
+            version++;
+            lastOffset = base + start;
+            return buf[start++];
+        }
+
+        /**
+         * read the next char and append it to the current chars
+         *
+         * @return false at the end of the input
+         */
+        boolean append() throws IOException {
+            if (end == limit && !fill()) return false;
+            end++;
+            pending = true;
+            return true;
+        }
+
+        /**
+         * @return the next char after the current chars, that is not appended, or -1
+         */
+        int skip() throws IOException {
+            if (end == limit && !fill()) return -1;
+            char c = buf[end];
+            lastOffset = base + end;
+            System.arraycopy(buf, start, buf, start + 1, end - start);
+            start++;
+            end++;
+            version++;
+            return c;
+        }
+
+        /**
+         * append the char to the current chars. the offsets stay valid, when the char
+         * is the char that has been removed before.
+         */
+        void add(char c) {
+            pending = true;
+            if (start > 0) {
+                if (start == end && buf[start - 1] == c) {
+                    // the char pushed back has just been removed
+                    start--;
+                } else {
+                    System.arraycopy(buf, start, buf, start - 1, end - start);
+                    start--;
+                    buf[end - 1] = c;
+                }
+                version++;
+            } else {
+                if (limit == buf.length) grow();
+                System.arraycopy(buf, end, buf, end + 1, limit - end);
+                buf[end++] = c;
+                limit++;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (limit == buf.length) {
+                if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, limit - start);
+                    base += start;
+                    end -= start;
+                    limit -= start;
+                    start = 0;
+                    version++;
+                } else {
+                    grow();
+                }
+            }
+            int read;
+            do {
+                read = input.read(buf, limit, buf.length - limit);
+            } while (read == 0);
+            if (read < 0) return false;
+            limit += read;
+            return true;
+        }
+
+        private void grow() {
+            char[] larger = new char[buf.length * 2];
+            System.arraycopy(buf, 0, larger, 0, limit);
+            buf = larger;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.agimatec.sql.script;
+
+import com.agimatec.jdbc.JdbcConfig;
+import com.agimatec.jdbc.JdbcDatabase;
+import com.agimatec.jdbc.JdbcDatabaseFactory;
+import junit.framework.TestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchSQLScriptExecutorTest extends TestCase {
+    private static final Logger myLogger = LoggerFactory.getLogger(SQLScriptParser.class);
+
+    private final List<String> events = new ArrayList<String>();
+    private final List<String> errors = new ArrayList<String>();
+    private final List<String> positions = new ArrayList<String>();
+    /** true: executeBatch() continues after the statements that failed */
+    private boolean continueBatch;
+    private SQLScriptParser parser;
+    private BatchSQLScriptExecutor executor;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        parser = new SQLScriptParser("", myLogger) {
+            protected void handleError(SQLException ex, String command) throws SQLException {
+                errors.add(command);
+                positions.add(getStatementPosition());
+                super.handleError(ex, command);
+            }
+        };
+        parser.setScriptCache(null);
+        JdbcDatabase store = JdbcDatabaseFactory.createInstance(new JdbcConfig());
+        store.setConnection(connection());
+        executor = new BatchSQLScriptExecutor(store, parser);
+    }
+
+    public void testBatches() throws Exception {
+        executor.setBatchSize(3);
+        parser.iterateSQL(executor, "insert into a values(1);\n" +
+                "INSERT INTO a values(2);\n" +
+                "create table b(x int);\n" +
+                "update a set x=1;\n" +
+                "-- #if ${flag}\n" +
+                "delete from a;\n" +
+                "commit;\n" +
+                "insert into a values(3);\ninsert into a values(4);\ninsert into a values(5);\n" +
+                "insert into a values(6);\n");
+        assertEquals(1, executor.getPendingCount());
+        executor.flush();
+        assertEquals(Arrays.asList(
+                "batch: insert into a values(1)", "batch: INSERT INTO a values(2)", "executeBatch",
+                "update: create table b(x int)",
+                "batch: update a set x=1", "executeBatch",
+                "batch: delete from a", "executeBatch", "commit",
+                "batch: insert into a values(3)", "batch: insert into a values(4)",
+                "batch: insert into a values(5)", "executeBatch",
+                "batch: insert into a values(6)", "executeBatch"), events);
+        assertTrue(errors.isEmpty());
+    }
+
+    public void testFailOnError() throws Exception {
+        parser.setFailOnError(true);
+        try {
+            parser.iterateSQL(executor, "insert into a values(1);\n" +
+                    "insert into a values('fail');\n" +
+                    "insert into a values(3);\n" +
+                    "create table b(x int);\n");
+            fail("SQLException expected");
+        } catch (SQLException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+        // handled once, for the statement that failed
+        assertEquals(Arrays.asList("insert into a values('fail')"), errors);
+        assertEquals(Arrays.asList("batch: insert into a values(1)", "batch: insert into a values('fail')",
+                "batch: insert into a values(3)", "executeBatch"), events);
+    }
+
+    public void testContinueOnError() throws Exception {
+        parser.setFailOnError(false);
+        parser.iterateSQL(executor, "insert into a values(1);\n" +
+                "insert into a values('fail');\n" +
+                "insert into a values(3);\n" +
+                "create table b(x int);\n");
+        assertEquals(Arrays.asList("insert into a values('fail')"), errors);
+        assertEquals(Arrays.asList("batch: insert into a values(1)", "batch: insert into a values('fail')",
+                "batch: insert into a values(3)", "executeBatch",
+                "batch: insert into a values(3)", "executeBatch",
+                "update: create table b(x int)"), events);
+    }
+
+    public void testDriverContinued() throws Exception {
+        continueBatch = true;
+        parser.setFailOnError(false);
+        parser.iterateSQL(executor, "insert into a values('fail 1');\n" +
+                "insert into a values(2);\n" +
+                "insert into a values('fail 3');\n" +
+                "create table b(x int);\n");
+        assertEquals(Arrays.asList("insert into a values('fail 1')", "insert into a values('fail 3')"), errors);
+        // the statements after the failed statements are not executed again
+        assertEquals(Arrays.asList("batch: insert into a values('fail 1')", "batch: insert into a values(2)",
+                "batch: insert into a values('fail 3')", "executeBatch",
+                "update: create table b(x int)"), events);
+    }
+
+    public void testBatchFailedWithoutCounts() throws Exception {
+        parser.setFailOnError(false);
+        parser.iterateSQL(executor, "insert into a values(1);\n" +
+                "insert into a values('reset');\n" +
+                "insert into a values(3);\n" +
+                "create table b(x int);\n");
+        // it is unknown which statements have been executed: reported once, not executed again
+        assertEquals(Arrays.asList("insert into a values(1)"), errors);
+        assertEquals(Arrays.asList("batch: insert into a values(1)", "batch: insert into a values('reset')",
+                "batch: insert into a values(3)", "executeBatch",
+                "update: create table b(x int)"), events);
+    }
+
+    public void testBatchNotExecuted() throws Exception {
+        parser.iterateSQL(executor, "insert into a values(1);\n" +
+                "insert into a values('noadd');\n" +
+                "create table b(x int);\n");
+        assertTrue(errors.isEmpty());
+        assertEquals(Arrays.asList("batch: insert into a values(1)", "batch: insert into a values('noadd')",
+                "update: insert into a values(1)", "update: insert into a values('noadd')",
+                "update: create table b(x int)"), events);
+    }
+
+    public void testErrorPosition() throws Exception {
+        parser.setSpanMode(true);
+        parser.setFailOnError(false);
+        parser.iterateSQL(executor, "insert into a values(1);\n\n" +
+                "  insert into a values('fail');\n" +
+                "insert into a values(3);\n" +
+                "create table b(x int);\n");
+        assertEquals(Arrays.asList("insert into a values('fail')"), errors);
+        // the position of the statement that failed, not of the statement that executed the batch
+        assertEquals(Arrays.asList(" at line 3, column 3"), positions);
+    }
+
+    public void testParameterizeInserts() throws Exception {
+        executor.setParameterizeInserts(true);
+        parser.setFailOnError(false);
+        parser.iterateSQL(executor, "insert into a (x, y) values (1, 'one');\n" +
+                "insert into a (x, y) values (2, 'fail');\n" +
+                "INSERT INTO a (x, y) VALUES (3, 'it''s');\n" +
+                "insert into a (x, y) values (4, upper('four'));\n" +
+                "insert into b (d) values (DATE '2008-03-01');\n" +
+                "commit;\n" +
+                "insert into b (d) values (DATE '2008-03-02');\n");
+        executor.flush();
+        // the error is mapped to the literal statement
+        assertEquals(Arrays.asList("insert into a (x, y) values (2, 'fail')"), errors);
+        assertEquals(Arrays.asList(
+                "prepare: INSERT INTO a (x, y) VALUES (?, ?)",
+                "bind: [1, one]", "bind: [2, fail]", "bind: [3, it's]", "executeBatch",
+                "bind: [3, it's]", "executeBatch",
+                "batch: insert into a (x, y) values (4, upper('four'))", "executeBatch",
+                "close", "prepare: INSERT INTO b (d) VALUES (?)",
+                "bind: [" + Date.valueOf("2008-03-01") + "]", "executeBatch", "commit",
+                // cached statement
+                "bind: [" + Date.valueOf("2008-03-02") + "]", "executeBatch", "close"), events);
+    }
+
+    public void testCloseAfterFailOnError() throws Exception {
+        executor.setParameterizeInserts(true);
+        parser.setFailOnError(true);
+        try {
+            parser.iterateSQL(executor, "insert into a (x) values (1);\n" +
+                    "insert into a (x) values ('fail');\n" +
+                    "insert into a (x) values (3);\n" +
+                    "insert into a (x, y) values (4, 4);\n");
+            fail("SQLException expected");
+        } catch (SQLException ex) {
+            executor.close();
+        }
+        assertEquals(1, errors.size());
+        assertEquals(0, executor.getPendingCount());
+        assertEquals(Arrays.asList("prepare: INSERT INTO a (x) VALUES (?)",
+                "bind: [1]", "bind: [fail]", "bind: [3]", "executeBatch", "close"), events);
+    }
+
+    /**
+     * a connection, that records the statements. the batch stops at a statement containing 'fail'
+     * and the close of a PreparedStatement.
+     */
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("createStatement")) return statement(false);
+                if (method.getName().equals("prepareStatement")) {
+                    events.add("prepare: " + args[0]);
+                    return statement(true);
+                }
+                if (method.getName().equals("commit")) events.add("commit");
+                if (method.getName().equals("rollback")) events.add("rollback");
+                if (method.getReturnType() == boolean.class) return Boolean.FALSE;
+                return null;
+            }
+        });
+    }
+
+    private PreparedStatement statement(final boolean prepared) {
+        final List<String> batch = new ArrayList<String>();
+        final List<Object> row = new ArrayList<Object>();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{PreparedStatement.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().startsWith("set") && args.length >= 2) {
+                    row.add(args[1]);
+                } else if (method.getName().equals("addBatch") && args == null) {
+                    events.add("bind: " + row);
+                    batch.add(row.toString());
+                    row.clear();
+                } else if (method.getName().equals("clearBatch")) {
+                    batch.clear();
+                } else if (method.getName().equals("close") && prepared) {
+                    events.add("close");
+                } else if (method.getName().equals("addBatch")) {
+                    events.add("batch: " + args[0]);
+                    if (((String) args[0]).contains("noadd")) throw new SQLException("cannot add");
+                    batch.add((String) args[0]);
+                } else if (method.getName().equals("executeBatch")) {
+                    events.add("executeBatch");
+                    int[] counts = new int[batch.size()];
+                    List<SQLException> failed = new ArrayList<SQLException>();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (batch.get(i).contains("reset")) throw new SQLException("connection reset");
+                        if (batch.get(i).contains("fail") && continueBatch) {
+                            counts[i] = Statement.EXECUTE_FAILED;
+                            failed.add(new SQLException("failed " + i));
+                            continue;
+                        }
+                        if (batch.get(i).contains("fail")) {
+                            int[] done = new int[i];
+                            System.arraycopy(counts, 0, done, 0, i);
+                            BatchUpdateException ex = new BatchUpdateException("batch entry " + i, done);
+                            ex.setNextException(new SQLException("failed"));
+                            throw ex;
+                        }
+                        counts[i] = 1;
+                    }
+                    if (!failed.isEmpty()) {
+                        BatchUpdateException ex = new BatchUpdateException("batch failed", counts);
+                        for (SQLException each : failed) ex.setNextException(each);
+                        throw ex;
+                    }
+                    return counts;
+                } else if (method.getName().equals("executeUpdate")) {
+                    events.add("update: " + args[0]);
+                    return 0;
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.agimatec.sql.script;
+
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+public class InsertStatementTest extends TestCase {
+    public void testParse() {
+        InsertStatement insert = InsertStatement.parse("INSERT  INTO app.\"Person\" (id,name, born , weight,x)\n" +
+                "values (-12, 'O''Neil', DATE '1970-01-31', 7.5e1, NULL)");
+        assertEquals("INSERT INTO app.\"Person\" (id, name, born, weight, x) VALUES (?, ?, ?, ?, NULL)",
+                insert.getTemplate());
+        assertEquals(Arrays.asList(-12L, "O'Neil", Date.valueOf("1970-01-31"), new BigDecimal("7.5e1")),
+                Arrays.asList(insert.getValues()));
+
+        insert = InsertStatement.parse("insert into t values ('', +1.50, TIMESTAMP '2008-03-01 12:30:00')");
+        assertEquals("INSERT INTO t VALUES (?, ?, ?)", insert.getTemplate());
+        assertEquals(Arrays.asList("", new BigDecimal("1.50"), Timestamp.valueOf("2008-03-01 12:30:00")),
+                Arrays.asList(insert.getValues()));
+        assertEquals(Long.valueOf(123456789012345678L),
+                InsertStatement.parse("insert into t(a) values(123456789012345678)").getValues()[0]);
+        assertEquals(new BigDecimal("1234567890123456789"),
+                InsertStatement.parse("insert into t(a) values(1234567890123456789)").getValues()[0]);
+    }
+
+    public void testNotParsed() {
+        assertNull(InsertStatement.parse("insert into t (a) values (seq.nextval)"));
+        assertNull(InsertStatement.parse("insert into t (a) values (1 + 2)"));
+        assertNull(InsertStatement.parse("insert into t (a) values ('a' || 'b')"));
+        assertNull(InsertStatement.parse("insert into t (a) values ('a\\b')"));
+        assertNull(InsertStatement.parse("insert into t (a) values (E'a')"));
+        assertNull(InsertStatement.parse("insert into t (a) values ('unterminated)"));
+        assertNull(InsertStatement.parse("insert into t (a) values (DATE '01.03.2008')"));
+        assertNull(InsertStatement.parse("insert into t (a) values (1), (2)"));
+        assertNull(InsertStatement.parse("insert into t (a) values (1) returning a"));
+        assertNull(InsertStatement.parse("insert into t (a, b) values (1)"));
+        assertNull(InsertStatement.parse("insert into t (a) select 1 from dual"));
+        assertNull(InsertStatement.parse("insert into t (a) values (1e)"));
+        assertNull(InsertStatement.parse("update t set a = 1"));
+        assertNull(InsertStatement.parse("insert into t (a) values (DATE '2008-02-31')"));
+        assertNull(InsertStatement.parse("insert into t (a) values (TIMESTAMP '2008-02-30 12:00:00')"));
+    }
+
+    public void testDaylightSavingTime() {
+        TimeZone zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        try {
+            // the local time does not exist, valueOf() would move it to 03:30
+            assertNull(InsertStatement.parse("insert into t (a) values (TIMESTAMP '2008-03-30 02:30:00')"));
+            // the local time exists twice
+            assertEquals(Timestamp.valueOf("2008-10-26 02:30:00.5"), InsertStatement.parse(
+                    "insert into t (a) values (TIMESTAMP '2008-10-26 02:30:00.5')").getValues()[0]);
+            assertEquals(Date.valueOf("2008-03-30"),
+                    InsertStatement.parse("insert into t (a) values (DATE '2008-03-30')").getValues()[0]);
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+}
@@ -3,9 +3,14 @@ package com.agimatec.sql.script;
 import com.agimatec.commons.util.ClassUtils;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Properties;
@@ -139,6 +144,44 @@ public class SQLScriptParserTest extends TestCase {
         assertEquals("SELECT * FROM DUAL", visitor.getStatements().get(0));
     }
 
+    public void testSpanModeSameStatements() throws Exception {
+        for (String script : new String[]{"testscript.sql", "create-tables-example-script.sql"}) {
+            ScriptVisitorDummy spanVisitor = new ScriptVisitorDummy();
+            SQLScriptParser spanParser = new SQLScriptParser(null, myLogger);
+            spanParser.setSpanMode(true);
+            spanParser.iterateSQLScript(spanVisitor, ClassUtils.getClassLoader().getResource(script));
+            visitor.reset();
+            new SQLScriptParser(null, myLogger).iterateSQLScript(visitor,
+                    ClassUtils.getClassLoader().getResource(script));
+            assertFalse(visitor.getStatements().isEmpty());
+            assertEquals(visitor.getStatements(), spanVisitor.getStatements());
+            assertEquals(visitor.getComments(), spanVisitor.getComments());
+            assertEquals(visitor.getCommits(), spanVisitor.getCommits());
+        }
+    }
+
+    public void testSpanModePosition() throws Exception {
+        final String sql = "select 1 from dual;\n-- comment\n  insert into t\n\tvalues (1, 'a''b');";
+        parser.setSpanMode(true);
+        final StringBuilder positions = new StringBuilder();
+        parser.iterateSQL(new ScriptVisitorDummy() {
+            public int visitStatement(String statement) throws SQLException {
+                StatementSpan span = parser.getStatementSpan();
+                positions.append(span.getLine()).append(':').append(span.getColumn()).append(' ');
+                if (statement.startsWith("insert")) {
+                    assertEquals("insert into t values (1, 'a''b')", statement);
+                    assertEquals(sql.indexOf("insert"), span.getOffset());
+                    assertEquals(2, span.getSpanCount());
+                    assertEquals(1, span.getInsertCount());
+                    assertEquals(" ", span.getInsertText(0));
+                }
+                return super.visitStatement(statement);
+            }
+        }, sql);
+        assertEquals("1:1 3:3 ", positions.toString());
+        assertNull(parser.getStatementSpan());
+    }
+
     public void testSpaceTrimming() throws SQLException, IOException {
         String sql = "  select * from customer \nwhere lastname='Mueller';\ncommit;\n   \n";
         parser.iterateSQL(visitor, sql);
@@ -284,6 +327,67 @@ public class SQLScriptParserTest extends TestCase {
                 visitor.getStatements().get(0));
     }
 
+    public void testScriptCache() throws Exception {
+        File dir = new File("target/script-cache");
+        FileUtils.deleteDirectory(dir);
+        File script = new File("target/cachedscript.sql");
+        FileWriter writer = new FileWriter(script);
+        writer.write("-- for ${user}\ninsert into t values ('${user}');\n/* ${user} */commit;\n");
+        writer.close();
+        Properties env = new Properties();
+        env.put("user", "Admin");
+        ScriptCache cache = new ScriptCache(dir);
+        parser.setScriptCache(cache);
+        parser.setEnvironment(env);
+        parser.iterateSQLScript(visitor, script.toURI().toURL());
+        assertEquals("insert into t values ('Admin')", visitor.getStatements().get(0));
+
+        String key = cache.key(
+                "-- for ${user}\ninsert into t values ('${user}');\n/* ${user} */commit;\n",
+                parser.getCacheOptions());
+        ParsedScript parsed = cache.load(key);
+        assertEquals(4, parsed.size());
+        assertEquals(ParsedScript.LINE_COMMENT, parsed.getType(0));
+        assertEquals("insert into t values ('${user}')", parsed.getText(1));
+        assertEquals(ParsedScript.BLOCK_COMMENT, parsed.getType(2));
+        assertEquals(ParsedScript.COMMIT, parsed.getType(3));
+        parsed.add(ParsedScript.STATEMENT, "select '${user}' from dual");
+        cache.store(key, parsed); // proves that the script is not parsed again
+
+        env.put("user", "Guest");
+        SQLScriptParser replaying = new SQLScriptParser(myLogger);
+        replaying.setScriptCache(cache);
+        replaying.setEnvironment(env);
+        ScriptVisitorDummy replayed = new ScriptVisitorDummy();
+        replaying.iterateSQLScript(replayed, script.toURI().toURL());
+        assertEquals("insert into t values ('Guest')", replayed.getStatements().get(0));
+        assertEquals("-- for Guest", replayed.getComments().get(0));
+        assertEquals("/* Guest */", replayed.getComments().get(1));
+        assertEquals(1, replayed.getCommits());
+        assertEquals("select 'Guest' from dual", replayed.getStatements().get(1));
+        assertEquals(1, dir.list().length); // no temporary files left
+
+        // a corrupt file is a cache miss
+        File file = new File(dir, key + ".sqlc");
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        bytes[20] ^= 1;
+        FileUtils.writeByteArrayToFile(file, bytes);
+        assertNull(cache.load(key));
+        // a length that exceeds the file is not allocated
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        new ParsedScript().write(data);
+        data.close();
+        bytes = out.toByteArray();
+        bytes[11] = 1; // 1 event
+        byte[] huge = new byte[bytes.length + 5];
+        System.arraycopy(bytes, 0, huge, 0, 12);
+        huge[12] = ParsedScript.STATEMENT;
+        huge[13] = 0x7f; // length 2 GB
+        FileUtils.writeByteArrayToFile(file, huge);
+        assertNull(cache.load(key));
+    }
+
     public void testPLSQLDeclare() throws SQLException, IOException {
         String theSQL = "DECLARE\n" + "  CURSOR cCust IS\n" + "    SELECT * FROM custaddress\n"
                 + "    ORDER BY customerid\n" + "    FOR UPDATE;\n" + "  vRec     cCust%ROWTYPE;\n"
@@ -35,6 +35,54 @@ public class WordTokenizerTest extends TestCase {
         assertEquals("B", tokens.nextToken());
     }
 
+    public void testPrefixSeparators() throws IOException {
+        String[] seps = {"'?'", "'", "${", "{", " "};
+        WordTokenizer tokens = new WordTokenizer(new StringReader("a'?' ${b}'c"), seps, true, true);
+        assertEquals("a", tokens.nextToken());
+        assertEquals("'?'", tokens.nextToken());
+        assertEquals(" ", tokens.nextToken());
+        assertEquals("${", tokens.nextToken());
+        assertEquals("b}", tokens.nextToken());
+        assertEquals("'", tokens.nextToken());
+        assertEquals("c", tokens.nextToken());
+        assertNull(tokens.nextToken());
+    }
+
+    public void testChildTokenizer() throws IOException {
+        WordTokenizer parent = new WordTokenizer(new StringReader("x 'it''s' y"),
+                new String[]{" ", "'"}, true, true);
+        assertEquals("x", parent.nextToken());
+        assertEquals(" ", parent.nextToken());
+        assertEquals("'", parent.nextToken());
+        WordTokenizer child = new WordTokenizer(parent, new String[]{"'"}, true, true);
+        assertEquals("it", child.nextToken());
+        assertEquals("'", child.nextToken());
+        assertEquals('\'', child.nextChar());
+        assertEquals("s", child.nextToken());
+        assertEquals("'", child.nextToken());
+        int next = child.nextChar();
+        assertEquals(' ', next);
+        parent.continueFrom(child);
+        parent.addChar(next);
+        assertEquals(" ", parent.nextToken());
+        assertEquals("y", parent.nextToken());
+        assertNull(parent.nextToken());
+    }
+
+    public void testLargeInput() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            buf.append("insert;Begin").append(i).append('\n');
+        }
+        WordTokenizer tokens =
+                new WordTokenizer(new StringReader(buf.toString()), new String[]{";", "\n", "begin"}, false, false);
+        for (int i = 0; i < 20000; i++) {
+            assertEquals("insert", tokens.nextToken());
+            assertEquals(String.valueOf(i), tokens.nextToken());
+        }
+        assertNull(tokens.nextToken());
+    }
+
     public void testTokenizeCaseInsensitive() throws IOException {
         StringReader reader = new StringReader("BEGIN;start;End");
         String[] seps = new String[]{"begin", "end", ";"};